@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.benchmarks;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.danilopianini.lang.FlexibleQuadTree;
+
+import it.unibo.alchemist.model.implementations.environments.AbstractEnvironment;
+import it.unibo.alchemist.model.implementations.nodes.GenericNode;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.LinkingRule;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * Minimal square 2D environment used by the benchmarks. It keeps no
+ * neighborhoods, so that only the costs of {@link AbstractEnvironment} get
+ * measured.
+ */
+final class BenchmarkEnvironment extends AbstractEnvironment<Double> {
+
+    private static final long serialVersionUID = 1L;
+    private final double side;
+
+    /**
+     * @param nodes
+     *            number of nodes the environment is meant for
+     * @param density
+     *            average number of nodes per unit of area
+     */
+    BenchmarkEnvironment(final int nodes, final double density) {
+        super(new FlexibleQuadTree<>());
+        side = Math.sqrt(nodes / density);
+    }
+
+    /**
+     * @param rng
+     *            the random generator
+     * @return a random position inside the environment
+     */
+    Position randomPosition(final RandomGenerator rng) {
+        return new Continuous2DEuclidean(rng.nextDouble() * side, rng.nextDouble() * side);
+    }
+
+    /**
+     * @return a new node for this environment
+     */
+    Node<Double> newNode() {
+        return new BenchmarkNode(this);
+    }
+
+    @Override
+    public int getDimensions() {
+        return 2;
+    }
+
+    @Override
+    public Neighborhood<Double> getNeighborhood(final Node<Double> center) {
+        return null;
+    }
+
+    @Override
+    public double[] getOffset() {
+        return new double[] { 0, 0 };
+    }
+
+    @Override
+    public double[] getSize() {
+        return new double[] { side, side };
+    }
+
+    @Override
+    public void moveNode(final Node<Double> node, final Position direction) {
+        moveNodeToPosition(node, getPosition(node).sum(direction));
+    }
+
+    @Override
+    public void moveNodeToPosition(final Node<Double> node, final Position position) {
+        setPosition(node, position);
+    }
+
+    @Override
+    public LinkingRule<Double> getLinkingRule() {
+        return null;
+    }
+
+    @Override
+    public void setLinkingRule(final LinkingRule<Double> rule) {
+    }
+
+    @Override
+    protected void nodeAdded(final Node<Double> node, final Position p) {
+    }
+
+    @Override
+    protected boolean nodeShouldBeAdded(final Node<Double> node, final Position p) {
+        return true;
+    }
+
+    @Override
+    protected Position computeActualInsertionPosition(final Node<Double> node, final Position p) {
+        return p;
+    }
+
+    @Override
+    protected void nodeRemoved(final Node<Double> node, final Position pos) {
+    }
+
+    private static final class BenchmarkNode extends GenericNode<Double> {
+        private static final long serialVersionUID = 1L;
+        BenchmarkNode(final Environment<?> env) {
+            super(env);
+        }
+        @Override
+        protected Double createT() {
+            return 0d;
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unibo.alchemist.model.implementations.environments.AbstractEnvironment;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * Range queries and node insertion, removal and movement in
+ * {@link AbstractEnvironment}. The communication range is fixed to 1, so each
+ * node has on average density * PI neighbors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class EnvironmentBenchmark {
+
+    private static final double RANGE = 1;
+
+    /**
+     * Number of nodes in the environment.
+     */
+    @Param({ "1000", "10000", "100000" })
+    public int nodes;
+
+    /**
+     * Average number of nodes per unit of area.
+     */
+    @Param({ "0.5", "5" })
+    public double density;
+
+    private final RandomGenerator rng = new MersenneTwister(0);
+    private BenchmarkEnvironment env;
+    private List<Node<Double>> population;
+
+    /**
+     * Fills the environment.
+     */
+    @Setup
+    public void setup() {
+        env = new BenchmarkEnvironment(nodes, density);
+        population = new ArrayList<>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            final Node<Double> node = env.newNode();
+            env.addNode(node, env.randomPosition(rng));
+            population.add(node);
+        }
+    }
+
+    private Node<Double> randomNode() {
+        return population.get(rng.nextInt(nodes));
+    }
+
+    /**
+     * @return the neighbors of a random node
+     */
+    @Benchmark
+    public List<Node<Double>> getNodesWithinRange() {
+        return env.getNodesWithinRange(randomNode(), RANGE);
+    }
+
+    /**
+     * Moves a random node to a random position.
+     */
+    @Benchmark
+    public void setPosition() {
+        env.moveNodeToPosition(randomNode(), env.randomPosition(rng));
+    }
+
+    /**
+     * Removes a random node and adds it back in a random position, so that the
+     * population does not change across invocations.
+     */
+    @Benchmark
+    public void removeAndAddNode() {
+        final Node<Double> node = randomNode();
+        env.removeNode(node);
+        env.addNode(node, env.randomPosition(rng));
+    }
+
+}
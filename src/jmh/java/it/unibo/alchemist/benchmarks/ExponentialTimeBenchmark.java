@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unibo.alchemist.model.implementations.timedistributions.ExponentialTime;
+import it.unibo.alchemist.model.implementations.times.DoubleTime;
+import it.unibo.alchemist.model.interfaces.Time;
+
+/**
+ * Putative time updates of {@link ExponentialTime}, both for the reaction that
+ * just fired and for a dependent reaction whose propensity changed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ExponentialTimeBenchmark {
+
+    /**
+     * Markovian rate of the distribution.
+     */
+    @Param({ "1", "1000" })
+    public double rate;
+
+    /*
+     * Each propensity change moves the current time forward by this fraction
+     * of the time left before the next occurrence, and the reaction fires
+     * once every STEPS_PER_FIRING changes, so the current time never reaches
+     * the next occurrence.
+     */
+    private static final double ADVANCE = 1d / 1024;
+    private static final int STEPS_PER_FIRING = 4096;
+    private final RandomGenerator rng = new MersenneTwister(0);
+    private ExponentialTime<Double> distribution;
+    private boolean odd;
+    private Time now;
+    private int steps;
+
+    /**
+     * Builds the distribution and schedules it once.
+     */
+    @Setup
+    public void setup() {
+        distribution = new ExponentialTime<>(rate, rng);
+        now = new DoubleTime();
+        distribution.update(now, true, rate, null);
+    }
+
+    /**
+     * @return the next occurrence after the reaction fired
+     */
+    @Benchmark
+    public Time updateExecuted() {
+        distribution.update(distribution.getNextOccurence(), true, rate, null);
+        return distribution.getNextOccurence();
+    }
+
+    /**
+     * @return the next occurrence after the propensity changed at a time
+     *         before it, while the reaction did not fire
+     */
+    @Benchmark
+    public Time updatePropensityChanged() {
+        if (++steps == STEPS_PER_FIRING) {
+            steps = 0;
+            distribution.update(now, true, odd ? rate * 2 : rate, null);
+        }
+        now = now.sum(distribution.getNextOccurence().subtract(now).multiply(ADVANCE));
+        odd = !odd;
+        distribution.update(now, false, odd ? rate * 2 : rate, null);
+        return distribution.getNextOccurence();
+    }
+
+}
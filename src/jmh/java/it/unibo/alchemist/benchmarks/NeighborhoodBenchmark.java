@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unibo.alchemist.model.implementations.neighborhoods.CachedNeighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * Membership test and updates of {@link CachedNeighborhood}. The neighborhood
+ * holds one every two of the candidate nodes, so that lookups hit and miss
+ * with the same probability.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class NeighborhoodBenchmark {
+
+    /**
+     * Number of neighbors.
+     */
+    @Param({ "10", "100", "1000" })
+    public int neighbors;
+
+    private final RandomGenerator rng = new MersenneTwister(0);
+    private List<Node<Double>> candidates;
+    private CachedNeighborhood<Double> neighborhood;
+
+    /**
+     * Builds the neighborhood.
+     */
+    @Setup
+    public void setup() {
+        final BenchmarkEnvironment env = new BenchmarkEnvironment(neighbors * 2, 1);
+        candidates = new ArrayList<>(neighbors * 2);
+        final List<Node<Double>> members = new ArrayList<>(neighbors);
+        for (int i = 0; i < neighbors * 2; i++) {
+            final Node<Double> node = env.newNode();
+            env.addNode(node, env.randomPosition(rng));
+            candidates.add(node);
+            if (i % 2 == 0) {
+                members.add(node);
+            }
+        }
+        final Node<Double> center = env.newNode();
+        env.addNode(center, env.randomPosition(rng));
+        neighborhood = new CachedNeighborhood<>(center, members, env);
+    }
+
+    /**
+     * @return true if a random candidate is a neighbor
+     */
+    @Benchmark
+    public boolean contains() {
+        return neighborhood.contains(candidates.get(rng.nextInt(candidates.size())));
+    }
+
+    /**
+     * Adds a node which is not a neighbor, then removes it, leaving the
+     * neighborhood untouched.
+     */
+    @Benchmark
+    public void addAndRemoveNeighbor() {
+        final Node<Double> node = candidates.get(rng.nextInt(neighbors) * 2 + 1);
+        neighborhood.addNeighbor(node);
+        neighborhood.removeNeighbor(node);
+    }
+
+    /**
+     * Removes a neighbor, then adds it back, leaving the neighborhood
+     * untouched.
+     */
+    @Benchmark
+    public void removeAndAddNeighbor() {
+        final Node<Double> node = candidates.get(rng.nextInt(neighbors) * 2);
+        neighborhood.removeNeighbor(node);
+        neighborhood.addNeighbor(node);
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unibo.alchemist.model.implementations.molecules.SimpleMolecule;
+import it.unibo.alchemist.model.implementations.nodes.GenericNode;
+import it.unibo.alchemist.model.interfaces.Molecule;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * Concentration reads and writes on {@link GenericNode}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class NodeBenchmark {
+
+    /**
+     * Number of molecules in the node.
+     */
+    @Param({ "1", "10", "100" })
+    public int molecules;
+
+    private final RandomGenerator rng = new MersenneTwister(0);
+    private Node<Double> node;
+    private Molecule[] contents;
+
+    /**
+     * Fills the node.
+     */
+    @Setup
+    public void setup() {
+        node = new BenchmarkEnvironment(1, 1).newNode();
+        contents = new Molecule[molecules];
+        for (int i = 0; i < molecules; i++) {
+            contents[i] = new SimpleMolecule("molecule" + i);
+            node.setConcentration(contents[i], (double) i);
+        }
+    }
+
+    /**
+     * @return the concentration of a random molecule
+     */
+    @Benchmark
+    public Double getConcentration() {
+        return node.getConcentration(contents[rng.nextInt(molecules)]);
+    }
+
+    /**
+     * Overwrites the concentration of a random molecule.
+     */
+    @Benchmark
+    public void setConcentration() {
+        node.setConcentration(contents[rng.nextInt(molecules)], rng.nextDouble());
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unibo.alchemist.model.implementations.positions.ContinuousGenericEuclidean;
+import it.unibo.alchemist.model.implementations.positions.Euclidean2DPosition;
+import it.unibo.alchemist.model.implementations.positions.Euclidean3DPosition;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * Distance computation and bounding box construction of
+ * {@link ContinuousGenericEuclidean}, and of the specialized
+ * {@link Euclidean2DPosition} and {@link Euclidean3DPosition}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class PositionBenchmark {
+
+    private static final double RANGE = 1;
+
+    /**
+     * Number of dimensions of the positions.
+     */
+    @Param({ "2", "3", "10" })
+    public int dimensions;
+
+    /**
+     * If true, the specialized positions are used where available.
+     */
+    @Param({ "false", "true" })
+    public boolean specialized;
+
+    private Position first;
+    private Position second;
+
+    /**
+     * Builds two random positions.
+     */
+    @Setup
+    public void setup() {
+        final RandomGenerator rng = new MersenneTwister(0);
+        final double[] a = new double[dimensions];
+        final double[] b = new double[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            a[i] = rng.nextDouble();
+            b[i] = rng.nextDouble();
+        }
+        first = makePosition(a);
+        second = makePosition(b);
+    }
+
+    private Position makePosition(final double[] coords) {
+        if (specialized && dimensions == 2) {
+            return new Euclidean2DPosition(coords[0], coords[1]);
+        }
+        if (specialized && dimensions == 3) {
+            return new Euclidean3DPosition(coords[0], coords[1], coords[2]);
+        }
+        return new ContinuousGenericEuclidean(coords);
+    }
+
+    /**
+     * @return the distance between the two positions
+     */
+    @Benchmark
+    public double getDistanceTo() {
+        return first.getDistanceTo(second);
+    }
+
+    /**
+     * @return the bounding box around the first position
+     */
+    @Benchmark
+    public List<Position> buildBoundingBox() {
+        return first.buildBoundingBox(RANGE);
+    }
+
+}
@@ -0,0 +1,5 @@
+/**
+ * JMH microbenchmarks for the hot paths of the simulation model. Run them with
+ * <code>./gradlew jmh</code>.
+ */
+package it.unibo.alchemist.benchmarks;
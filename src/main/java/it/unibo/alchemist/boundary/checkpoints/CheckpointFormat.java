@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.checkpoints;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.math3.random.BitsStreamGenerator;
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Constants and channel access shared by {@link CheckpointWriter} and
+ * {@link CheckpointReader}. A checkpoint file is made of a header:
+ *
+ * <pre>
+ * int magic, int version, byte kind, long sequence, double time,
+ * int dimensions, int nodes, int removed,
+ * int length, byte[length] molecules first found in this checkpoint
+ * </pre>
+ *
+ * followed by the columns, one after the other:
+ *
+ * <pre>
+ * int[nodes] ids, double[nodes * dimensions] coordinates,
+ * int[nodes] molecule counts, long[sum of counts] molecule ids,
+ * double[sum of counts] concentrations,
+ * int[nodes] reaction state lengths, byte[sum of lengths] reaction states,
+ * int[removed] removed ids, int length, byte[length] random engine
+ * </pre>
+ */
+final class CheckpointFormat {
+
+    static final int MAGIC = 0x414C4350;
+    static final int VERSION = 1;
+    static final byte FULL = 0;
+    static final byte INCREMENTAL = 1;
+    static final byte NO_STATE = 0;
+    static final byte DISTRIBUTION_STATE = 1;
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private CheckpointFormat() {
+    }
+
+    /**
+     * The engines extending {@link BitsStreamGenerator} keep their whole
+     * state in fields of commons-math classes, which can be copied into an
+     * existing instance on every Java version. Others, such as
+     * {@link org.apache.commons.math3.random.JDKRandomGenerator}, keep it in
+     * JDK classes, which can not be accessed reflectively since Java 16.
+     * 
+     * @param random
+     *            the random engine, or null
+     * @return the random engine
+     * @throws IllegalArgumentException
+     *             if the state of the engine can not be restored
+     */
+    static RandomGenerator checkRandom(final RandomGenerator random) {
+        if (random != null && !(random instanceof BitsStreamGenerator)) {
+            throw new IllegalArgumentException(random.getClass().getName() + " can not be checkpointed: only engines extending "
+                    + BitsStreamGenerator.class.getName() + ", such as MersenneTwister, are supported.");
+        }
+        return random;
+    }
+
+    /**
+     * Buffers primitives into a direct chunk, which is written to the channel
+     * whenever it fills up.
+     */
+    static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+
+        Output(final FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putByte(final byte value) throws IOException {
+            ensure(Byte.BYTES);
+            chunk.put(value);
+        }
+
+        void putInt(final int value) throws IOException {
+            ensure(Integer.BYTES);
+            chunk.putInt(value);
+        }
+
+        void putLong(final long value) throws IOException {
+            ensure(Long.BYTES);
+            chunk.putLong(value);
+        }
+
+        void putDouble(final double value) throws IOException {
+            ensure(Double.BYTES);
+            chunk.putDouble(value);
+        }
+
+        void putInts(final int[] values) throws IOException {
+            for (final int value : values) {
+                putInt(value);
+            }
+        }
+
+        void putLongs(final long[] values) throws IOException {
+            for (final long value : values) {
+                putLong(value);
+            }
+        }
+
+        void putDoubles(final double[] values) throws IOException {
+            for (final double value : values) {
+                putDouble(value);
+            }
+        }
+
+        void putBytes(final byte[] values) throws IOException {
+            int done = 0;
+            while (done < values.length) {
+                ensure(1);
+                final int count = Math.min(chunk.remaining(), values.length - done);
+                chunk.put(values, done, count);
+                done += count;
+            }
+        }
+
+        void flush() throws IOException {
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+            chunk.clear();
+        }
+
+        private void ensure(final int bytes) throws IOException {
+            if (chunk.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Reads primitives from a chunk, which is refilled from the channel
+     * whenever it runs out.
+     */
+    static final class Input {
+        private final FileChannel channel;
+        private final ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+
+        Input(final FileChannel channel) {
+            this.channel = channel;
+            chunk.flip();
+        }
+
+        byte getByte() throws IOException {
+            ensure(Byte.BYTES);
+            return chunk.get();
+        }
+
+        int getInt() throws IOException {
+            ensure(Integer.BYTES);
+            return chunk.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(Long.BYTES);
+            return chunk.getLong();
+        }
+
+        double getDouble() throws IOException {
+            ensure(Double.BYTES);
+            return chunk.getDouble();
+        }
+
+        int[] getInts(final int size) throws IOException {
+            final int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = getInt();
+            }
+            return result;
+        }
+
+        long[] getLongs(final int size) throws IOException {
+            final long[] result = new long[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = getLong();
+            }
+            return result;
+        }
+
+        double[] getDoubles(final int size) throws IOException {
+            final double[] result = new double[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = getDouble();
+            }
+            return result;
+        }
+
+        byte[] getBytes(final int size) throws IOException {
+            final byte[] result = new byte[size];
+            int done = 0;
+            while (done < size) {
+                ensure(1);
+                final int count = Math.min(chunk.remaining(), size - done);
+                chunk.get(result, done, count);
+                done += count;
+            }
+            return result;
+        }
+
+        private void ensure(final int bytes) throws IOException {
+            if (chunk.remaining() < bytes) {
+                chunk.compact();
+                while (chunk.position() < bytes) {
+                    if (channel.read(chunk) < 0) {
+                        throw new EOFException("Truncated checkpoint");
+                    }
+                }
+                chunk.flip();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.checkpoints;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.DoubleFunction;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+import it.unibo.alchemist.model.implementations.environments.AbstractEnvironment;
+import it.unibo.alchemist.model.implementations.timedistributions.AbstractDistribution;
+import it.unibo.alchemist.model.implementations.times.DoubleTime;
+import it.unibo.alchemist.model.interfaces.Molecule;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Reaction;
+import it.unibo.alchemist.model.interfaces.Time;
+import it.unibo.alchemist.model.interfaces.TimeDistribution;
+
+/**
+ * Restores the checkpoints written by {@link CheckpointWriter} on an
+ * environment built from the same scenario, for instance loading the same
+ * XML again. Nodes are matched by id, and reactions by their position in
+ * {@link Node#getReactions()}. Nodes missing from a full checkpoint are
+ * removed from the environment, while nodes created during the simulation
+ * can not be restored, as checkpoints do not record their structure.
+ *
+ * Positions are restored through
+ * {@link AbstractEnvironment#moveNodes(int[], double[])}, which keeps their
+ * class: they must be euclidean, or cells of a lattice, otherwise restoring
+ * fails with an {@link IllegalArgumentException}.
+ * Restore before the simulation starts, so that reactions get scheduled
+ * with the restored times.
+ *
+ * @param <T>
+ *            concentration type
+ */
+public final class CheckpointReader<T> {
+
+    private final AbstractEnvironment<T> env;
+    private final RandomGenerator random;
+    private final DoubleFunction<? extends T> codec;
+    private TLongObjectMap<Molecule> molecules;
+
+    /**
+     * @param env
+     *            the environment
+     * @param random
+     *            the random engine of the simulation, or null. Its state is
+     *            overwritten with the one in the checkpoint
+     * @param codec
+     *            converts doubles to concentrations, the inverse of the one
+     *            passed to {@link CheckpointWriter}
+     * @throws IllegalArgumentException
+     *             if the engine does not extend
+     *             {@link org.apache.commons.math3.random.BitsStreamGenerator}
+     */
+    public CheckpointReader(final AbstractEnvironment<T> env, final RandomGenerator random, final DoubleFunction<? extends T> codec) {
+        this.env = Objects.requireNonNull(env);
+        this.random = CheckpointFormat.checkRandom(random);
+        this.codec = Objects.requireNonNull(codec);
+    }
+
+    /**
+     * @param checkpoints
+     *            a full checkpoint, followed by the incremental checkpoints
+     *            written after it, in order
+     * @return the simulation time of the last checkpoint
+     * @throws IOException
+     *             if a checkpoint can not be read, or the checkpoints do not
+     *             form a chain
+     */
+    public Time restore(final Path... checkpoints) throws IOException {
+        if (checkpoints.length == 0) {
+            throw new IllegalArgumentException("At least a full checkpoint is required.");
+        }
+        double time = Double.NaN;
+        long sequence = -1;
+        for (int i = 0; i < checkpoints.length; i++) {
+            try (FileChannel channel = FileChannel.open(checkpoints[i], StandardOpenOption.READ)) {
+                final CheckpointFormat.Input in = new CheckpointFormat.Input(channel);
+                if (in.getInt() != CheckpointFormat.MAGIC || in.getInt() != CheckpointFormat.VERSION) {
+                    throw new IOException(checkpoints[i] + " is not a checkpoint.");
+                }
+                final byte kind = in.getByte();
+                final long current = in.getLong();
+                if (i == 0 && kind != CheckpointFormat.FULL) {
+                    throw new IOException(checkpoints[i] + " is incremental, a full checkpoint must come first.");
+                }
+                if (i > 0 && (kind != CheckpointFormat.INCREMENTAL || current != sequence + 1)) {
+                    throw new IOException(checkpoints[i] + " does not follow " + checkpoints[i - 1]);
+                }
+                sequence = current;
+                time = in.getDouble();
+                apply(in, kind == CheckpointFormat.FULL);
+            }
+        }
+        return new DoubleTime(time);
+    }
+
+    private void apply(final CheckpointFormat.Input in, final boolean full) throws IOException {
+        final int dimensions = in.getInt();
+        if (dimensions != env.getDimensions()) {
+            throw new IOException("The checkpoint has " + dimensions + " dimensions, the environment " + env.getDimensions());
+        }
+        final int size = in.getInt();
+        final int removedSize = in.getInt();
+        for (final Molecule molecule : (Molecule[]) deserialize(in.getBytes(in.getInt()))) {
+            molecules().putIfAbsent(molecule.getId(), molecule);
+        }
+        final int[] ids = in.getInts(size);
+        final double[] coordinates = in.getDoubles(size * dimensions);
+        final int[] counts = in.getInts(size);
+        int totalCount = 0;
+        for (final int count : counts) {
+            totalCount += count;
+        }
+        final long[] moleculeIds = in.getLongs(totalCount);
+        final double[] concentrations = in.getDoubles(totalCount);
+        final int[] lengths = in.getInts(size);
+        final List<Node<T>> nodes = new ArrayList<>(size);
+        for (final int id : ids) {
+            final Node<T> node = env.getNodeByID(id);
+            if (node == null) {
+                throw new IllegalStateException("Node " + id + " is not in the environment:"
+                        + " nodes created during the simulation can not be restored.");
+            }
+            nodes.add(node);
+        }
+        if (full) {
+            final TIntHashSet kept = new TIntHashSet(size);
+            for (final int id : ids) {
+                kept.add(id);
+            }
+            for (final Node<T> node : new ArrayList<>(env.getNodes())) {
+                if (!kept.contains(node.getId())) {
+                    env.removeNode(node);
+                }
+            }
+        }
+        restorePositions(nodes, ids, coordinates, dimensions);
+        for (int i = 0, m = 0; i < size; i++) {
+            final Node<T> node = nodes.get(i);
+            final List<Molecule> stale = new ArrayList<>(node.getContents().keySet());
+            for (int end = m + counts[i]; m < end; m++) {
+                final Molecule molecule = molecule(moleculeIds[m]);
+                stale.remove(molecule);
+                node.setConcentration(molecule, Double.isNaN(concentrations[m]) ? null : codec.apply(concentrations[m]));
+            }
+            stale.forEach(node::removeConcentration);
+            restoreReactions(node, in.getBytes(lengths[i]));
+        }
+        for (final int id : in.getInts(removedSize)) {
+            final Node<T> node = env.getNodeByID(id);
+            if (node != null) {
+                env.removeNode(node);
+            }
+        }
+        final byte[] state = in.getBytes(in.getInt());
+        if (random != null && state.length > 0) {
+            restoreRandom(state);
+        }
+    }
+
+    /*
+     * Only the nodes which actually moved are passed to the environment.
+     */
+    private void restorePositions(final List<Node<T>> nodes, final int[] ids, final double[] coordinates, final int dimensions) {
+        final TIntArrayList moved = new TIntArrayList();
+        final TDoubleArrayList destinations = new TDoubleArrayList();
+        for (int i = 0; i < ids.length; i++) {
+            final double[] current = env.getPosition(nodes.get(i)).getCartesianCoordinates();
+            boolean same = true;
+            for (int d = 0; d < dimensions; d++) {
+                same &= Double.doubleToLongBits(current[d]) == Double.doubleToLongBits(coordinates[i * dimensions + d]);
+            }
+            if (!same) {
+                moved.add(ids[i]);
+                for (int d = 0; d < dimensions; d++) {
+                    destinations.add(coordinates[i * dimensions + d]);
+                }
+            }
+        }
+        if (moved.size() > 0) {
+            env.moveNodes(moved.toArray(), destinations.toArray());
+        }
+    }
+
+    private void restoreReactions(final Node<T> node, final byte[] bytes) throws IOException {
+        final DataInputStream state = new DataInputStream(new ByteArrayInputStream(bytes));
+        final List<Reaction<T>> reactions = node.getReactions();
+        final int size = state.readInt();
+        if (size != reactions.size()) {
+            throw new IllegalStateException("Node " + node.getId() + " has " + reactions.size()
+                    + " reactions, but " + size + " were checkpointed.");
+        }
+        for (final Reaction<T> r : reactions) {
+            if (state.readByte() == CheckpointFormat.DISTRIBUTION_STATE) {
+                final TimeDistribution<T> distribution = r.getTimeDistribution();
+                if (!(distribution instanceof AbstractDistribution)) {
+                    throw new IllegalStateException(r + " does not match the checkpointed reaction.");
+                }
+                ((AbstractDistribution<T>) distribution).restoreState(state);
+            }
+        }
+    }
+
+    private Molecule molecule(final long id) {
+        final Molecule molecule = molecules().get(id);
+        if (molecule == null) {
+            throw new IllegalStateException("No molecule with id " + id + " in the checkpoint.");
+        }
+        return molecule;
+    }
+
+    /*
+     * The molecules by id. Instances already in the environment, found both
+     * in the contents of the nodes and among those the reactions depend on,
+     * take precedence over the deserialized ones.
+     */
+    private TLongObjectMap<Molecule> molecules() {
+        if (molecules == null) {
+            molecules = new TLongObjectHashMap<>();
+            for (final Node<T> node : env.getNodes()) {
+                node.getContents().keySet().forEach(m -> molecules.put(m.getId(), m));
+                for (final Reaction<T> r : node.getReactions()) {
+                    register(r.getInfluencingMolecules());
+                    register(r.getInfluencedMolecules());
+                }
+            }
+        }
+        return molecules;
+    }
+
+    private void register(final List<? extends Molecule> list) {
+        if (list != null) {
+            list.forEach(m -> molecules.put(m.getId(), m));
+        }
+    }
+
+    /*
+     * Objects using the random engine keep a reference to it, so the state
+     * of the deserialized engine is copied into the existing one. Engines
+     * are BitsStreamGenerators, so no field belongs to a JDK class.
+     */
+    private void restoreRandom(final byte[] state) throws IOException {
+        final Object restored = deserialize(state);
+        if (restored.getClass() != random.getClass()) {
+            throw new IllegalStateException("The checkpoint has a " + restored.getClass().getName() + " random engine, not a "
+                    + random.getClass().getName());
+        }
+        try {
+            for (Class<?> clazz = random.getClass(); clazz != Object.class; clazz = clazz.getSuperclass()) {
+                for (final Field field : clazz.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        field.set(random, field.get(restored));
+                    }
+                }
+            }
+        } catch (final IllegalAccessException | RuntimeException e) {
+            throw new IllegalStateException("The state of " + random.getClass().getName() + " can not be restored", e);
+        }
+    }
+
+    private static Object deserialize(final byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (final ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+}
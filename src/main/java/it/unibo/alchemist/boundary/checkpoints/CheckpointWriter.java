@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.checkpoints;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TIntLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+import it.unibo.alchemist.model.implementations.environments.AbstractEnvironment;
+import it.unibo.alchemist.model.implementations.timedistributions.AbstractDistribution;
+import it.unibo.alchemist.model.interfaces.Molecule;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+import it.unibo.alchemist.model.interfaces.Reaction;
+import it.unibo.alchemist.model.interfaces.Time;
+import it.unibo.alchemist.model.interfaces.TimeDistribution;
+
+/**
+ * Writes checkpoints of the dynamic state of a running environment: node
+ * positions, concentrations, the state of the time distributions of the
+ * reactions and the state of the random engine. Structure (node types,
+ * reactions, conditions, actions, linking rule) is not written: checkpoints
+ * are restored by {@link CheckpointReader} on an environment built from the
+ * same scenario.
+ *
+ * Positions and concentrations are stored as primitive columns, and the
+ * state of the reactions is stored through
+ * {@link AbstractDistribution#saveState(java.io.DataOutput)}. Java
+ * serialization is only used for the random engine, which exposes no other
+ * way to access its state, and for the molecules, each of which is written
+ * once per chain of checkpoints, so that molecules created during the
+ * simulation can be restored too.
+ *
+ * The state is captured on the calling thread, which must be the simulation
+ * thread, while the file is written in background. Incremental checkpoints
+ * only contain the nodes whose state changed since the previous checkpoint,
+ * and the nodes removed meanwhile. Changes are detected comparing a 64 bit
+ * hash of the state of each node, so a full checkpoint should be taken every
+ * now and then anyway. Since incremental checkpoints are captured before the
+ * previous ones are written, if a write fails the incremental checkpoints
+ * following it are dropped, and the next checkpoint is taken in full.
+ *
+ * @param <T>
+ *            concentration type
+ */
+public final class CheckpointWriter<T> implements AutoCloseable {
+
+    private static final long HASH_SEED = 0xCBF29CE484222325L;
+    private static final long HASH_PRIME = 0x100000001B3L;
+
+    private final AbstractEnvironment<T> env;
+    private final RandomGenerator random;
+    private final ToDoubleFunction<? super T> codec;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        final Thread thread = new Thread(task, "Checkpoint writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final TIntLongHashMap hashes = new TIntLongHashMap();
+    private final TIntHashSet written = new TIntHashSet();
+    private final TLongObjectMap<Molecule> known = new TLongObjectHashMap<>();
+    private final ByteArrayOutputStream stateBytes = new ByteArrayOutputStream();
+    private final DataOutputStream state = new DataOutputStream(stateBytes);
+    private long sequence = -1;
+    private volatile boolean broken;
+
+    /**
+     * @param env
+     *            the environment
+     * @param random
+     *            the random engine of the simulation, or null
+     * @param codec
+     *            converts concentrations to double, the inverse of the one
+     *            passed to {@link CheckpointReader}
+     * @throws IllegalArgumentException
+     *             if the engine does not extend
+     *             {@link org.apache.commons.math3.random.BitsStreamGenerator},
+     *             as its state could not be restored
+     */
+    public CheckpointWriter(final AbstractEnvironment<T> env, final RandomGenerator random, final ToDoubleFunction<? super T> codec) {
+        this.env = Objects.requireNonNull(env);
+        this.random = CheckpointFormat.checkRandom(random);
+        this.codec = Objects.requireNonNull(codec);
+    }
+
+    /**
+     * Captures the state of the environment and writes it in background. The
+     * environment must not change while this method runs, but it can as soon
+     * as it returns.
+     *
+     * @param file
+     *            the checkpoint file, which is overwritten once complete
+     * @param time
+     *            the current simulation time
+     * @param incremental
+     *            true if only the nodes changed since the previous checkpoint
+     *            should be written. The first checkpoint, and the first after
+     *            a failed write, are always full
+     * @return a {@link Future} completing with the file once it is written,
+     *         or failing if this checkpoint, or one it depends on, could not
+     *         be written
+     * @throws IOException
+     *             if the state of the random engine or of a time distribution
+     *             can not be captured
+     */
+    public Future<Path> checkpoint(final Path file, final Time time, final boolean incremental) throws IOException {
+        final Columns columns = capture(time, incremental && sequence >= 0 && !broken);
+        return writer.submit(() -> {
+            if (broken && columns.kind == CheckpointFormat.INCREMENTAL) {
+                throw new IOException(file + " was not written, since a checkpoint it depends on failed.");
+            }
+            try {
+                write(file, columns);
+            } catch (final IOException | RuntimeException e) {
+                broken = true;
+                throw e;
+            }
+            broken = false;
+            return file;
+        });
+    }
+
+    /**
+     * Waits for the pending checkpoints to be written. The writer thread is a
+     * daemon, so a writer which is never closed does not keep the JVM alive,
+     * but the checkpoints still pending when the JVM exits get lost.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Columns capture(final Time time, final boolean incremental) throws IOException {
+        final int dimensions = env.getDimensions();
+        final Columns c = new Columns(++sequence, incremental ? CheckpointFormat.INCREMENTAL : CheckpointFormat.FULL,
+                time.toDouble(), dimensions);
+        if (!incremental) {
+            known.clear();
+        }
+        final List<Molecule> discovered = new ArrayList<>();
+        final TIntHashSet present = new TIntHashSet(env.getNodesNumber());
+        for (final Node<T> node : env.getNodes()) {
+            final int id = node.getId();
+            present.add(id);
+            final Position position = env.getPosition(node);
+            final Map<Molecule, T> contents = node.getContents();
+            long hash = HASH_SEED;
+            for (int d = 0; d < dimensions; d++) {
+                hash = mix(hash, Double.doubleToLongBits(position.getCoordinate(d)));
+            }
+            for (final Map.Entry<Molecule, T> entry : contents.entrySet()) {
+                hash = mix(mix(hash, entry.getKey().getId()), Double.doubleToLongBits(encode(entry.getValue())));
+            }
+            final byte[] nodeState = reactionState(node);
+            for (final byte b : nodeState) {
+                hash = mix(hash, b);
+            }
+            if (!incremental || !written.contains(id) || hashes.get(id) != hash) {
+                hashes.put(id, hash);
+                c.ids.add(id);
+                for (int d = 0; d < dimensions; d++) {
+                    c.coordinates.add(position.getCoordinate(d));
+                }
+                c.moleculeCounts.add(contents.size());
+                for (final Map.Entry<Molecule, T> entry : contents.entrySet()) {
+                    final Molecule molecule = entry.getKey();
+                    if (known.putIfAbsent(molecule.getId(), molecule) == null) {
+                        discovered.add(molecule);
+                    }
+                    c.molecules.add(molecule.getId());
+                    c.concentrations.add(encode(entry.getValue()));
+                }
+                c.states.add(nodeState);
+            }
+        }
+        written.forEach(id -> {
+            if (!present.contains(id)) {
+                c.removed.add(id);
+                hashes.remove(id);
+            }
+            return true;
+        });
+        written.clear();
+        written.addAll(present);
+        c.moleculeTable = serialize(discovered.toArray(new Molecule[discovered.size()]));
+        if (random != null) {
+            c.random = serialize(random);
+        }
+        return c;
+    }
+
+    private static byte[] serialize(final Object object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private double encode(final T concentration) {
+        return concentration == null ? Double.NaN : codec.applyAsDouble(concentration);
+    }
+
+    private byte[] reactionState(final Node<T> node) throws IOException {
+        stateBytes.reset();
+        final List<Reaction<T>> reactions = node.getReactions();
+        state.writeInt(reactions.size());
+        for (final Reaction<T> r : reactions) {
+            final TimeDistribution<T> distribution = r.getTimeDistribution();
+            if (distribution instanceof AbstractDistribution) {
+                state.writeByte(CheckpointFormat.DISTRIBUTION_STATE);
+                ((AbstractDistribution<T>) distribution).saveState(state);
+            } else {
+                state.writeByte(CheckpointFormat.NO_STATE);
+            }
+        }
+        state.flush();
+        return stateBytes.toByteArray();
+    }
+
+    /*
+     * Writes a temporary file first, so that a crash while writing does not
+     * destroy the previous checkpoint.
+     */
+    private static void write(final Path file, final Columns c) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        final Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final CheckpointFormat.Output out = new CheckpointFormat.Output(channel);
+                out.putInt(CheckpointFormat.MAGIC);
+                out.putInt(CheckpointFormat.VERSION);
+                out.putByte(c.kind);
+                out.putLong(c.sequence);
+                out.putDouble(c.time);
+                out.putInt(c.dimensions);
+                out.putInt(c.ids.size());
+                out.putInt(c.removed.size());
+                out.putInt(c.moleculeTable.length);
+                out.putBytes(c.moleculeTable);
+                out.putInts(c.ids.toArray());
+                out.putDoubles(c.coordinates.toArray());
+                out.putInts(c.moleculeCounts.toArray());
+                out.putLongs(c.molecules.toArray());
+                out.putDoubles(c.concentrations.toArray());
+                for (final byte[] nodeState : c.states) {
+                    out.putInt(nodeState.length);
+                }
+                for (final byte[] nodeState : c.states) {
+                    out.putBytes(nodeState);
+                }
+                out.putInts(c.removed.toArray());
+                out.putInt(c.random.length);
+                out.putBytes(c.random);
+                out.flush();
+                channel.force(false);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static long mix(final long hash, final long value) {
+        long v = value * 0xFF51AFD7ED558CCDL;
+        v ^= v >>> 33;
+        return (hash ^ v) * HASH_PRIME;
+    }
+
+    /*
+     * The captured state, handed over to the writer thread.
+     */
+    private static final class Columns {
+        private final long sequence;
+        private final byte kind;
+        private final double time;
+        private final int dimensions;
+        private final TIntArrayList ids = new TIntArrayList();
+        private final TDoubleArrayList coordinates = new TDoubleArrayList();
+        private final TIntArrayList moleculeCounts = new TIntArrayList();
+        private final TLongArrayList molecules = new TLongArrayList();
+        private final TDoubleArrayList concentrations = new TDoubleArrayList();
+        private final List<byte[]> states = new ArrayList<>();
+        private final TIntArrayList removed = new TIntArrayList();
+        private byte[] moleculeTable;
+        private byte[] random = new byte[0];
+
+        Columns(final long sequence, final byte kind, final double time, final int dimensions) {
+            this.sequence = sequence;
+            this.kind = kind;
+            this.time = time;
+            this.dimensions = dimensions;
+        }
+    }
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Checkpoints of running environments.
+ */
+package it.unibo.alchemist.boundary.checkpoints;
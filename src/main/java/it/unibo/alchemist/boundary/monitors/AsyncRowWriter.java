@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the rows sampled by an {@link EnvironmentInspector} from a
+ * background thread. Rows are handed over through a bounded ring buffer,
+ * which blocks the simulation only if the writer falls behind by more than
+ * its capacity, and are formatted and written in large blocks by the
+ * background thread. The output is the same as the one of the synchronous
+ * mode.
+ */
+final class AsyncRowWriter implements AutoCloseable {
+
+    private static final Logger L = LoggerFactory.getLogger(AsyncRowWriter.class);
+    private static final int CAPACITY = 1024;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final Row END = new Row(0, 0, new double[0], "", false, false);
+    private final BlockingQueue<Row> rows = new ArrayBlockingQueue<>(CAPACITY);
+    private final Writer out;
+    private final Thread thread;
+
+    /**
+     * @param file
+     *            the file to write, which gets truncated
+     * @throws IOException
+     *             if the file can not be opened
+     */
+    AsyncRowWriter(final File file) throws IOException {
+        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+        thread = new Thread(this::drain, "Writer for " + file.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Enqueues a row. The values array must not be modified afterwards.
+     *
+     * @param time
+     *            the time
+     * @param step
+     *            the step
+     * @param values
+     *            the sampled values
+     * @param separator
+     *            the value separator
+     * @param logTime
+     *            true if the time must be written
+     * @param logStep
+     *            true if the step must be written
+     */
+    void write(final double time, final long step, final double[] values, final String separator,
+            final boolean logTime, final boolean logStep) {
+        put(new Row(time, step, values, separator, logTime, logStep));
+    }
+
+    /**
+     * Waits for all the enqueued rows to be written, and closes the file.
+     */
+    @Override
+    public void close() {
+        put(END);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void put(final Row row) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                rows.put(row);
+                break;
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Rows keep being consumed even after a failure, so that the simulation
+     * never blocks on a full buffer.
+     */
+    private void drain() {
+        final List<Row> batch = new ArrayList<>(CAPACITY);
+        final StringBuilder line = new StringBuilder();
+        final String newLine = System.lineSeparator();
+        boolean failed = false;
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(rows.take());
+            } catch (final InterruptedException e) {
+                continue;
+            }
+            rows.drainTo(batch);
+            for (final Row row : batch) {
+                if (row == END) {
+                    running = false;
+                    break;
+                }
+                if (!failed) {
+                    line.setLength(0);
+                    row.format(line).append(newLine);
+                    try {
+                        out.append(line);
+                    } catch (final IOException e) {
+                        L.error("Could not write the sampled data", e);
+                        failed = true;
+                    }
+                }
+            }
+            batch.clear();
+        }
+        try {
+            out.close();
+        } catch (final IOException e) {
+            L.error("Could not write the sampled data", e);
+        }
+    }
+
+    private static final class Row {
+        private final double time;
+        private final long step;
+        private final double[] values;
+        private final String separator;
+        private final boolean logTime;
+        private final boolean logStep;
+
+        Row(final double time, final long step, final double[] values, final String separator,
+                final boolean logTime, final boolean logStep) {
+            this.time = time;
+            this.step = step;
+            this.values = values;
+            this.separator = separator;
+            this.logTime = logTime;
+            this.logStep = logStep;
+        }
+
+        StringBuilder format(final StringBuilder sb) {
+            if (logTime) {
+                sb.append(time).append(separator);
+            }
+            if (logStep) {
+                sb.append(step).append(separator);
+            }
+            for (final double d : values) {
+                sb.append(d).append(separator);
+            }
+            return sb;
+        }
+    }
+
+}
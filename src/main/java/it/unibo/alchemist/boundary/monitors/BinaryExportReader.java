@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the files written by an {@link EnvironmentInspector} in binary mode,
+ * either row by row or one column at a time. A trailing incomplete row, left
+ * by a simulation which did not terminate properly, is ignored.
+ */
+public final class BinaryExportReader implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private final FileChannel channel;
+    private final List<String> columns;
+    private final long dataStart;
+    private final long rows;
+    private final ByteBuffer buffer;
+    private long nextRow;
+
+    /**
+     * @param file
+     *            the file to read
+     * @throws IOException
+     *             if the file can not be read, or it is not a binary export
+     */
+    public BinaryExportReader(final Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            final ByteBuffer header = read(0, 4 * Integer.BYTES);
+            if (header.getInt() != BinaryRowWriter.MAGIC || header.getInt() != BinaryRowWriter.VERSION) {
+                throw new IOException(file + " is not a binary export.");
+            }
+            dataStart = header.getInt();
+            final int count = header.getInt();
+            final ByteBuffer names = read(header.capacity(), (int) dataStart - header.capacity());
+            final List<String> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final byte[] name = new byte[names.getInt()];
+                names.get(name);
+                result.add(new String(name, StandardCharsets.UTF_8));
+            }
+            columns = Collections.unmodifiableList(result);
+            final int rowSize = Double.BYTES * count;
+            rows = count == 0 ? 0 : (channel.size() - dataStart) / rowSize;
+            buffer = ByteBuffer.allocateDirect(Math.max(rowSize, BUFFER_SIZE / Math.max(rowSize, 1) * rowSize))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the names of the columns, in order
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the number of complete rows in the file
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Reads the next row.
+     *
+     * @param row
+     *            where to store the values, one per column
+     * @return false if there are no more rows
+     * @throws IOException
+     *             if the file can not be read
+     */
+    public boolean readRow(final double[] row) throws IOException {
+        if (row.length != columns.size()) {
+            throw new IllegalArgumentException(columns.size() + " columns, but the row has " + row.length + " slots.");
+        }
+        if (nextRow >= rows) {
+            return false;
+        }
+        if (!buffer.hasRemaining()) {
+            final long position = dataStart + nextRow * Double.BYTES * columns.size();
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), (rows - nextRow) * Double.BYTES * columns.size()));
+            fill(buffer, position);
+            buffer.flip();
+        }
+        for (int i = 0; i < row.length; i++) {
+            row[i] = buffer.getDouble();
+        }
+        nextRow++;
+        return true;
+    }
+
+    /**
+     * Reads a whole column, independently from the rows read so far.
+     *
+     * @param column
+     *            the index of the column in {@link #getColumns()}
+     * @return the values of the column
+     * @throws IOException
+     *             if the file can not be read
+     */
+    public double[] readColumn(final int column) throws IOException {
+        if (column < 0 || column >= columns.size()) {
+            throw new IndexOutOfBoundsException("No column " + column);
+        }
+        if (rows > Integer.MAX_VALUE) {
+            throw new IllegalStateException(rows + " rows do not fit an array.");
+        }
+        final int rowSize = Double.BYTES * columns.size();
+        final double[] result = new double[(int) rows];
+        final ByteBuffer chunk = ByteBuffer.allocateDirect(buffer.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int done = 0; done < result.length;) {
+            chunk.clear();
+            chunk.limit((int) Math.min(chunk.capacity(), (long) (result.length - done) * rowSize));
+            fill(chunk, dataStart + (long) done * rowSize);
+            chunk.flip();
+            for (int offset = column * Double.BYTES; offset < chunk.limit(); offset += rowSize) {
+                result[done++] = chunk.getDouble(offset);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param name
+     *            the column name
+     * @return the values of the column
+     * @throws IOException
+     *             if the file can not be read
+     */
+    public double[] readColumn(final String name) throws IOException {
+        final int index = columns.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("No column named " + name);
+        }
+        return readColumn(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer read(final long position, final int size) throws IOException {
+        final ByteBuffer result = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        fill(result, position);
+        result.flip();
+        return result;
+    }
+
+    private void fill(final ByteBuffer target, final long position) throws IOException {
+        long current = position;
+        while (target.hasRemaining()) {
+            final int read = channel.read(target, current);
+            if (read < 0) {
+                throw new EOFException("Truncated binary export");
+            }
+            current += read;
+        }
+    }
+
+}
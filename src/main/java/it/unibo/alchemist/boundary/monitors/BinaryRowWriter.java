@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the rows sampled by an {@link EnvironmentInspector} in the binary
+ * format read by {@link BinaryExportReader}: a header, followed by one
+ * fixed-width row of little-endian doubles per sample. The header is made of
+ * little-endian ints:
+ *
+ * <pre>
+ * magic, version, header length in bytes, number of columns,
+ * then, for each column, the length of its UTF-8 name and the name itself
+ * </pre>
+ *
+ * and it is padded with zeros to a multiple of 8 bytes, so that the rows can
+ * be memory-mapped as a double array. Columns are time and step, if logged,
+ * followed by the sampled values. The number of values is set by the first
+ * row: shorter rows are padded with NaN, while longer rows, which the format
+ * can not hold, are dropped and logged.
+ */
+final class BinaryRowWriter implements AutoCloseable {
+
+    static final int MAGIC = 0x414C5845;
+    static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final Logger L = LoggerFactory.getLogger(BinaryRowWriter.class);
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final boolean logTime;
+    private final boolean logStep;
+    private int width = -1;
+    private long dropped;
+
+    /**
+     * @param file
+     *            the file to write, which gets truncated
+     * @param logTime
+     *            true if the time must be written
+     * @param logStep
+     *            true if the step must be written
+     * @throws IOException
+     *             if the file can not be opened
+     */
+    BinaryRowWriter(final File file, final boolean logTime, final boolean logStep) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.logTime = logTime;
+        this.logStep = logStep;
+    }
+
+    /**
+     * @param time
+     *            the time
+     * @param step
+     *            the step
+     * @param values
+     *            the sampled values
+     * @throws IOException
+     *             if the row can not be written
+     */
+    void write(final double time, final long step, final double[] values) throws IOException {
+        if (width < 0) {
+            writeHeader(values.length);
+        }
+        if (values.length > width) {
+            if (dropped++ == 0) {
+                L.warn("The binary format allows at most {} values per row, {} were sampled at step {}: "
+                        + "such rows are dropped.", width, values.length, step);
+            }
+            return;
+        }
+        ensure(Double.BYTES * (width + 2));
+        if (logTime) {
+            buffer.putDouble(time);
+        }
+        if (logStep) {
+            buffer.putDouble(step);
+        }
+        for (final double value : values) {
+            buffer.putDouble(value);
+        }
+        for (int i = values.length; i < width; i++) {
+            buffer.putDouble(Double.NaN);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (width < 0) {
+                writeHeader(0);
+            }
+            flush();
+            if (dropped > 0) {
+                L.warn("{} rows were dropped, since they had more than {} values.", dropped, width);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeHeader(final int values) throws IOException {
+        width = values;
+        final List<byte[]> names = new ArrayList<>();
+        if (logTime) {
+            names.add("time".getBytes(StandardCharsets.UTF_8));
+        }
+        if (logStep) {
+            names.add("step".getBytes(StandardCharsets.UTF_8));
+        }
+        for (int i = 0; i < values; i++) {
+            names.add(("value" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        int length = 4 * Integer.BYTES;
+        for (final byte[] name : names) {
+            length += Integer.BYTES + name.length;
+        }
+        final int padded = (length + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+        ensure(padded);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(padded).putInt(names.size());
+        for (final byte[] name : names) {
+            buffer.putInt(name.length).put(name);
+        }
+        for (int i = length; i < padded; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    private void ensure(final int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
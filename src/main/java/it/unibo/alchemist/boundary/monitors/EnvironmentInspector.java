@@ -16,6 +16,7 @@ import it.unibo.alchemist.model.interfaces.Time;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
@@ -53,7 +54,12 @@ public abstract class EnvironmentInspector<T> implements OutputMonitor<T> {
 
     private final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss-SSS", Locale.getDefault());
     private PrintStream writer;
+    private transient AsyncRowWriter asyncWriter;
+    private transient BinaryRowWriter binaryWriter;
     private String fpCache;
+    private int intervalCache;
+    private int intervaloomCache;
+    private double sample = Double.NaN;
     private double lastUpdate = Double.NEGATIVE_INFINITY;
     private long lastStep = Long.MIN_VALUE;
     private final Semaphore mutex = new Semaphore(1);
@@ -73,13 +79,14 @@ public abstract class EnvironmentInspector<T> implements OutputMonitor<T> {
     private RangedInteger intervaloom = new RangedInteger(-OOM_RANGE, OOM_RANGE, 0);
     @ExportForGUI(nameToExport = "Sample space")
     private RangedInteger interval = new RangedInteger(1, 100, 1);
+    @ExportForGUI(nameToExport = "Write in background")
+    private boolean async;
+    @ExportForGUI(nameToExport = "Binary output")
+    private boolean binary;
 
     @Override
     public void finished(final Environment<T> env, final Time time, final long step) {
-        if (writer != null) {
-            writer.close();
-        }
-        writer = null;
+        close();
         lastUpdate = Double.NEGATIVE_INFINITY;
         lastStep = Long.MIN_VALUE;
         fpCache = null;
@@ -93,28 +100,63 @@ public abstract class EnvironmentInspector<T> implements OutputMonitor<T> {
     @Override
     public void stepDone(final Environment<T> env, final Reaction<T> r, final Time time, final long step) {
         mutex.acquireUninterruptibly();
-        if (System.identityHashCode(fpCache) != System.identityHashCode(filePath)) {
-            fpCache = filePath;
-            if (writer != null) {
-                writer.close();
+        try {
+            if (System.identityHashCode(fpCache) != System.identityHashCode(filePath)) {
+                fpCache = filePath;
+                close();
+                if (binary) {
+                    try {
+                        binaryWriter = new BinaryRowWriter(new File(fpCache), logTime, logStep);
+                    } catch (IOException e) {
+                        L.error("Could not create a binary writer", e);
+                    }
+                } else if (async) {
+                    try {
+                        asyncWriter = new AsyncRowWriter(new File(fpCache));
+                    } catch (IOException e) {
+                        L.error("Could not create a background writer", e);
+                    }
+                } else {
+                    try {
+                        writer = new PrintStream(new File(fpCache), StandardCharsets.UTF_8.name());
+                    } catch (FileNotFoundException | UnsupportedEncodingException e) {
+                        L.error("Could create a PrintStream", e);
+                    }
+                }
             }
-            try {
-                writer = new PrintStream(new File(fpCache), StandardCharsets.UTF_8.name());
-            } catch (FileNotFoundException | UnsupportedEncodingException e) {
-                L.error("Could create a PrintStream", e);
+            final int i = interval.getVal();
+            final int oom = intervaloom.getVal();
+            if (Double.isNaN(sample) || i != intervalCache || oom != intervaloomCache) {
+                intervalCache = i;
+                intervaloomCache = oom;
+                sample = i * FastMath.pow(10, oom);
             }
+            final boolean log = mode.equals(Mode.TIME)
+                    ? time.toDouble() - lastUpdate >= sample
+                    : lastStep == Long.MIN_VALUE || step - lastStep >= sample;
+            if (log) {
+                lastUpdate = time.toDouble();
+                lastStep = step;
+                writeData(env, r, time, step);
+            }
+        } finally {
+            mutex.release();
         }
-        final double sample = interval.getVal() * FastMath.pow(10, intervaloom.getVal());
-        final boolean log = mode.equals(Mode.TIME) ? time.toDouble() - lastUpdate >= sample : step - lastStep >= sample;
-        if (log) {
-            lastUpdate = time.toDouble();
-            lastStep = step;
-            writeData(env, r, time, step);
-        }
-        mutex.release();
     }
 
     private void writeData(final Environment<T> env, final Reaction<T> r, final Time time, final long step) {
+        if (binaryWriter != null) {
+            try {
+                binaryWriter.write(time.toDouble(), step, extractValues(env, r, time, step));
+            } catch (IOException e) {
+                L.error("Could not write the sampled data", e);
+            }
+            return;
+        }
+        if (asyncWriter != null) {
+            asyncWriter.write(time.toDouble(), step, extractValues(env, r, time, step), separator, logTime, logStep);
+            return;
+        }
         if (writer == null) {
             throw new IllegalStateException("Error initializing the file writer in " + getClass().getCanonicalName());
         }
@@ -133,6 +175,25 @@ public abstract class EnvironmentInspector<T> implements OutputMonitor<T> {
         writer.println();
     }
 
+    private void close() {
+        if (writer != null) {
+            writer.close();
+        }
+        writer = null;
+        if (asyncWriter != null) {
+            asyncWriter.close();
+        }
+        asyncWriter = null;
+        if (binaryWriter != null) {
+            try {
+                binaryWriter.close();
+            } catch (IOException e) {
+                L.error("Could not write the sampled data", e);
+            }
+        }
+        binaryWriter = null;
+    }
+
     /**
      * @return file path
      */
@@ -238,6 +299,48 @@ public abstract class EnvironmentInspector<T> implements OutputMonitor<T> {
         this.interval = i;
     }
 
+    /**
+     * @return true if the data is formatted and written by a background
+     *         thread
+     */
+    public boolean isWritingInBackground() {
+        return async;
+    }
+
+    /**
+     * @param a
+     *            true if the data should be formatted and written by a
+     *            background thread. It takes effect when the file gets
+     *            opened, namely at the first step or when the file path
+     *            changes. The arrays returned by
+     *            {@link #extractValues(Environment, Reaction, Time, long)}
+     *            must not be modified afterwards
+     */
+    public void setWritingInBackground(final boolean a) {
+        this.async = a;
+    }
+
+    /**
+     * @return true if the data is written in the binary format read by
+     *         {@link BinaryExportReader}
+     */
+    public boolean isWritingBinary() {
+        return binary;
+    }
+
+    /**
+     * @param b
+     *            true if the data should be written in the binary format read
+     *            by {@link BinaryExportReader}, rather than as text. The binary
+     *            format is written on the simulation thread, regardless of
+     *            {@link #setWritingInBackground(boolean)}. It takes effect
+     *            when the file gets opened, and so do the time and step
+     *            columns
+     */
+    public void setWritingBinary(final boolean b) {
+        this.binary = b;
+    }
+
     /**
      * This method extracts data values from an environment snapshot.
      * 
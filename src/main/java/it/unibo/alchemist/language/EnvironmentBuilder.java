@@ -13,13 +13,19 @@ import java.io.InputStream;
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java8.util.Optional;
 import java.util.Random;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -27,11 +33,16 @@ import java.util.concurrent.Future;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.danilopianini.lang.PrimitiveUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -40,6 +51,7 @@ import org.xml.sax.SAXException;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import org.apache.commons.math3.random.RandomGenerator;
+import it.unibo.alchemist.model.implementations.reactions.AReaction;
 import it.unibo.alchemist.model.implementations.times.DoubleTime;
 import it.unibo.alchemist.model.interfaces.Action;
 import it.unibo.alchemist.model.interfaces.Concentration;
@@ -60,12 +72,26 @@ public final class EnvironmentBuilder<T> {
 
     private static final Logger L = LoggerFactory.getLogger(EnvironmentBuilder.class);
     private static final String DEFAULT_PACKAGE = "it.unibo.alchemist.";
+    private static final int NODES_PER_THREAD = 256;
     private static final String LINKINGRULES_DEFAULT_PACKAGE = DEFAULT_PACKAGE + "model.implementations.linkingrules.";
     private static final String NAME = "name";
     private static final String REACTIONS_DEFAULT_PACKAGE = DEFAULT_PACKAGE + "model.implementations.reactions.";
     private static final String TEXT = "#text";
     private static final String TYPE = "type";
     private static final Class<?>[] TYPES = new Class<?>[] { List.class, Integer.TYPE, Double.TYPE, Boolean.TYPE, Character.TYPE, Byte.TYPE, Short.TYPE, Long.TYPE, Float.TYPE };
+    private static final Map<String, Class<?>> CLASSES = new ConcurrentHashMap<>();
+    private static final ClassValue<Constructor<?>[]> CONSTRUCTORS = new ClassValue<Constructor<?>[]>() {
+        @Override
+        protected Constructor<?>[] computeValue(final Class<?> type) {
+            return type.getConstructors();
+        }
+    };
+    private static final ClassValue<Map<List<Object>, Constructor<?>>> RESOLVED_CONSTRUCTORS = new ClassValue<Map<List<Object>, Constructor<?>>>() {
+        @Override
+        protected Map<List<Object>, Constructor<?>> computeValue(final Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
 
     private Class<?> concentrationClass;
     private final Random internalRandom = new Random();
@@ -74,16 +100,27 @@ public final class EnvironmentBuilder<T> {
     private int seed;
     private Environment<T> result;
     private final InputStream xmlFile;
+    private final boolean streaming;
+    private final int threads;
 
     /**
      * Builds a new XML interpreter.
      * 
      * @param xmlStream
      *            the input stream to interpret
+     * @param streamingMode
+     *            true to process the elements as they are read
+     * @param parallelism
+     *            the number of threads building nodes
      */
-    private EnvironmentBuilder(final InputStream xmlStream) {
+    private EnvironmentBuilder(final InputStream xmlStream, final boolean streamingMode, final int parallelism) {
         super();
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("At least one thread is required, " + parallelism + " provided.");
+        }
         xmlFile = xmlStream;
+        streaming = streamingMode;
+        threads = parallelism;
     }
 
     private Action<T> buildAction(final Node son, final Map<String, Object> env) throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException {
@@ -97,8 +134,8 @@ public final class EnvironmentBuilder<T> {
             if (!args.isEmpty()) {
                 arguments.add(args);
             }
-            final List<Constructor<Concentration<T>>> list = unsafeExtractConstructors(concentrationClass);
-            return tryToBuild(list, arguments, subenv, random).getContent();
+            final Concentration<T> concentration = tryToBuild(concentrationClass, arguments, subenv, random);
+            return concentration.getContent();
         }
         L.error("concentration class not yet defined");
         return null;
@@ -142,82 +179,135 @@ public final class EnvironmentBuilder<T> {
      *             if the XML is not correctly formatted
      * @throws ParserConfigurationException
      *             should not happen.
+     * @throws XMLStreamException
+     *             if the XML is not correctly formatted (streaming mode)
      */
-    private void buildEnvironment() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException {
+    private void buildEnvironment() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, XMLStreamException {
+        L.debug("Starting processing");
+        random = null;
+        if (streaming) {
+            streamEnvironment();
+            return;
+        }
         final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
         final DocumentBuilder builder = factory.newDocumentBuilder();
         final Document doc = builder.parse(xmlFile);
-        L.debug("Starting processing");
-        random = null;
         final Node root = doc.getFirstChild();
         if (root.getNodeName().equals("environment") && doc.getChildNodes().getLength() == 1) {
-            final NamedNodeMap atts = root.getAttributes();
-            String type = atts.getNamedItem(TYPE).getNodeValue();
-            type = type.contains(".") ? type : "it.unibo.alchemist.model.implementations.environments." + type;
-            result = coreOperations(new ConcurrentHashMap<String, Object>(), root, type, null);
+            final Map<String, Object> env = initEnvironment(root);
             synchronized (result) {
-                final Node nameNode = atts.getNamedItem(NAME);
-                final String name = nameNode == null ? "" : nameNode.getNodeValue();
-                final Map<String, Object> env = new ConcurrentHashMap<String, Object>();
-                env.put("ENV", result);
-                if (!name.equals("")) {
-                    env.put(name, result);
-                }
-                final NodeList children = root.getChildNodes();
-                for (int i = 0; i < children.getLength(); i++) {
-                    final Node son = children.item(i);
-                    final String kind = son.getNodeName();
-                    L.debug(kind);
-                    if (!kind.equals(TEXT)) {
-                        final Node sonNameAttr = son.getAttributes().getNamedItem(NAME);
-                        final String sonName = sonNameAttr == null ? "" : sonNameAttr.getNodeValue();
-                        Object sonInstance = null;
-                        if (kind.equals("molecule")) {
-                            sonInstance = buildMolecule(son, env);
-                        } else if (kind.equals("concentration")) {
-                            if (concentrationClass == null) {
-                                setConcentration(son);
-                            }
-                        } else if (kind.equals("position")) {
-                            if (positionClass == null) {
-                                setPosition(son);
-                            }
-                        } else if (kind.equals("random")) {
-                            setRandom(son, env);
-                        } else if (kind.equals("linkingrule")) {
-                            result.setLinkingRule(buildLinkingRule(son, env));
-                        } else if (kind.equals("condition")) {
-                            sonInstance = buildCondition(son, env);
-                        } else if (kind.equals("action")) {
-                            sonInstance = buildAction(son, env);
-                        } else if (kind.equals("reaction")) {
-                            sonInstance = buildReaction(son, env);
-                        } else if (kind.equals("node")) {
-                            final it.unibo.alchemist.model.interfaces.Node<T> node = buildNode(son, env);
-                            final Position pos = buildPosition(son, env);
-                            sonInstance = node;
-                            result.addNode(node, pos);
-                        } else if (kind.equals("time")) {
-                            sonInstance = buildTime(son, env);
-                        }
-                        if (sonInstance != null) {
-                            env.put(sonName, sonInstance);
+                try (ElementProcessor processor = new ElementProcessor(env)) {
+                    final NodeList children = root.getChildNodes();
+                    for (int i = 0; i < children.getLength(); i++) {
+                        final Node son = children.item(i);
+                        if (!son.getNodeName().equals(TEXT)) {
+                            processor.accept(son);
                         }
                     }
+                    processor.flush();
                 }
-                /*
-                 * This operation forces a reset to the random generator. It
-                 * ensures that if the user reloads the same random seed she
-                 * passed in the specification, the simulation will still be
-                 * reproducible.
-                 */
-                random.setSeed(seed);
+                resetRandom();
             }
         } else {
             L.error("XML does not contain one and one only environment.");
         }
     }
 
+    /*
+     * Pulls one child of the environment at a time, and turns it into a
+     * detached DOM subtree which becomes garbage as soon as it is processed:
+     * memory usage depends on the size of the largest child, not on the size
+     * of the file.
+     */
+    private void streamEnvironment() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, ParserConfigurationException, XMLStreamException {
+        final Document scratch = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(xmlFile);
+        try {
+            if (nextElement(reader) && reader.getLocalName().equals("environment")) {
+                final Map<String, Object> env = initEnvironment(startElement(reader, scratch));
+                synchronized (result) {
+                    try (ElementProcessor processor = new ElementProcessor(env)) {
+                        while (nextElement(reader)) {
+                            processor.accept(readSubtree(reader, scratch));
+                        }
+                        processor.flush();
+                    }
+                    resetRandom();
+                }
+            } else {
+                L.error("XML does not contain one and one only environment.");
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /*
+     * Builds the environment itself, and returns the map of named objects.
+     */
+    private Map<String, Object> initEnvironment(final Node root) throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException {
+        final NamedNodeMap atts = root.getAttributes();
+        String type = atts.getNamedItem(TYPE).getNodeValue();
+        type = type.contains(".") ? type : "it.unibo.alchemist.model.implementations.environments." + type;
+        result = coreOperations(new ConcurrentHashMap<String, Object>(), root, type, null);
+        final Node nameNode = atts.getNamedItem(NAME);
+        final String name = nameNode == null ? "" : nameNode.getNodeValue();
+        final Map<String, Object> env = new ConcurrentHashMap<String, Object>();
+        env.put("ENV", result);
+        if (!name.equals("")) {
+            env.put(name, result);
+        }
+        return env;
+    }
+
+    private void buildElement(final Node son, final Map<String, Object> env) throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException {
+        final String kind = son.getNodeName();
+        L.debug(kind);
+        final Node sonNameAttr = son.getAttributes().getNamedItem(NAME);
+        final String sonName = sonNameAttr == null ? "" : sonNameAttr.getNodeValue();
+        Object sonInstance = null;
+        if (kind.equals("molecule")) {
+            sonInstance = buildMolecule(son, env);
+        } else if (kind.equals("concentration")) {
+            if (concentrationClass == null) {
+                setConcentration(son);
+            }
+        } else if (kind.equals("position")) {
+            if (positionClass == null) {
+                setPosition(son);
+            }
+        } else if (kind.equals("random")) {
+            setRandom(son, env);
+        } else if (kind.equals("linkingrule")) {
+            result.setLinkingRule(buildLinkingRule(son, env));
+        } else if (kind.equals("condition")) {
+            sonInstance = buildCondition(son, env);
+        } else if (kind.equals("action")) {
+            sonInstance = buildAction(son, env);
+        } else if (kind.equals("reaction")) {
+            sonInstance = buildReaction(son, env);
+        } else if (kind.equals("node")) {
+            final it.unibo.alchemist.model.interfaces.Node<T> node = buildNode(son, env);
+            final Position pos = buildPosition(son, env);
+            sonInstance = node;
+            result.addNode(node, pos);
+        } else if (kind.equals("time")) {
+            sonInstance = buildTime(son, env);
+        }
+        if (sonInstance != null) {
+            env.put(sonName, sonInstance);
+        }
+    }
+
+    /*
+     * This operation forces a reset to the random generator. It ensures that
+     * if the user reloads the same random seed she passed in the
+     * specification, the simulation will still be reproducible.
+     */
+    private void resetRandom() {
+        random.setSeed(seed);
+    }
+
     private LinkingRule<T> buildLinkingRule(final Node rootLinkingRule, final Map<String, Object> env) throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException {
         final NamedNodeMap attributes = rootLinkingRule.getAttributes();
         // final Node nameNode = attributes.getNamedItem(NAME);
@@ -237,6 +327,15 @@ public final class EnvironmentBuilder<T> {
     }
 
     private it.unibo.alchemist.model.interfaces.Node<T> buildNode(final Node rootNode, final Map<String, Object> env) throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException {
+        final it.unibo.alchemist.model.interfaces.Node<T> res = createNode(rootNode, env);
+        populateNode(res, rootNode, env);
+        return res;
+    }
+
+    /*
+     * Instances the node alone: the node id gets assigned here.
+     */
+    private it.unibo.alchemist.model.interfaces.Node<T> createNode(final Node rootNode, final Map<String, Object> env) throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException {
         final NamedNodeMap attributes = rootNode.getAttributes();
         final Node nameNode = attributes.getNamedItem(NAME);
         final String name = nameNode == null ? "" : nameNode.getNodeValue();
@@ -248,6 +347,15 @@ public final class EnvironmentBuilder<T> {
         }
         env.put(name, res);
         env.put("NODE", res);
+        return res;
+    }
+
+    /*
+     * Builds the content and the reactions of a node created by createNode.
+     */
+    private void populateNode(final it.unibo.alchemist.model.interfaces.Node<T> res, final Node rootNode, final Map<String, Object> env) throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException {
+        final Node nameNode = rootNode.getAttributes().getNamedItem(NAME);
+        final String name = nameNode == null ? "" : nameNode.getNodeValue();
         final NodeList children = rootNode.getChildNodes();
         for (int i = 0; i < children.getLength(); i++) {
             final Node son = children.item(i);
@@ -270,15 +378,15 @@ public final class EnvironmentBuilder<T> {
                     for (int j = 0; j < moleculesMap.getLength(); j++) {
                         final Node molNode = moleculesMap.item(j);
                         final String molName = molNode.getNodeName();
-                        L.debug("checking molecule " + molName);
+                        L.debug("checking molecule {}", molName);
                         if (env.containsKey(molName)) {
-                            L.debug(molName + " found");
+                            L.debug("{} found", molName);
                             final Object molObj = env.get(molName);
                             if (molObj instanceof Molecule) {
-                                L.debug(molName + " matches in environment");
+                                L.debug("{} matches in environment", molName);
                                 final Molecule mol = (Molecule) molObj;
                                 final T conc = buildConcentration(molNode, env);
-                                L.debug(molName + " concentration: " + conc);
+                                L.debug("{} concentration: {}", molName, conc);
                                 sonInstance = conc;
                                 res.setConcentration(mol, conc);
                             } else {
@@ -304,7 +412,6 @@ public final class EnvironmentBuilder<T> {
         }
         env.remove(name);
         env.remove("NODE");
-        return res;
     }
 
     private void updateEnv(final String name, final String curElem, final Object elem, final Map<String, Object> env) {
@@ -334,8 +441,7 @@ public final class EnvironmentBuilder<T> {
                     arguments.add(tk.nextToken());
                 }
                 arguments.trimToSize();
-                final List<Constructor<Position>> list = unsafeExtractConstructors(positionClass);
-                return tryToBuild(list, arguments, env, random);
+                return tryToBuild(positionClass, arguments, env, random);
             }
         }
         return null;
@@ -345,7 +451,8 @@ public final class EnvironmentBuilder<T> {
         final NamedNodeMap attributes = rootReact.getAttributes();
         final Node nameNode = attributes.getNamedItem(NAME);
         final String name = nameNode == null ? "" : nameNode.getNodeValue();
-        String type = attributes.getNamedItem(TYPE).getNodeValue();
+        final Node typeNode = attributes.getNamedItem(TYPE);
+        String type = typeNode == null ? "" : typeNode.getNodeValue();
         type = type.contains(".") ? type : REACTIONS_DEFAULT_PACKAGE + type;
         final Reaction<T> res = coreOperations(env, rootReact, type, random);
         if (!name.equals("")) {
@@ -399,8 +506,8 @@ public final class EnvironmentBuilder<T> {
         final NamedNodeMap attributes = son.getAttributes();
         String type = attributes.getNamedItem(TYPE).getNodeValue();
         type = type.contains(".") ? type : "it.unibo.alchemist.model.implementations.concentrations." + type;
-        concentrationClass = Class.forName(type);
-        L.debug("Concentration type set to " + concentrationClass);
+        concentrationClass = classForName(type);
+        L.debug("Concentration type set to {}", concentrationClass);
     }
 
     private void setPosition(final Node son) throws ClassNotFoundException {
@@ -409,8 +516,8 @@ public final class EnvironmentBuilder<T> {
         if (!type.contains(".")) {
             type = "it.unibo.alchemist.model.implementations.positions." + type;
         }
-        positionClass = Class.forName(type);
-        L.debug("Position type set to " + positionClass);
+        positionClass = classForName(type);
+        L.debug("Position type set to {}", positionClass);
     }
 
     private void setRandom(final Node son, final Map<String, Object> env) throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException {
@@ -428,9 +535,7 @@ public final class EnvironmentBuilder<T> {
         seed = seed.equalsIgnoreCase("RANDOM") ? Integer.toString(internalRandom.nextInt()) : seed;
         final List<String> params = new ArrayList<>(1);
         params.add(seed);
-        final Class<?> randomEngineClass = Class.forName(type);
-        final List<Constructor<RandomGenerator>> consList = unsafeExtractConstructors(randomEngineClass);
-        random = tryToBuild(consList, params, env, null);
+        random = tryToBuild(classForName(type), params, env, null);
         this.seed = Integer.parseInt(seed);
     }
 
@@ -457,22 +562,46 @@ public final class EnvironmentBuilder<T> {
         final NamedNodeMap atts = root.getAttributes();
         final Node nameNode = atts.getNamedItem(NAME);
         final String name = nameNode == null ? "" : nameNode.getNodeValue();
-        if (!name.equals("") && atts.getLength() == 1 && environment.containsKey(name)) {
+        if (isReference(root) && environment.containsKey(name)) {
             return (E) environment.get(name);
         }
-        final Class<?> objClass = (Class<?>) Class.forName(type);
-        final List<Constructor<E>> consList = unsafeExtractConstructors(objClass);
+        final Class<?> objClass = classForName(type);
         final ArrayList<String> params = new ArrayList<String>();
         int index = 0;
         for (Node param = atts.getNamedItem("p0"); param != null; param = atts.getNamedItem("p" + (++index))) {
             params.add(param.getNodeValue());
         }
         params.trimToSize();
-        final E res = tryToBuild(consList, params, environment, random);
+        final E res = tryToBuild(objClass, params, environment, random);
         environment.put(name, res);
         return res;
     }
 
+    /*
+     * Elements with a name and nothing else refer to an object defined before.
+     */
+    private static boolean isReference(final Node root) {
+        final NamedNodeMap atts = root.getAttributes();
+        final Node nameNode = atts.getNamedItem(NAME);
+        return nameNode != null && !nameNode.getNodeValue().isEmpty() && atts.getLength() == 1;
+    }
+
+    /*
+     * The reactions that populateNode instantiates, namely the reaction
+     * children of the node which are not references.
+     */
+    private static int reactionsBuiltBy(final Node node) {
+        int count = 0;
+        final NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            final Node son = children.item(i);
+            if (son.getNodeName().equals("reaction") && !isReference(son)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private static Optional<Number> extractNumber(final String n) {
         long resl = 0;
         double resd = 0;
@@ -499,14 +628,14 @@ public final class EnvironmentBuilder<T> {
     @SuppressWarnings("unchecked")
     private static Object parseAndCreate(final Class<?> clazz, final String val, final Map<String, Object> env, final RandomGenerator random) throws InstantiationException, IllegalAccessException, InvocationTargetException {
         if (clazz.isAssignableFrom(RandomGenerator.class) && val.equalsIgnoreCase("random")) {
-            L.debug("Random detected! Class " + clazz.getSimpleName() + ", param: " + val);
+            L.debug("Random detected! Class {}, param: {}", clazz.getSimpleName(), val);
             if (random == null) {
                 L.error("Random instatiation required, but RandomGenerator not yet defined.");
             }
             return random;
         }
         if (clazz.isPrimitive() || PrimitiveUtils.classIsWrapper(clazz)) {
-            L.debug(val + " is a primitive or a wrapper: " + clazz);
+            L.debug("{} is a primitive or a wrapper: {}", val, clazz);
             if ((clazz.isAssignableFrom(Boolean.TYPE) || clazz.isAssignableFrom(Boolean.class)) && (val.equalsIgnoreCase("true") || val.equalsIgnoreCase("false"))) {
                 return Boolean.parseBoolean(val);
             }
@@ -529,22 +658,21 @@ public final class EnvironmentBuilder<T> {
             }
         }
         if (List.class.isAssignableFrom(clazz) && val.startsWith("[") && val.endsWith("]")) {
-            final List<Constructor<List<?>>> l = unsafeExtractConstructors(clazz);
             @SuppressWarnings("rawtypes")
-            final List list = tryToBuild(l, new ArrayList<String>(0), env, random);
+            final List list = tryToBuild(clazz, new ArrayList<String>(0), env, random);
             final StringTokenizer strt = new StringTokenizer(val.substring(1, val.length() - 1), ",; ");
             while (strt.hasMoreTokens()) {
                 final String sub = strt.nextToken();
                 final Object o = tryToParse(sub, env, random);
                 if (o == null) {
-                    L.debug("WARNING: list elemnt skipped: " + sub);
+                    L.debug("WARNING: list elemnt skipped: {}", sub);
                 } else {
                     list.add(o);
                 }
             }
             return list;
         }
-        L.debug(val + " is not a primitive: " + clazz + ". Searching it in the environment...");
+        L.debug("{} is not a primitive: {}. Searching it in the environment...", val, clazz);
         final Object o = env.get(val);
         if (o != null && clazz.isInstance(o)) {
             return o;
@@ -553,41 +681,170 @@ public final class EnvironmentBuilder<T> {
             return new DoubleTime(Double.parseDouble(val));
         }
         if (clazz.isAssignableFrom(String.class)) {
-            L.debug("String detected! Passing " + val + " back.");
+            L.debug("String detected! Passing {} back.", val);
             return val;
         }
-        L.debug(val + " not found or class not compatible, unable to go further.");
+        L.debug("{} not found or class not compatible, unable to go further.", val);
         return null;
     }
 
-    private static <E> E tryToBuild(final List<Constructor<E>> consList, final List<String> params, final Map<String, Object> env, final RandomGenerator random) throws InstantiationException, IllegalAccessException, InvocationTargetException {
-        for (final Constructor<E> c : consList) {
-            L.debug("Trying to build with constructor " + c);
-            final Class<?>[] args = c.getParameterTypes();
-            if (args.length == params.size()) {
-                L.debug("Parameters number matches (" + args.length + ").");
-                final Object[] finalArgs = new Object[args.length];
-                int i = 0;
-                boolean success = true;
-                for (; i < args.length && success; i++) {
-                    final String paramVal = params.get(i);
-                    final Class<?> paramClass = args[i];
-                    finalArgs[i] = parseAndCreate(paramClass, paramVal, env, random);
-                    if (!paramVal.equals("null") && finalArgs[i] == null) {
-                        L.debug("Unable to use this constructor.");
-                        success = false;
-                    }
-                }
-                if (success && i == args.length) {
-                    final E result = c.newInstance(finalArgs);
-                    // L.debug("Created object " + result);
-                    return result;
+    /*
+     * The first public constructor of clazz, in declaration order, whose
+     * parameters can all be created from params. The outcome of
+     * parseAndCreate only depends on the kind of each argument and on the
+     * class of the objects it names, so the constructor found for a
+     * signature is cached and used straight away next time.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> E tryToBuild(final Class<?> clazz, final List<String> params, final Map<String, Object> env, final RandomGenerator random) throws InstantiationException, IllegalAccessException, InvocationTargetException {
+        final List<Object> signature = signatureOf(params, env, random);
+        final Map<List<Object>, Constructor<?>> resolved = RESOLVED_CONSTRUCTORS.get(clazz);
+        final Constructor<?> known = resolved.get(signature);
+        if (known != null) {
+            final Object[] args = createArguments(known, params, env, random);
+            if (args != null) {
+                return (E) known.newInstance(args);
+            }
+        }
+        for (final Constructor<?> c : CONSTRUCTORS.get(clazz)) {
+            L.debug("Trying to build with constructor {}", c);
+            if (c.getParameterCount() == params.size()) {
+                final Object[] args = createArguments(c, params, env, random);
+                if (args != null) {
+                    resolved.put(signature, c);
+                    return (E) c.newInstance(args);
                 }
             }
         }
         throw new IllegalArgumentException("no compatible constructor find for " + params);
     }
 
+    /*
+     * The arguments for the constructor, or null if any of them can not be
+     * created.
+     */
+    private static Object[] createArguments(final Constructor<?> c, final List<String> params, final Map<String, Object> env, final RandomGenerator random) throws InstantiationException, IllegalAccessException, InvocationTargetException {
+        final Class<?>[] args = c.getParameterTypes();
+        final Object[] finalArgs = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            final String paramVal = params.get(i);
+            finalArgs[i] = parseAndCreate(args[i], paramVal, env, random);
+            if (!paramVal.equals("null") && finalArgs[i] == null) {
+                L.debug("Unable to use constructor {}", c);
+                return null;
+            }
+        }
+        return finalArgs;
+    }
+
+    private static List<Object> signatureOf(final List<String> params, final Map<String, Object> env, final RandomGenerator random) {
+        final List<Object> signature = new ArrayList<>(params.size() * 2 + 1);
+        signature.add(random == null);
+        for (final String param : params) {
+            signature.add(ArgumentKind.of(param));
+            final Object named = env.get(param);
+            signature.add(named == null ? null : named.getClass());
+        }
+        return signature;
+    }
+
+    private static Class<?> classForName(final String type) throws ClassNotFoundException {
+        final Class<?> cached = CLASSES.get(type);
+        if (cached != null) {
+            return cached;
+        }
+        final Class<?> clazz = Class.forName(type);
+        CLASSES.putIfAbsent(type, clazz);
+        return clazz;
+    }
+
+    /*
+     * Advances to the next start tag, returning true, or past the next end
+     * tag, returning false.
+     */
+    private static boolean nextElement(final XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static Element startElement(final XMLStreamReader reader, final Document doc) {
+        final Element element = doc.createElement(reader.getLocalName());
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        return element;
+    }
+
+    /*
+     * Reads the element the reader is positioned on, along with its
+     * descendants. Text is dropped, as it is never used.
+     */
+    private static Element readSubtree(final XMLStreamReader reader, final Document doc) throws XMLStreamException {
+        final Element element = startElement(reader, doc);
+        while (nextElement(reader)) {
+            element.appendChild(readSubtree(reader, doc));
+        }
+        return element;
+    }
+
+    private static boolean refersToRandom(final Node element) {
+        final NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            if (attributes.item(i).getNodeValue().equalsIgnoreCase("random")) {
+                return true;
+            }
+        }
+        final NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            final Node child = children.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE && refersToRandom(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Waits for a worker, and rethrows its failure as it was.
+     */
+    private static <V> V await(final Future<V> future) throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof InstantiationException) {
+                throw (InstantiationException) cause;
+            }
+            if (cause instanceof IllegalAccessException) {
+                throw (IllegalAccessException) cause;
+            }
+            if (cause instanceof InvocationTargetException) {
+                throw (InvocationTargetException) cause;
+            }
+            if (cause instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
     private static Object tryToParse(final String val, final Map<String, Object> env, final RandomGenerator random) throws InstantiationException, IllegalAccessException, InvocationTargetException {
         for (final Class<?> clazz : TYPES) {
             final Object result = parseAndCreate(clazz, val, env, random);
@@ -598,16 +855,6 @@ public final class EnvironmentBuilder<T> {
         return null;
     }
 
-    @SuppressWarnings("unchecked")
-    private static <Klazz> List<Constructor<Klazz>> unsafeExtractConstructors(final Class<?> clazz) {
-        final Constructor<?>[] constructors = clazz.getConstructors();
-        final List<Constructor<Klazz>> list = new ArrayList<Constructor<Klazz>>(constructors.length);
-        for (final Constructor<?> c : constructors) {
-            list.add((Constructor<Klazz>) c);
-        }
-        return list;
-    }
-
     private static <T> Future<Result<T>> build(final EnvironmentBuilder<T> builder) {
         final ExecutorService ex = Executors.newSingleThreadExecutor();
         final Future<Result<T>> result = ex.submit(() -> {
@@ -627,7 +874,233 @@ public final class EnvironmentBuilder<T> {
      * @return a {@link Future} result containing an {@link Environment}
      */
     public static <T> Future<Result<T>> build(final InputStream xml) {
-        return build(new EnvironmentBuilder<>(xml));
+        return build(new EnvironmentBuilder<>(xml, false, 1));
+    }
+
+    /**
+     * Same as {@link #build(InputStream)}, but the XML is never loaded in
+     * memory as a whole: each child of the environment is instantiated as
+     * soon as it has been read, and then its XML representation is discarded.
+     * Use it for very large files. Comments are allowed anywhere.
+     * 
+     * @param xml
+     *            the stream to process
+     * @param <T>
+     *            the concentration type
+     * 
+     * @return a {@link Future} result containing an {@link Environment}
+     */
+    public static <T> Future<Result<T>> buildStreaming(final InputStream xml) {
+        return build(new EnvironmentBuilder<>(xml, true, 1));
+    }
+
+    /**
+     * Same as {@link #buildStreaming(InputStream)}, but consecutive nodes are
+     * built in parallel, in batches. Each node is instanced on the loading
+     * thread, in document order, so node ids are the same as in sequential
+     * mode. Then its content, reactions and position are built by a worker,
+     * in a private scope. Molecules and all the other objects defined before
+     * the batch are shared with the worker, but are never modified by it.
+     * Reaction ids are reserved on the loading thread as well, so reactions
+     * get the same hash codes as in sequential mode. Once the whole batch is
+     * built, nodes are added to the environment in document order, and the
+     * names they defined are published, just as in sequential mode.
+     * 
+     * As a consequence, a node can not refer to the names defined by the
+     * nodes in its same batch. A batch ends after each named node, so named
+     * nodes can still be referred to by the following ones. Nodes which use
+     * the random engine are built sequentially, since the engine is not
+     * thread safe, and the order of its draws must not change.
+     * 
+     * @param xml
+     *            the stream to process
+     * @param parallelism
+     *            the number of threads building nodes
+     * @param <T>
+     *            the concentration type
+     * 
+     * @return a {@link Future} result containing an {@link Environment}
+     */
+    public static <T> Future<Result<T>> buildParallel(final InputStream xml, final int parallelism) {
+        return build(new EnvironmentBuilder<>(xml, true, parallelism));
+    }
+
+    /*
+     * Builds the children of the environment. In parallel mode, nodes are
+     * accumulated and built in batches, any other element ends the current
+     * batch.
+     */
+    private final class ElementProcessor implements AutoCloseable {
+        private final Map<String, Object> env;
+        private final ExecutorService executor;
+        private final List<Node> batch = new ArrayList<>();
+
+        ElementProcessor(final Map<String, Object> env) {
+            this.env = env;
+            executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        }
+
+        void accept(final Node son) throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException {
+            if (executor != null && son.getNodeName().equals("node") && !refersToRandom(son)) {
+                batch.add(son);
+                final Node nameNode = son.getAttributes().getNamedItem(NAME);
+                if (batch.size() >= threads * NODES_PER_THREAD || nameNode != null && !nameNode.getNodeValue().isEmpty()) {
+                    flush();
+                }
+            } else {
+                flush();
+                buildElement(son, env);
+            }
+        }
+
+        void flush() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            final List<Scope> scopes = new ArrayList<>(batch.size());
+            final List<it.unibo.alchemist.model.interfaces.Node<T>> nodes = new ArrayList<>(batch.size());
+            final List<Future<Position>> positions = new ArrayList<>(batch.size());
+            for (final Node son : batch) {
+                final Scope scope = new Scope(env);
+                final it.unibo.alchemist.model.interfaces.Node<T> node = createNode(son, scope);
+                final int reactions = reactionsBuiltBy(son);
+                final int firstId = AReaction.reserveIds(reactions);
+                scopes.add(scope);
+                nodes.add(node);
+                positions.add(executor.submit(() -> {
+                    AReaction.useReservedIds(firstId, reactions);
+                    try {
+                        populateNode(node, son, scope);
+                        return buildPosition(son, scope);
+                    } finally {
+                        AReaction.useReservedIds(firstId, 0);
+                    }
+                }));
+            }
+            /*
+             * Workers read the shared map: nothing gets published until the
+             * whole batch is built.
+             */
+            final List<Position> built = new ArrayList<>(batch.size());
+            for (final Future<Position> position : positions) {
+                built.add(await(position));
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                final Position pos = built.get(i);
+                scopes.get(i).publish();
+                result.addNode(nodes.get(i), pos);
+                final Node sonNameAttr = batch.get(i).getAttributes().getNamedItem(NAME);
+                env.put(sonNameAttr == null ? "" : sonNameAttr.getNodeValue(), nodes.get(i));
+            }
+            batch.clear();
+        }
+
+        @Override
+        public void close() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /*
+     * A private view over the shared objects. Changes are kept local until
+     * published.
+     */
+    private static final class Scope extends AbstractMap<String, Object> {
+        private static final Object REMOVED = new Object();
+        private final Map<String, Object> parent;
+        private final Map<String, Object> local = new LinkedHashMap<>();
+
+        Scope(final Map<String, Object> parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            final Object value = local.get(key);
+            return value == null ? parent.containsKey(key) : value != REMOVED;
+        }
+
+        @Override
+        public Object get(final Object key) {
+            final Object value = local.get(key);
+            if (value == null) {
+                return parent.get(key);
+            }
+            return value == REMOVED ? null : value;
+        }
+
+        @Override
+        public Object put(final String key, final Object value) {
+            final Object previous = get(key);
+            local.put(key, Objects.requireNonNull(value));
+            return previous;
+        }
+
+        @Override
+        public Object remove(final Object key) {
+            final Object previous = get(key);
+            if (key instanceof String) {
+                local.put((String) key, REMOVED);
+            }
+            return previous;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            final Map<String, Object> merged = new LinkedHashMap<>(parent);
+            local.forEach((k, v) -> {
+                if (v == REMOVED) {
+                    merged.remove(k);
+                } else {
+                    merged.put(k, v);
+                }
+            });
+            return Collections.unmodifiableMap(merged).entrySet();
+        }
+
+        /*
+         * Applies the local changes to the parent, in order.
+         */
+        void publish() {
+            local.forEach((k, v) -> {
+                if (v == REMOVED) {
+                    parent.remove(k);
+                } else {
+                    parent.put(k, v);
+                }
+            });
+        }
+    }
+
+    /*
+     * What parseAndCreate looks at when converting a string argument.
+     */
+    private enum ArgumentKind {
+        NULL, RANDOM, BOOLEAN, EMPTY, NUMBER, LIST, OTHER;
+
+        static ArgumentKind of(final String val) {
+            if (val.equals("null")) {
+                return NULL;
+            }
+            if (val.equalsIgnoreCase("random")) {
+                return RANDOM;
+            }
+            if (val.equalsIgnoreCase("true") || val.equalsIgnoreCase("false")) {
+                return BOOLEAN;
+            }
+            if (val.isEmpty()) {
+                return EMPTY;
+            }
+            if (extractNumber(val).isPresent()) {
+                return NUMBER;
+            }
+            if (val.startsWith("[") && val.endsWith("]")) {
+                return LIST;
+            }
+            return OTHER;
+        }
     }
 
     /**
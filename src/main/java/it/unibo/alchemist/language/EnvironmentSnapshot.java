@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.language;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unibo.alchemist.language.EnvironmentBuilder.Result;
+
+/**
+ * Binary snapshots of the environments built by {@link EnvironmentBuilder},
+ * meant for parameter sweeps that load the same XML many times. The first
+ * load builds the environment from the XML and writes a snapshot of the
+ * {@link Result}, namely the whole object graph: nodes with their ids,
+ * positions, contents, reactions, conditions and actions, the linking rule
+ * and the random engine. Later loads deserialize it, skipping XML parsing and
+ * reflective construction altogether.
+ *
+ * A snapshot records the SHA-256 of the XML it was built from and a
+ * fingerprint of the classes it contains, namely the size and modification
+ * time of the class file or jar each of them was loaded from. It is rebuilt
+ * whenever either changes, since classes may change their behavior while
+ * remaining compatible for serialization, or whenever it can not be read
+ * back. Only classes of Alchemist, of its libraries, and of the packages of
+ * the types named in the XML can be deserialized: snapshots referring to any
+ * other class are rebuilt as well.
+ * The random engine is restored as it was at the end of the XML load: to run
+ * with another seed, reseed the engine returned by
+ * {@link Result#getRandomGenerator()}.
+ */
+public final class EnvironmentSnapshot {
+
+    private static final Logger L = LoggerFactory.getLogger(EnvironmentSnapshot.class);
+    private static final int MAGIC = 0x414C4353;
+    private static final int VERSION = 3;
+    private static final String HASH = "SHA-256";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final List<String> TRUSTED_PACKAGES = Collections.unmodifiableList(Arrays.asList(
+            "java.lang.", "java.util.", "java.math.", "java.awt.geom.",
+            "it.unibo.alchemist.", "gnu.trove.", "org.apache.commons.math3.", "org.danilopianini.", "com.google.common."));
+    private static final Pattern QUALIFIED_TYPE = Pattern.compile("type\\s*=\\s*[\"']([\\w$.]+\\.)[\\w$]+[\"']");
+
+    private EnvironmentSnapshot() {
+    }
+
+    /**
+     * @param xml
+     *            the XML file describing the environment
+     * @param snapshot
+     *            the snapshot file. It is created or overwritten if it does
+     *            not match the XML
+     * @param <T>
+     *            the concentration type
+     * @return a {@link Future} result containing an
+     *         {@link it.unibo.alchemist.model.interfaces.Environment}
+     */
+    public static <T> Future<Result<T>> build(final Path xml, final Path snapshot) {
+        final ExecutorService ex = Executors.newSingleThreadExecutor();
+        final Future<Result<T>> result = ex.submit(() -> load(xml, snapshot));
+        ex.shutdown();
+        return result;
+    }
+
+    /**
+     * @param xml
+     *            the XML file describing the environment
+     * @param snapshot
+     *            the snapshot file. It is created or overwritten if it does
+     *            not match the XML
+     * @param <T>
+     *            the concentration type
+     * @return the environment and its random engine
+     * @throws IOException
+     *             if the XML or the snapshot can not be accessed
+     * @throws ExecutionException
+     *             if the environment can not be built from the XML
+     * @throws InterruptedException
+     *             if interrupted while building the environment
+     */
+    public static <T> Result<T> load(final Path xml, final Path snapshot) throws IOException, ExecutionException, InterruptedException {
+        final byte[] content = Files.readAllBytes(xml);
+        final byte[] hash = newDigest().digest(content);
+        if (Files.isRegularFile(snapshot)) {
+            final Result<T> restored = read(snapshot, hash, trustedPackages(content));
+            if (restored != null) {
+                return restored;
+            }
+        }
+        final Result<T> built;
+        try (InputStream in = Files.newInputStream(xml)) {
+            built = EnvironmentBuilder.<T>build(in).get();
+        }
+        write(snapshot, hash, built);
+        return built;
+    }
+
+    /*
+     * The snapshot content, or null if it does not match the XML or can not
+     * be deserialized. The classes are checked before deserializing anything.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Result<T> read(final Path snapshot, final byte[] hash, final Set<String> trusted) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final DataInputStream header = open(channel, 0);
+            if (size < 3 * Integer.BYTES + Long.BYTES || header.readInt() != MAGIC || header.readInt() != VERSION) {
+                L.info("{} is not a valid snapshot, rebuilding it", snapshot);
+                return null;
+            }
+            if (!Arrays.equals(readDigest(header), hash)) {
+                L.info("{} was built from another XML, rebuilding it", snapshot);
+                return null;
+            }
+            final long body = 3 * Integer.BYTES + hash.length;
+            final long trailer = open(channel, size - Long.BYTES).readLong();
+            if (trailer < body || trailer > size - Long.BYTES) {
+                L.info("{} is truncated, rebuilding it", snapshot);
+                return null;
+            }
+            final DataInputStream classes = open(channel, trailer);
+            final int count = classes.readInt();
+            if (count < 0 || count > BUFFER_SIZE) {
+                L.info("{} is not a valid snapshot, rebuilding it", snapshot);
+                return null;
+            }
+            final List<String> names = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                names.add(classes.readUTF());
+            }
+            if (!Arrays.equals(readDigest(classes), fingerprint(names))) {
+                L.info("{} was built with other classes, rebuilding it", snapshot);
+                return null;
+            }
+            try (ObjectInputStream in = new TrustingObjectInputStream(open(channel, body), trusted)) {
+                return (Result<T>) in.readObject();
+            } catch (final ClassNotFoundException | ObjectStreamException | ClassCastException e) {
+                L.info("{} can not be restored ({}), rebuilding it", snapshot, e.getMessage());
+                return null;
+            }
+        } catch (final EOFException e) {
+            L.info("{} is truncated, rebuilding it", snapshot);
+            return null;
+        }
+    }
+
+    private static DataInputStream open(final FileChannel channel, final long position) throws IOException {
+        channel.position(position);
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+    }
+
+    /*
+     * Writes a temporary file first, so that concurrent loads either see the
+     * old snapshot or the complete new one. The classes are only known once
+     * the graph has been written, so they follow it, and the last eight bytes
+     * point at them.
+     */
+    private static void write(final Path snapshot, final byte[] hash, final Result<?> result) throws IOException {
+        final Path parent = snapshot.toAbsolutePath().getParent();
+        final Path tmp = Files.createTempFile(parent, snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                final OutputStream file = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+                final DataOutputStream header = new DataOutputStream(file);
+                header.writeInt(MAGIC);
+                header.writeInt(VERSION);
+                header.writeInt(hash.length);
+                header.write(hash);
+                header.flush();
+                final Set<String> classes = new TreeSet<>();
+                final ObjectOutputStream out = new ObjectOutputStream(file) {
+                    @Override
+                    protected void annotateClass(final Class<?> cl) {
+                        classes.add(cl.getName());
+                    }
+                };
+                out.writeObject(result);
+                out.flush();
+                final long trailer = channel.position();
+                header.writeInt(classes.size());
+                for (final String name : classes) {
+                    header.writeUTF(name);
+                }
+                final byte[] fingerprint = fingerprint(classes);
+                header.writeInt(fingerprint.length);
+                header.write(fingerprint);
+                header.writeLong(trailer);
+                header.flush();
+            }
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /*
+     * A digest, or an empty array if the stored length is not plausible.
+     */
+    private static byte[] readDigest(final DataInputStream header) throws IOException {
+        final int length = header.readInt();
+        if (length < 0 || length > BUFFER_SIZE) {
+            return new byte[0];
+        }
+        final byte[] stored = new byte[length];
+        header.readFully(stored);
+        return stored;
+    }
+
+    /*
+     * Classes which can not be found, or are not loaded from a file, only
+     * contribute their name and location.
+     */
+    private static byte[] fingerprint(final Collection<String> classes) throws IOException {
+        final MessageDigest digest = newDigest();
+        final ClassLoader loader = EnvironmentSnapshot.class.getClassLoader();
+        for (final String name : classes) {
+            digest.update(name.getBytes(StandardCharsets.UTF_8));
+            URL location = loader.getResource(name.replace('.', '/') + ".class");
+            if (location != null) {
+                if ("jar".equals(location.getProtocol())) {
+                    location = ((JarURLConnection) location.openConnection()).getJarFileURL();
+                }
+                digest.update(location.toString().getBytes(StandardCharsets.UTF_8));
+                if ("file".equals(location.getProtocol())) {
+                    try {
+                        final Path file = Paths.get(location.toURI());
+                        final ByteBuffer attributes = ByteBuffer.allocate(2 * Long.BYTES);
+                        attributes.putLong(Files.size(file));
+                        attributes.putLong(Files.getLastModifiedTime(file).toMillis());
+                        digest.update(attributes.array());
+                    } catch (final URISyntaxException e) {
+                        L.debug("Can not locate {}", location, e);
+                    }
+                }
+            }
+        }
+        return digest.digest();
+    }
+
+    private static Set<String> trustedPackages(final byte[] xml) {
+        final Set<String> result = new HashSet<>(TRUSTED_PACKAGES);
+        final Matcher types = QUALIFIED_TYPE.matcher(new String(xml, StandardCharsets.UTF_8));
+        while (types.find()) {
+            result.add(types.group(1));
+        }
+        return result;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH + " is required to be supported by every Java platform", e);
+        }
+    }
+
+    /*
+     * Java 8 has no ObjectInputFilter: classes are checked as they get
+     * resolved, before any instance is created.
+     */
+    private static final class TrustingObjectInputStream extends ObjectInputStream {
+        private final Set<String> packages;
+
+        TrustingObjectInputStream(final InputStream in, final Set<String> trusted) throws IOException {
+            super(in);
+            packages = trusted;
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            while (name.startsWith("[")) {
+                name = name.substring(1);
+            }
+            if (name.startsWith("L") && name.endsWith(";")) {
+                name = name.substring(1, name.length() - 1);
+            } else if (name.length() == 1) {
+                return super.resolveClass(desc);
+            }
+            final int dot = name.lastIndexOf('.');
+            final String pkg = name.substring(0, dot + 1);
+            for (final String trusted : packages) {
+                if (pkg.startsWith(trusted)) {
+                    return super.resolveClass(desc);
+                }
+            }
+            throw new InvalidClassException(desc.getName(), "not allowed in snapshots");
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(final String[] interfaces) throws InvalidClassException {
+            throw new InvalidClassException("Proxy classes are not allowed in snapshots");
+        }
+    }
+
+}
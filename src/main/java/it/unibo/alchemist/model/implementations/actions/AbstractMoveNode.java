@@ -11,6 +11,7 @@
  */
 package it.unibo.alchemist.model.implementations.actions;
 
+import it.unibo.alchemist.model.implementations.environments.AbstractDenseEnvironment;
 import it.unibo.alchemist.model.interfaces.Context;
 import it.unibo.alchemist.model.interfaces.Environment;
 import it.unibo.alchemist.model.interfaces.Node;
@@ -26,6 +27,7 @@ public abstract class AbstractMoveNode<T> extends AbstractAction<T> {
     private static final long serialVersionUID = -5867654295577425307L;
     private final Environment<T> env;
     private final boolean isAbs;
+    private transient double[] next;
 
     /**
      * Builds a new move node action. By default the movements are relative.
@@ -59,6 +61,20 @@ public abstract class AbstractMoveNode<T> extends AbstractAction<T> {
 
     @Override
     public void execute() {
+        if (env instanceof AbstractDenseEnvironment && ((AbstractDenseEnvironment<T>) env).isDirectMovement()) {
+            final AbstractDenseEnvironment<T> denv = (AbstractDenseEnvironment<T>) env;
+            if (next == null || next.length != denv.getDimensions()) {
+                next = new double[denv.getDimensions()];
+            }
+            if (getNextCoordinates(next)) {
+                if (isAbs) {
+                    denv.moveNodeTo(getNode(), next);
+                } else {
+                    denv.moveNodeBy(getNode(), next);
+                }
+                return;
+            }
+        }
         if (isAbs) {
             env.moveNodeToPosition(getNode(), getNextPosition());
         } else {
@@ -91,6 +107,38 @@ public abstract class AbstractMoveNode<T> extends AbstractAction<T> {
      */
     public abstract Position getNextPosition();
 
+    /**
+     * Allocation free alternative to {@link #getNextPosition()}, used instead
+     * of it when the environment is an {@link AbstractDenseEnvironment} with
+     * direct movement enabled. Implementations must write in the array the
+     * same coordinates that {@link #getNextPosition()} would return, with the
+     * same side effects. This implementation does not support it, and returns
+     * false.
+     * 
+     * @param result
+     *            the array to fill, with one element per dimension
+     * @return true if the array has been filled, false if this action can
+     *         not compute the coordinates without building a
+     *         {@link Position}
+     */
+    protected boolean getNextCoordinates(final double[] result) {
+        return false;
+    }
+
+    /**
+     * @param dim
+     *            the dimension
+     * @return the coordinate of the local node along the dimension, read
+     *         without building a {@link Position} if the environment allows
+     *         it
+     */
+    protected final double getCurrentCoordinate(final int dim) {
+        if (env instanceof AbstractDenseEnvironment) {
+            return ((AbstractDenseEnvironment<T>) env).getCoordinate(getNode().getId(), dim);
+        }
+        return getCurrentPosition().getCoordinate(dim);
+    }
+
     /**
      * Given a node, computes its position.
      * 
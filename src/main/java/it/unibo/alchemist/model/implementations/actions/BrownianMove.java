@@ -57,6 +57,16 @@ public class BrownianMove<T> extends AbstractMoveNode<T> {
         return new Continuous2DEuclidean(genRandom() * r, genRandom() * r);
     }
 
+    @Override
+    protected boolean getNextCoordinates(final double[] result) {
+        if (result.length != 2) {
+            return false;
+        }
+        result[0] = genRandom() * r;
+        result[1] = genRandom() * r;
+        return true;
+    }
+
     private double genRandom() {
         return rng.nextFloat() - 0.5;
     }
@@ -40,15 +40,23 @@ public class MoveForwardAndTeleport<T> extends AbstractMoveNode<T> {
 
     @Override
     public Position getNextPosition() {
-        final Position cur = getEnvironment().getPosition(getNode());
-        if (Double.isNaN(y)) {
-            y = cur.getCoordinate(1);
+        final double[] next = new double[2];
+        getNextCoordinates(next);
+        return new Continuous2DEuclidean(next[0], next[1]);
+    }
+
+    @Override
+    protected boolean getNextCoordinates(final double[] result) {
+        if (result.length != 2) {
+            return false;
         }
-        final double x = cur.getCoordinate(0);
-        if (x > maxx) {
-            return new Continuous2DEuclidean(minx, y);
+        if (Double.isNaN(y)) {
+            y = getCurrentCoordinate(1);
         }
-        return new Continuous2DEuclidean(x + dx, y);
+        final double x = getCurrentCoordinate(0);
+        result[0] = x > maxx ? minx : x + dx;
+        result[1] = y;
+        return true;
     }
 
 }
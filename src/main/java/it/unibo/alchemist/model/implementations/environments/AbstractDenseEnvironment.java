@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.environments;
+
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+
+import org.apache.commons.math3.util.FastMath;
+import org.apache.commons.math3.util.MathUtils;
+import org.danilopianini.lang.SpatialIndex;
+
+/**
+ * An environment for continuous Euclidean spaces that does not retain the
+ * {@link Position} objects it receives. Coordinates are copied into one
+ * contiguous double[] column per dimension, indexed by a dense node slot, and
+ * can be read directly through {@link #getCoordinate(int, int)}.
+ * {@link #getPosition(Node)} builds a new {@link Position} at each call:
+ * code on hot paths should prefer {@link #getCoordinate(int, int)}. Likewise,
+ * nodes can be moved without building positions through
+ * {@link #moveNodeBy(Node, double[])} and {@link #moveNodeTo(Node, double[])}.
+ * 
+ * @param <T>
+ */
+public abstract class AbstractDenseEnvironment<T> extends AbstractEnvironment<T> {
+
+    private static final long serialVersionUID = 1L;
+    private final DensePositionStore store;
+    private boolean directMovement;
+    /*
+     * Scratch arrays for the direct movement methods
+     */
+    private transient double[] origin;
+    private transient double[] target;
+
+    /**
+     * @param internalIndex
+     *            the {@link SpatialIndex} to use in order to efficiently
+     *            retrieve nodes.
+     * @param dimensions
+     *            the number of dimensions of this environment
+     */
+    protected AbstractDenseEnvironment(final SpatialIndex<Node<T>> internalIndex, final int dimensions) {
+        this(internalIndex, new DensePositionStore(dimensions));
+    }
+
+    private AbstractDenseEnvironment(final SpatialIndex<Node<T>> internalIndex, final DensePositionStore positionStore) {
+        super(internalIndex, positionStore);
+        store = positionStore;
+    }
+
+    /**
+     * @param nodeId
+     *            the node id
+     * @param dim
+     *            the dimension
+     * @return the coordinate of the node along the required dimension
+     */
+    public final double getCoordinate(final int nodeId, final int dim) {
+        return store.getCoordinate(nodeId, dim);
+    }
+
+    /**
+     * @return true if movement actions are allowed to use
+     *         {@link #moveNodeBy(Node, double[])} and
+     *         {@link #moveNodeTo(Node, double[])}
+     */
+    public final boolean isDirectMovement() {
+        return directMovement;
+    }
+
+    /**
+     * Enables or disables direct movement for the movement actions which
+     * support it (see
+     * {@link it.unibo.alchemist.model.implementations.actions.AbstractMoveNode}).
+     * When enabled, such actions bypass {@link #moveNode(Node, Position)} and
+     * {@link #moveNodeToPosition(Node, Position)}, and write the new
+     * coordinates straight into this environment, without building any
+     * {@link Position}. Only enable it if those two methods do nothing more
+     * than relocating the node, namely if they do not apply any constraint
+     * to the movement.
+     * 
+     * @param enabled
+     *            true to enable direct movement
+     */
+    public final void setDirectMovement(final boolean enabled) {
+        directMovement = enabled;
+    }
+
+    /**
+     * Moves a node in a bidimensional environment by the given displacement,
+     * without building any {@link Position}. No constraint is applied.
+     * 
+     * @param node
+     *            the node
+     * @param dx
+     *            displacement along the first dimension
+     * @param dy
+     *            displacement along the second dimension
+     */
+    public final void moveNodeBy(final Node<T> node, final double dx, final double dy) {
+        final double[] to = prepareMove(node, 2);
+        to[0] = origin[0] + dx;
+        to[1] = origin[1] + dy;
+        completeMove(node, to);
+    }
+
+    /**
+     * Moves a node by the given displacement, without building any
+     * {@link Position}. No constraint is applied.
+     * 
+     * @param node
+     *            the node
+     * @param delta
+     *            the displacement, one element per dimension. The array is
+     *            not retained
+     */
+    public final void moveNodeBy(final Node<T> node, final double[] delta) {
+        final double[] to = prepareMove(node, delta.length);
+        for (int d = 0; d < to.length; d++) {
+            to[d] = origin[d] + delta[d];
+        }
+        completeMove(node, to);
+    }
+
+    /**
+     * Moves a node in a bidimensional environment to the given coordinates,
+     * without building any {@link Position}. No constraint is applied.
+     * 
+     * @param node
+     *            the node
+     * @param x
+     *            first coordinate
+     * @param y
+     *            second coordinate
+     */
+    public final void moveNodeTo(final Node<T> node, final double x, final double y) {
+        final double[] to = prepareMove(node, 2);
+        to[0] = x;
+        to[1] = y;
+        completeMove(node, to);
+    }
+
+    /**
+     * Moves a node to the given coordinates, without building any
+     * {@link Position}. No constraint is applied.
+     * 
+     * @param node
+     *            the node
+     * @param coordinates
+     *            the new coordinates, one per dimension. The array is not
+     *            retained
+     */
+    public final void moveNodeTo(final Node<T> node, final double[] coordinates) {
+        final double[] to = prepareMove(node, coordinates.length);
+        System.arraycopy(coordinates, 0, to, 0, to.length);
+        completeMove(node, to);
+    }
+
+    /*
+     * Loads the current coordinates of the node in the origin scratch array,
+     * and returns the target scratch array.
+     */
+    private double[] prepareMove(final Node<T> node, final int dimensions) {
+        if (dimensions != store.getDimensions()) {
+            throw new IllegalArgumentException(dimensions + " coordinates provided, " + store.getDimensions() + " expected.");
+        }
+        if (origin == null) {
+            origin = new double[dimensions];
+            target = new double[dimensions];
+        }
+        store.getCoordinates(node.getId(), origin, 0);
+        return target;
+    }
+
+    private void completeMove(final Node<T> node, final double[] to) {
+        MathUtils.checkFinite(to);
+        store.setCoordinates(node.getId(), to, 0);
+        nodeMoved(node, origin, to);
+    }
+
+    @Override
+    public final int getDimensions() {
+        return store.getDimensions();
+    }
+
+    @Override
+    public double getDistanceBetweenNodes(final Node<T> n1, final Node<T> n2) {
+        return FastMath.sqrt(store.getSquaredDistance(n1.getId(), n2.getId()));
+    }
+
+}
@@ -8,22 +8,42 @@
  */
 package it.unibo.alchemist.model.implementations.environments;
 
+import gnu.trove.impl.Constants;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.TIntLongMap;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntLongHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+import it.unibo.alchemist.model.implementations.linkingrules.BulkLinkingRule;
+import it.unibo.alchemist.model.implementations.linkingrules.PairwiseLinkingRule;
+import it.unibo.alchemist.model.implementations.neighborhoods.NeighborhoodDiff;
+import it.unibo.alchemist.model.implementations.spatialindexes.BulkSpatialIndex;
 import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.LinkingRule;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
 import it.unibo.alchemist.model.interfaces.Node;
 import it.unibo.alchemist.model.interfaces.Position;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Spliterator;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
+import org.apache.commons.math3.util.MathUtils;
 import org.danilopianini.lang.SpatialIndex;
 
 /**
@@ -35,15 +55,29 @@ import org.danilopianini.lang.SpatialIndex;
 public abstract class AbstractEnvironment<T> implements Environment<T> {
 
     private static final long serialVersionUID = 2704085518489753349L;
+    private static final int NO_EPOCH = -1;
     /**
      * The default monitor that will be loaded. If null, the GUI must default to
      * a compatible monitor.
      */
     protected static final String DEFAULT_MONITOR = null;
-    private final TIntObjectHashMap<Position> nodeToPos = new TIntObjectHashMap<>();
+    private final PositionStore positions;
     private final TIntObjectHashMap<Node<T>> nodes = new TIntObjectHashMap<Node<T>>();
     private String separator = System.getProperty("line.separator");
     private final SpatialIndex<Node<T>> spatialIndex;
+    /*
+     * Each thread reuses its own query area, so that concurrent range queries
+     * do not allocate nor interfere.
+     */
+    private transient ThreadLocal<double[][]> queryAreas = ThreadLocal.withInitial(this::createQueryArea);
+    private boolean incrementalLinking;
+    private transient NeighborhoodDiff lastDiff;
+    /*
+     * Null until an epoch is requested for the first time: most environments
+     * never need them, and should not pay for a map update on every move.
+     */
+    private volatile TIntLongMap epochs;
+    private long positionUpdates;
 
     /**
      * @param internalIndex
@@ -51,7 +85,19 @@ public abstract class AbstractEnvironment<T> implements Environment<T> {
      *            retrieve nodes.
      */
     protected AbstractEnvironment(final SpatialIndex<Node<T>> internalIndex) {
+        this(internalIndex, new MapPositionStore());
+    }
+
+    /**
+     * @param internalIndex
+     *            the {@link SpatialIndex} to use in order to efficiently
+     *            retrieve nodes.
+     * @param positionStore
+     *            the {@link PositionStore} where node positions are kept
+     */
+    AbstractEnvironment(final SpatialIndex<Node<T>> internalIndex, final PositionStore positionStore) {
         spatialIndex = Objects.requireNonNull(internalIndex);
+        positions = Objects.requireNonNull(positionStore);
     }
 
     /**
@@ -63,13 +109,298 @@ public abstract class AbstractEnvironment<T> implements Environment<T> {
      *            its new position
      */
     protected final void setPosition(final Node<T> n, final Position p) {
-        final Position pos = nodeToPos.put(n.getId(), p);
-        if (pos != null && !spatialIndex.move(n, pos.getCartesianCoordinates(), p.getCartesianCoordinates())) {
+        final double[] pos = positions.contains(n.getId()) ? positions.getCoordinates(n.getId()) : null;
+        positions.put(n.getId(), p);
+        if (pos == null) {
+            newEpoch(n.getId());
+        } else {
+            nodeMoved(n, pos, p.getCartesianCoordinates());
+        }
+    }
+
+    /**
+     * Updates the spatial index, the position epoch if tracked and, if
+     * enabled, the neighborhoods of a node whose stored position has just
+     * changed. The arrays are not retained.
+     * 
+     * @param n
+     *            the node
+     * @param from
+     *            the old coordinates
+     * @param to
+     *            the new coordinates
+     */
+    final void nodeMoved(final Node<T> n, final double[] from, final double[] to) {
+        newEpoch(n.getId());
+        if (!spatialIndex.move(n, from, to)) {
             throw new IllegalArgumentException("Tried to move a node not previously present in the environment: \n"
-                    + "Node: " + n + "\n" + "Requested position" + p);
+                    + "Node: " + n + "\n" + "Requested position" + Arrays.toString(to));
+        }
+        if (incrementalLinking) {
+            updateNeighborhoodIncrementally(n);
+        }
+    }
+
+    /**
+     * Moves many nodes at once. Coordinates are flattened: the new coordinates
+     * of the node with id ids[i] start at index i * {@link #getDimensions()}.
+     * New positions are built from raw coordinates, with the same class of the
+     * current ones. Only euclidean positions can be built this way, unless the
+     * environment is an {@link AbstractLatticeEnvironment}, where coordinates
+     * are rounded to the nearest cell. Just as
+     * {@link #setPosition(Node, Position)}, no constraint is applied to the
+     * movement, but on a lattice the batch is rejected as a whole, with no
+     * node moving, if it would leave two nodes in the same cell or a node
+     * outside the lattice. Nodes of the same batch can swap their cells.
+     * 
+     * Differently from moving the nodes one by one, the spatial index gets
+     * updated in a single operation if it is a {@link BulkSpatialIndex}, and,
+     * with incremental linking enabled, neighborhoods are updated only once,
+     * after all the nodes have been moved. If most nodes moved, all the
+     * neighborhoods are recomputed through {@link #computeAllNeighborhoods()},
+     * and {@link #neighborhoodUpdated(Node, NeighborhoodDiff)} is called for
+     * each node whose neighborhood changed, whether it moved or not.
+     * 
+     * @param ids
+     *            the ids of the nodes to move
+     * @param coordinates
+     *            the new coordinates of the nodes. The array is not retained
+     * @throws IllegalArgumentException
+     *             if a node is not in the environment, its position can not be
+     *             built from raw coordinates, or the new positions are not
+     *             valid. In such case, no node moves
+     * @throws IllegalStateException
+     *             if the spatial index was already out of sync with the
+     *             environment. In such case, no node moves, but the spatial
+     *             index may have been changed
+     */
+    public final void moveNodes(final int[] ids, final double[] coordinates) {
+        final int dimensions = getDimensions();
+        if (coordinates.length != ids.length * dimensions) {
+            throw new IllegalArgumentException(ids.length + " nodes require " + ids.length * dimensions
+                    + " coordinates, " + coordinates.length + " provided.");
+        }
+        MathUtils.checkFinite(coordinates);
+        final List<Node<T>> moved = new ArrayList<>(ids.length);
+        final double[] from = new double[coordinates.length];
+        /*
+         * Positions are stored all at once, but the spatial index moves nodes
+         * in order: a node listed twice starts from its previous target.
+         */
+        final TIntIntMap previous = new TIntIntHashMap(ids.length * 2, Constants.DEFAULT_LOAD_FACTOR, -1, -1);
+        for (int i = 0; i < ids.length; i++) {
+            final Node<T> node = nodes.get(ids[i]);
+            if (node == null) {
+                throw new IllegalArgumentException("Node " + ids[i] + " is not in this environment.");
+            }
+            final int last = previous.put(ids[i], i);
+            if (last < 0) {
+                positions.getCoordinates(ids[i], from, i * dimensions);
+            } else {
+                System.arraycopy(coordinates, last * dimensions, from, i * dimensions, dimensions);
+            }
+            moved.add(node);
+        }
+        positions.setCoordinates(ids, coordinates, dimensions);
+        boolean found = true;
+        if (spatialIndex instanceof BulkSpatialIndex) {
+            found = ((BulkSpatialIndex<Node<T>>) spatialIndex).moveAll(moved, from, coordinates);
+        } else {
+            for (int i = 0; i < ids.length; i++) {
+                final int start = i * dimensions;
+                found &= spatialIndex.move(moved.get(i),
+                        Arrays.copyOfRange(from, start, start + dimensions),
+                        Arrays.copyOfRange(coordinates, start, start + dimensions));
+            }
+        }
+        if (!found) {
+            restoreCoordinates(ids, from, dimensions);
+            throw new IllegalStateException("The spatial index is out of sync with the environment.");
+        }
+        for (final int id : ids) {
+            newEpoch(id);
+        }
+        if (incrementalLinking && getLinkingRule() != null) {
+            if (moved.size() * 2 < nodes.size()) {
+                moved.forEach(this::updateNeighborhoodIncrementally);
+            } else {
+                relinkAll();
+            }
+        }
+    }
+
+    /*
+     * Puts back the coordinates each node had before the batch, found where it
+     * is listed for the first time.
+     */
+    private void restoreCoordinates(final int[] ids, final double[] from, final int dimensions) {
+        final TIntSet seen = new TIntHashSet(ids.length * 2);
+        final TIntArrayList unique = new TIntArrayList(ids.length);
+        final TDoubleArrayList original = new TDoubleArrayList(from.length);
+        for (int i = 0; i < ids.length; i++) {
+            if (seen.add(ids[i])) {
+                unique.add(ids[i]);
+                original.add(from, i * dimensions, dimensions);
+            }
+        }
+        positions.setCoordinates(unique.toArray(), original.toArray(), dimensions);
+    }
+
+    /*
+     * Patches every live neighborhood to match a full recomputation.
+     */
+    private void relinkAll() {
+        final TIntObjectMap<Neighborhood<T>> updated = computeAllNeighborhoods();
+        if (lastDiff == null) {
+            lastDiff = new NeighborhoodDiff();
+        }
+        for (final Node<T> node : getNodes()) {
+            final Neighborhood<T> current = getNeighborhood(node);
+            if (current != null) {
+                final NeighborhoodDiff diff = lastDiff.compute(current, updated.get(node.getId()));
+                for (int i = 0; i < diff.removedCount(); i++) {
+                    current.removeNeighbor(getNodeByID(diff.getRemoved(i)));
+                }
+                for (int i = 0; i < diff.addedCount(); i++) {
+                    current.addNeighbor(getNodeByID(diff.getAdded(i)));
+                }
+                if (!diff.isEmpty()) {
+                    neighborhoodUpdated(node, diff);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the neighbors gained and lost by a node that just moved, and
+     * patches in place its current neighborhood and those of the neighbors
+     * that were either gained or lost. Links are assumed to be symmetric. With
+     * a {@link PairwiseLinkingRule}, only the former neighbors and the nodes
+     * near the new position are checked, and no neighborhood is built;
+     * otherwise, the neighborhood is recomputed and compared with the current
+     * one.
+     * 
+     * @param node
+     *            the node that moved
+     */
+    private void updateNeighborhoodIncrementally(final Node<T> node) {
+        final LinkingRule<T> rule = getLinkingRule();
+        final Neighborhood<T> current = getNeighborhood(node);
+        if (rule == null || current == null) {
+            return;
+        }
+        if (lastDiff == null) {
+            lastDiff = new NeighborhoodDiff();
+        }
+        final NeighborhoodDiff diff;
+        if (rule instanceof PairwiseLinkingRule && ((PairwiseLinkingRule<T>) rule).isPairwise()) {
+            diff = diffLocally((PairwiseLinkingRule<T>) rule, node, current);
+        } else {
+            diff = lastDiff.compute(current, rule.computeNeighborhood(node, this));
+        }
+        for (int i = 0; i < diff.removedCount(); i++) {
+            final Node<T> formerNeighbor = getNodeByID(diff.getRemoved(i));
+            current.removeNeighbor(formerNeighbor);
+            final Neighborhood<T> other = getNeighborhood(formerNeighbor);
+            if (other != null) {
+                other.removeNeighbor(node);
+            }
+        }
+        for (int i = 0; i < diff.addedCount(); i++) {
+            final Node<T> newNeighbor = getNodeByID(diff.getAdded(i));
+            current.addNeighbor(newNeighbor);
+            final Neighborhood<T> other = getNeighborhood(newNeighbor);
+            if (other != null) {
+                other.addNeighbor(node);
+            }
+        }
+        if (!diff.isEmpty()) {
+            neighborhoodUpdated(node, diff);
         }
     }
 
+    private NeighborhoodDiff diffLocally(final PairwiseLinkingRule<T> rule, final Node<T> node, final Neighborhood<T> current) {
+        final NeighborhoodDiff diff = lastDiff;
+        diff.clear();
+        final Position position = getPosition(node);
+        final double range = rule.getLinkingRange();
+        final double squaredRange = range * range;
+        for (final Node<T> neighbor : current) {
+            if (!positions.isWithinRange(neighbor.getId(), position, range, squaredRange) || !rule.isLinked(this, node, neighbor)) {
+                diff.recordRemoved(neighbor.getId());
+            }
+        }
+        forEachNodeWithinRange(node, range, candidate -> {
+            if (!current.contains(candidate) && rule.isLinked(this, node, candidate)) {
+                diff.recordAdded(candidate.getId());
+            }
+        });
+        diff.sort();
+        return diff;
+    }
+
+    /**
+     * This method gets called when incremental linking is enabled and a
+     * movement changed the neighborhood of a node. The default implementation
+     * does nothing.
+     * 
+     * @param node
+     *            the node whose neighborhood changed: the node that moved,
+     *            or any node after a large {@link #moveNodes(int[], double[])}
+     * @param diff
+     *            the neighbors it gained and lost. The object is reused across
+     *            calls, and must not be retained
+     */
+    protected void neighborhoodUpdated(final Node<T> node, final NeighborhoodDiff diff) {
+    }
+
+    /**
+     * Computes from scratch the neighborhoods of all the nodes, according to
+     * the current {@link LinkingRule}. If the rule is a
+     * {@link BulkLinkingRule}, the whole computation is delegated to it,
+     * otherwise the rule is applied to each node in turn. The two only differ
+     * for rules with state, as detailed in {@link BulkLinkingRule}. The
+     * neighborhoods returned by {@link #getNeighborhood(Node)} are not
+     * modified: it is up to the caller to install the result.
+     * 
+     * @return a map from node ids to the newly computed neighborhoods
+     */
+    public TIntObjectMap<Neighborhood<T>> computeAllNeighborhoods() {
+        final LinkingRule<T> rule = Objects.requireNonNull(getLinkingRule(), "No linking rule set");
+        if (rule instanceof BulkLinkingRule) {
+            return ((BulkLinkingRule<T>) rule).computeNeighborhoods(this);
+        }
+        final TIntObjectMap<Neighborhood<T>> result = new TIntObjectHashMap<>(nodes.size());
+        for (final Node<T> node : getNodes()) {
+            result.put(node.getId(), rule.computeNeighborhood(node, this));
+        }
+        return result;
+    }
+
+    /**
+     * @return true if neighborhoods are incrementally patched by
+     *         {@link #setPosition(Node, Position)}
+     */
+    public final boolean isIncrementalLinking() {
+        return incrementalLinking;
+    }
+
+    /**
+     * Enables or disables incremental linking. When enabled, each time
+     * {@link #setPosition(Node, Position)} moves an existing node, the
+     * neighborhood returned by {@link #getNeighborhood(Node)} for that node
+     * and for the neighbors it gained or lost are updated in place, according
+     * to the current {@link LinkingRule}. No neighborhood gets replaced:
+     * subclasses supporting this mode must return their live neighborhoods from
+     * {@link #getNeighborhood(Node)}, and should not rebuild them on movement.
+     * 
+     * @param enabled
+     *            true to enable incremental linking
+     */
+    public final void setIncrementalLinking(final boolean enabled) {
+        incrementalLinking = enabled;
+    }
+
     /**
      * This method gets called once that the basic operations for a node
      * addition have been performed by {@link AbstractEnvironment}.
@@ -130,12 +461,59 @@ public abstract class AbstractEnvironment<T> implements Environment<T> {
     @Deprecated
     protected final Position getAndDeletePosition(final Node<T> node) {
         Objects.requireNonNull(node);
-        return nodeToPos.remove(node.getId());
+        removeEpoch(node.getId());
+        return positions.remove(node.getId());
+    }
+
+    /**
+     * Returns the position epoch of a node: a number that changes every time
+     * the node gets moved, and is never reused within this environment, even
+     * by other nodes. Results computed from the position of a node can be
+     * reused as long as its epoch does not change.
+     * 
+     * Epochs are only tracked from the first call of this method on, when
+     * every node gets a new one. It is safe to call it concurrently, as long
+     * as no node moves meanwhile.
+     * 
+     * @param node
+     *            the node
+     * @return the position epoch of the node, or -1 if the node is not in
+     *         this environment
+     */
+    public final long getPositionEpoch(final Node<T> node) {
+        final TIntLongMap current = epochs;
+        return (current == null ? trackEpochs() : current).get(node.getId());
+    }
+
+    private synchronized TIntLongMap trackEpochs() {
+        if (epochs == null) {
+            final TIntLongMap created = new TIntLongHashMap(Math.max(Constants.DEFAULT_CAPACITY, nodes.size() * 2),
+                    Constants.DEFAULT_LOAD_FACTOR, NO_EPOCH, NO_EPOCH);
+            for (final int id : nodes.keys()) {
+                created.put(id, positionUpdates++);
+            }
+            epochs = created;
+        }
+        return epochs;
+    }
+
+    private void newEpoch(final int id) {
+        final TIntLongMap current = epochs;
+        if (current != null) {
+            current.put(id, positionUpdates++);
+        }
+    }
+
+    private void removeEpoch(final int id) {
+        final TIntLongMap current = epochs;
+        if (current != null) {
+            current.remove(id);
+        }
     }
 
     @Override
     public final Position getPosition(final Node<T> node) {
-        return nodeToPos.get(node.getId());
+        return positions.get(node.getId());
     }
 
     /**
@@ -152,7 +530,8 @@ public abstract class AbstractEnvironment<T> implements Environment<T> {
     @Override
     public final void removeNode(final Node<T> node) {
         nodes.remove(node.getId());
-        final Position pos = nodeToPos.remove(node.getId());
+        removeEpoch(node.getId());
+        final Position pos = positions.remove(node.getId());
         spatialIndex.remove(node, pos.getCartesianCoordinates());
         nodeRemoved(node, pos);
     }
@@ -186,29 +565,185 @@ public abstract class AbstractEnvironment<T> implements Environment<T> {
 
     @Override
     public List<Node<T>> getNodesWithinRange(final Node<T> center, final double range) {
-        /*
-         * Remove the center node
-         */
-        return getAllNodesInRange(getPosition(center), range).filter((n) -> !n.equals(center))
-                .collect(Collectors.toList());
-    }
-
-    private Stream<Node<T>> getAllNodesInRange(final Position center, final double range) {
-        final List<Position> boundingBox = center.buildBoundingBox(range);
-        assert boundingBox.size() == getDimensions();
-        final double[][] queryArea = new double[getDimensions()][];
-        IntStream.range(0, getDimensions()).parallel()
-                .forEach(i -> queryArea[i] = boundingBox.get(i).getCartesianCoordinates());
-        return spatialIndex.query(queryArea).parallelStream()
-                .filter((n) -> getPosition(n).getDistanceTo(center) <= range);
+        final List<Node<T>> result = new ArrayList<>();
+        forEachNodeWithinRange(center, range, result::add);
+        return result;
     }
 
     @Override
     public List<Node<T>> getNodesWithinRange(final Position center, final double range) {
+        final List<Node<T>> result = new ArrayList<>();
+        forEachNodeWithinRange(center, range, result::add);
+        return result;
+    }
+
+    /**
+     * Performs the given action on every node whose distance from the center
+     * node is lower or equal than range. The center node itself is skipped.
+     * Differently from {@link #getNodesWithinRange(Node, double)}, no
+     * collection is built.
+     * 
+     * @param center
+     *            the center node
+     * @param range
+     *            the range
+     * @param action
+     *            the action to perform on each node in range
+     */
+    public void forEachNodeWithinRange(final Node<T> center, final double range, final Consumer<? super Node<T>> action) {
+        forEachNodeWithinRange(getPosition(center), range, center, action);
+    }
+
+    /**
+     * Performs the given action on every node whose distance from the center
+     * position is lower or equal than range. Differently from
+     * {@link #getNodesWithinRange(Position, double)}, no collection is built.
+     * 
+     * @param center
+     *            the center position
+     * @param range
+     *            the range
+     * @param action
+     *            the action to perform on each node in range
+     */
+    public void forEachNodeWithinRange(final Position center, final double range, final Consumer<? super Node<T>> action) {
+        forEachNodeWithinRange(center, range, null, action);
+    }
+
+    private void forEachNodeWithinRange(final Position center, final double range, final Node<T> exclude, final Consumer<? super Node<T>> action) {
+        final double[][] queryArea = queryAreas.get();
+        /*
+         * Same corners produced by Position.buildBoundingBox, without
+         * building any intermediate Position.
+         */
+        for (int i = 0; i < queryArea.length; i++) {
+            final double[] corner = queryArea[i];
+            for (int j = 0; j < corner.length; j++) {
+                corner[j] = center.getCoordinate(j) + (i == j ? -range : range);
+            }
+        }
+        final double squaredRange = range * range;
+        for (final Node<T> n : spatialIndex.query(queryArea)) {
+            if (!n.equals(exclude) && positions.isWithinRange(n.getId(), center, range, squaredRange)) {
+                action.accept(n);
+            }
+        }
+    }
+
+    /**
+     * Finds all the pairs of the given nodes which are within range, namely
+     * those for which {@link #getNodesWithinRange(Node, double)} on one node
+     * would return the other. Each pair is checked only once: nodes are
+     * bucketed into a grid of cells as large as the range, and each cell is
+     * compared with itself and with half of its adjacent cells only (a half
+     * shell). Cells are processed in parallel, on the common fork-join pool.
+     * 
+     * @param nodes
+     *            the nodes, which must be in the environment
+     * @param range
+     *            the range
+     * @return for each node in the array, the indexes in the array of the
+     *         nodes within range it has been paired with. Each pair is
+     *         reported on only one of its two nodes
+     */
+    public int[][] findPairsWithinRange(final Node<T>[] nodes, final double range) {
+        final int[][] result = new int[nodes.length][];
+        if (range < 0) {
+            Arrays.fill(result, new int[0]);
+            return result;
+        }
         /*
-         * Collect every node in range
+         * Range queries are exact on positions, while the grid only needs to
+         * be conservative: any node within range is at most one cell away
+         * along each axis, as long as the cells are not smaller than range.
          */
-        return getAllNodesInRange(center, range).collect(Collectors.toList());
+        final double cellSize = range > 0 ? range : 1;
+        final double squaredRange = range * range;
+        final int dimensions = getDimensions();
+        final Position[] centers = new Position[nodes.length];
+        final Map<CellKey, TIntArrayList> cells = new LinkedHashMap<>();
+        for (int i = 0; i < nodes.length; i++) {
+            centers[i] = getPosition(nodes[i]);
+            final long[] cell = new long[dimensions];
+            for (int d = 0; d < dimensions; d++) {
+                cell[d] = (long) Math.floor(centers[i].getCoordinate(d) / cellSize);
+            }
+            cells.computeIfAbsent(new CellKey(cell), k -> new TIntArrayList()).add(i);
+        }
+        final int[][] halfShell = halfShell(dimensions);
+        new ArrayList<>(cells.entrySet()).parallelStream().forEach(entry -> {
+            final int[] members = entry.getValue().toArray();
+            final TIntArrayList[] found = new TIntArrayList[members.length];
+            for (int a = 0; a < members.length; a++) {
+                found[a] = new TIntArrayList();
+                for (int b = a + 1; b < members.length; b++) {
+                    if (positions.isWithinRange(nodes[members[b]].getId(), centers[members[a]], range, squaredRange)) {
+                        found[a].add(members[b]);
+                    }
+                }
+            }
+            final long[] origin = entry.getKey().cell;
+            final CellKey probe = new CellKey(new long[dimensions]);
+            for (final int[] offset : halfShell) {
+                for (int d = 0; d < dimensions; d++) {
+                    probe.cell[d] = origin[d] + offset[d];
+                }
+                final TIntArrayList other = cells.get(probe);
+                if (other != null) {
+                    for (int a = 0; a < members.length; a++) {
+                        for (int k = 0; k < other.size(); k++) {
+                            final int b = other.get(k);
+                            if (positions.isWithinRange(nodes[b].getId(), centers[members[a]], range, squaredRange)) {
+                                found[a].add(b);
+                            }
+                        }
+                    }
+                }
+            }
+            for (int a = 0; a < members.length; a++) {
+                result[members[a]] = found[a].toArray();
+            }
+        });
+        return result;
+    }
+
+    /*
+     * The offsets of the adjacent cells whose first non zero component is
+     * positive: each pair of adjacent cells has exactly one of its two
+     * offsets in the result.
+     */
+    private static int[][] halfShell(final int dimensions) {
+        final List<int[]> result = new ArrayList<>();
+        final int[] offset = new int[dimensions];
+        Arrays.fill(offset, -1);
+        while (true) {
+            int first = 0;
+            while (first < dimensions && offset[first] == 0) {
+                first++;
+            }
+            if (first < dimensions && offset[first] > 0) {
+                result.add(offset.clone());
+            }
+            int d = dimensions - 1;
+            while (d >= 0 && offset[d] == 1) {
+                offset[d--] = -1;
+            }
+            if (d < 0) {
+                return result.toArray(new int[result.size()][]);
+            }
+            offset[d]++;
+        }
+    }
+
+    /**
+     * @return the {@link PositionStore} where node positions are kept
+     */
+    PositionStore getPositionStore() {
+        return positions;
+    }
+
+    private double[][] createQueryArea() {
+        return new double[getDimensions()][getDimensions()];
     }
 
     @Override
@@ -216,6 +751,21 @@ public abstract class AbstractEnvironment<T> implements Environment<T> {
         return getClass().getSimpleName();
     }
 
+    private static final class CellKey {
+        private final long[] cell;
+        CellKey(final long[] cell) {
+            this.cell = cell;
+        }
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(cell);
+        }
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof CellKey && Arrays.equals(cell, ((CellKey) obj).cell);
+        }
+    }
+
     /**
      * @return the separator used in toString()
      */
@@ -245,4 +795,10 @@ public abstract class AbstractEnvironment<T> implements Environment<T> {
     public Spliterator<Node<T>> spliterator() {
         return getNodes().spliterator();
     }
+
+    private void readObject(final ObjectInputStream o) throws ClassNotFoundException, IOException {
+        o.defaultReadObject();
+        queryAreas = ThreadLocal.withInitial(this::createQueryArea);
+    }
+
 }
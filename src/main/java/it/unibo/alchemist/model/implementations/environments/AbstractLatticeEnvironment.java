@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.environments;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.danilopianini.lang.SpatialIndex;
+
+import it.unibo.alchemist.model.implementations.positions.Discrete2DManhattan;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * A bidimensional, discrete environment with {@link Discrete2DManhattan}
+ * semantics, suitable for cellular automata. Nodes live in the cells of a
+ * width x height lattice, at most one per cell, and their positions are
+ * rounded to the nearest cell. The occupancy of the lattice is kept in a dense
+ * int[], which also serves as spatial index: range queries scan the diamond
+ * of cells whose Manhattan distance from the center is within range, so
+ * their cost only depends on the range, not on the number of nodes.
+ *
+ * Nodes requested in a cell which is either occupied or outside the lattice
+ * are not added, and movements towards such cells are ignored.
+ *
+ * @param <T>
+ */
+public abstract class AbstractLatticeEnvironment<T> extends AbstractEnvironment<T> {
+
+    private static final long serialVersionUID = 1L;
+    private final LatticePositionStore store;
+
+    /**
+     * @param width
+     *            the number of columns of the lattice
+     * @param height
+     *            the number of rows of the lattice
+     */
+    protected AbstractLatticeEnvironment(final int width, final int height) {
+        this(new LatticePositionStore(width, height));
+    }
+
+    private AbstractLatticeEnvironment(final LatticePositionStore positionStore) {
+        this(positionStore, new LatticeIndex<>(positionStore));
+    }
+
+    private AbstractLatticeEnvironment(final LatticePositionStore positionStore, final LatticeIndex<T> index) {
+        super(index, positionStore);
+        store = positionStore;
+        index.env = this;
+    }
+
+    /**
+     * @return the number of columns of the lattice
+     */
+    public final int getWidth() {
+        return store.getWidth();
+    }
+
+    /**
+     * @return the number of rows of the lattice
+     */
+    public final int getHeight() {
+        return store.getHeight();
+    }
+
+    /**
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the node in the cell, or null if the cell is empty or outside
+     *         the lattice
+     */
+    public final Node<T> getNodeAt(final int x, final int y) {
+        final int cell = store.cell(x, y);
+        if (cell == LatticePositionStore.EMPTY) {
+            return null;
+        }
+        final int id = store.getOccupant(cell);
+        return id == LatticePositionStore.EMPTY ? null : getNodeByID(id);
+    }
+
+    /**
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return true if the cell is inside the lattice and hosts no node
+     */
+    public final boolean isFree(final double x, final double y) {
+        final int cell = store.cell(x, y);
+        return cell != LatticePositionStore.EMPTY && store.getOccupant(cell) == LatticePositionStore.EMPTY;
+    }
+
+    @Override
+    protected boolean nodeShouldBeAdded(final Node<T> node, final Position p) {
+        return p.getDimensions() == 2 && isFree(p.getCoordinate(0), p.getCoordinate(1));
+    }
+
+    @Override
+    protected Position computeActualInsertionPosition(final Node<T> node, final Position p) {
+        return new Discrete2DManhattan((int) Math.round(p.getCoordinate(0)), (int) Math.round(p.getCoordinate(1)));
+    }
+
+    @Override
+    public void moveNode(final Node<T> node, final Position direction) {
+        final int cell = store.cellOf(node.getId());
+        moveNodeToPosition(node, new Discrete2DManhattan(
+                cell % getWidth() + (int) Math.round(direction.getCoordinate(0)),
+                cell / getWidth() + (int) Math.round(direction.getCoordinate(1))));
+    }
+
+    @Override
+    public void moveNodeToPosition(final Node<T> node, final Position position) {
+        if (isFree(position.getCoordinate(0), position.getCoordinate(1))) {
+            setPosition(node, computeActualInsertionPosition(node, position));
+        }
+    }
+
+    @Override
+    public final int getDimensions() {
+        return 2;
+    }
+
+    @Override
+    public double[] getOffset() {
+        return new double[] { 0, 0 };
+    }
+
+    @Override
+    public double[] getSize() {
+        return new double[] { getWidth(), getHeight() };
+    }
+
+    @Override
+    public double getDistanceBetweenNodes(final Node<T> n1, final Node<T> n2) {
+        return store.getDistance(n1.getId(), n2.getId());
+    }
+
+    @Override
+    public List<Node<T>> getNodesWithinRange(final Node<T> center, final double range) {
+        final List<Node<T>> result = new ArrayList<>();
+        forEachNodeWithinRange(center, range, result::add);
+        return result;
+    }
+
+    @Override
+    public List<Node<T>> getNodesWithinRange(final Position center, final double range) {
+        final List<Node<T>> result = new ArrayList<>();
+        forEachNodeWithinRange(center, range, result::add);
+        return result;
+    }
+
+    @Override
+    public void forEachNodeWithinRange(final Node<T> center, final double range, final Consumer<? super Node<T>> action) {
+        final int cell = store.cellOf(center.getId());
+        scan(cell % getWidth(), cell / getWidth(), range, center.getId(), action);
+    }
+
+    @Override
+    public void forEachNodeWithinRange(final Position center, final double range, final Consumer<? super Node<T>> action) {
+        scan(center.getCoordinate(0), center.getCoordinate(1), range, LatticePositionStore.EMPTY, action);
+    }
+
+    /*
+     * Visits, row by row, the cells of the lattice within Manhattan distance
+     * range from the center.
+     */
+    private void scan(final double cx, final double cy, final double range, final int exclude, final Consumer<? super Node<T>> action) {
+        if (range < 0) {
+            return;
+        }
+        final int width = getWidth();
+        final int minY = (int) Math.max(0, Math.ceil(cy - range));
+        final int maxY = (int) Math.min(getHeight() - 1, Math.floor(cy + range));
+        for (int y = minY; y <= maxY; y++) {
+            final double residual = range - Math.abs(y - cy);
+            final int minX = (int) Math.max(0, Math.ceil(cx - residual));
+            final int maxX = (int) Math.min(width - 1, Math.floor(cx + residual));
+            for (int x = minX, cell = y * width + minX; x <= maxX; x++, cell++) {
+                final int id = store.getOccupant(cell);
+                if (id != LatticePositionStore.EMPTY && id != exclude) {
+                    action.accept(getNodeByID(id));
+                }
+            }
+        }
+    }
+
+    /*
+     * The lattice itself is the index: nodes are found by scanning the cells
+     * within the queried box, so there is nothing to update when nodes are
+     * added, removed or moved. The environment is bound right after being
+     * built.
+     */
+    private static final class LatticeIndex<T> implements SpatialIndex<Node<T>> {
+        private static final long serialVersionUID = 1L;
+        private final LatticePositionStore store;
+        private AbstractLatticeEnvironment<T> env;
+
+        LatticeIndex(final LatticePositionStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public void insert(final Node<T> element, final double... position) {
+        }
+
+        @Override
+        public boolean remove(final Node<T> element, final double... position) {
+            return true;
+        }
+
+        @Override
+        public boolean move(final Node<T> element, final double[] start, final double[] end) {
+            return true;
+        }
+
+        @Override
+        public List<Node<T>> query(final double[]... parallelotope) {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (final double[] corner : parallelotope) {
+                minX = Math.min(minX, corner[0]);
+                minY = Math.min(minY, corner[1]);
+                maxX = Math.max(maxX, corner[0]);
+                maxY = Math.max(maxY, corner[1]);
+            }
+            final List<Node<T>> result = new ArrayList<>();
+            final int fromX = (int) Math.max(0, Math.ceil(minX));
+            final int toX = (int) Math.min(store.getWidth() - 1, Math.floor(maxX));
+            final int fromY = (int) Math.max(0, Math.ceil(minY));
+            final int toY = (int) Math.min(store.getHeight() - 1, Math.floor(maxY));
+            for (int y = fromY; y <= toY; y++) {
+                for (int x = fromX, cell = y * store.getWidth() + fromX; x <= toX; x++, cell++) {
+                    final int id = store.getOccupant(cell);
+                    if (id != LatticePositionStore.EMPTY) {
+                        result.add(env.getNodeByID(id));
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public int getDimensions() {
+            return 2;
+        }
+    }
+
+}
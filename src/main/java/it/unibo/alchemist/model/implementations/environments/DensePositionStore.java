@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.environments;
+
+import java.util.Arrays;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import it.unibo.alchemist.model.implementations.positions.ContinuousGenericEuclidean;
+import it.unibo.alchemist.model.implementations.positions.Euclidean2DPosition;
+import it.unibo.alchemist.model.implementations.positions.Euclidean3DPosition;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * Stores continuous Euclidean coordinates in one contiguous double[] column
+ * per dimension. Each node owns a slot, and slots are kept dense: when a node
+ * is removed, the last slot is moved in its place. {@link Position}s are only
+ * built when explicitly requested.
+ */
+final class DensePositionStore implements PositionStore {
+
+    private static final long serialVersionUID = 1L;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int NO_SLOT = -1;
+    private final double[][] columns;
+    private final TIntIntHashMap idToSlot = new TIntIntHashMap(DEFAULT_CAPACITY, 0.5f, NO_SLOT, NO_SLOT);
+    private int[] slotToId = new int[DEFAULT_CAPACITY];
+    private int size;
+
+    /**
+     * @param dimensions
+     *            the number of dimensions
+     */
+    DensePositionStore(final int dimensions) {
+        if (dimensions < 1) {
+            throw new IllegalArgumentException("At least one dimension is required, " + dimensions + " provided.");
+        }
+        columns = new double[dimensions][DEFAULT_CAPACITY];
+    }
+
+    @Override
+    public boolean contains(final int id) {
+        return idToSlot.containsKey(id);
+    }
+
+    @Override
+    public Position get(final int id) {
+        final int slot = idToSlot.get(id);
+        return slot == NO_SLOT ? null : makePosition(slot);
+    }
+
+    @Override
+    public double getCoordinate(final int id, final int dim) {
+        return columns[dim][slotOf(id)];
+    }
+
+    @Override
+    public double[] getCoordinates(final int id) {
+        final double[] result = new double[columns.length];
+        getCoordinates(id, result, 0);
+        return result;
+    }
+
+    @Override
+    public void getCoordinates(final int id, final double[] result, final int offset) {
+        final int slot = slotOf(id);
+        for (int d = 0; d < columns.length; d++) {
+            result[offset + d] = columns[d][slot];
+        }
+    }
+
+    @Override
+    public void setCoordinates(final int id, final double[] coordinates, final int offset) {
+        final int slot = slotOf(id);
+        for (int d = 0; d < columns.length; d++) {
+            columns[d][slot] = coordinates[offset + d];
+        }
+    }
+
+    /**
+     * @return the number of dimensions
+     */
+    int getDimensions() {
+        return columns.length;
+    }
+
+    /**
+     * @param id1
+     *            the first node id
+     * @param id2
+     *            the second node id
+     * @return the squared Euclidean distance between the two nodes
+     */
+    double getSquaredDistance(final int id1, final int id2) {
+        final int s1 = slotOf(id1);
+        final int s2 = slotOf(id2);
+        double result = 0;
+        for (final double[] column : columns) {
+            final double delta = column[s1] - column[s2];
+            result += delta * delta;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isWithinRange(final int id, final Position center, final double range, final double squaredRange) {
+        final int slot = slotOf(id);
+        double result = 0;
+        for (int d = 0; d < columns.length; d++) {
+            final double delta = columns[d][slot] - center.getCoordinate(d);
+            result += delta * delta;
+        }
+        return result <= squaredRange;
+    }
+
+    @Override
+    public void put(final int id, final Position p) {
+        if (p.getDimensions() != columns.length) {
+            throw new IllegalArgumentException(p + " has " + p.getDimensions() + " dimensions, " + columns.length + " expected.");
+        }
+        int slot = idToSlot.get(id);
+        if (slot == NO_SLOT) {
+            slot = size++;
+            ensureCapacity(size);
+            slotToId[slot] = id;
+            idToSlot.put(id, slot);
+        }
+        for (int d = 0; d < columns.length; d++) {
+            columns[d][slot] = p.getCoordinate(d);
+        }
+    }
+
+    @Override
+    public Position remove(final int id) {
+        final int slot = idToSlot.remove(id);
+        if (slot == NO_SLOT) {
+            return null;
+        }
+        final Position result = makePosition(slot);
+        final int last = --size;
+        if (slot != last) {
+            final int movedId = slotToId[last];
+            slotToId[slot] = movedId;
+            idToSlot.put(movedId, slot);
+            for (final double[] column : columns) {
+                column[slot] = column[last];
+            }
+        }
+        return result;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > slotToId.length) {
+            final int newCapacity = Math.max(capacity, slotToId.length * 2);
+            slotToId = Arrays.copyOf(slotToId, newCapacity);
+            for (int d = 0; d < columns.length; d++) {
+                columns[d] = Arrays.copyOf(columns[d], newCapacity);
+            }
+        }
+    }
+
+    private Position makePosition(final int slot) {
+        if (columns.length == 2) {
+            return new Euclidean2DPosition(columns[0][slot], columns[1][slot]);
+        }
+        if (columns.length == 3) {
+            return new Euclidean3DPosition(columns[0][slot], columns[1][slot], columns[2][slot]);
+        }
+        final double[] coords = new double[columns.length];
+        for (int d = 0; d < columns.length; d++) {
+            coords[d] = columns[d][slot];
+        }
+        return new ContinuousGenericEuclidean(coords);
+    }
+
+    private int slotOf(final int id) {
+        final int slot = idToSlot.get(id);
+        if (slot == NO_SLOT) {
+            throw new IllegalArgumentException("No position stored for node " + id);
+        }
+        return slot;
+    }
+
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.environments;
+
+import java.util.Arrays;
+
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import it.unibo.alchemist.model.implementations.positions.Discrete2DManhattan;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * Stores the positions of the nodes of a bidimensional lattice, where each
+ * cell hosts at most one node. The occupancy of the lattice is kept in a dense
+ * int[] with one slot per cell, and the cell of each node in an int[] indexed
+ * by node id: no object is retained per node. Node ids must be non negative.
+ * Coordinates are rounded to the nearest cell, and {@link Position}s are built
+ * as {@link Discrete2DManhattan} on request.
+ */
+final class LatticePositionStore implements PositionStore {
+
+    /**
+     * Marks empty cells and nodes with no cell.
+     */
+    static final int EMPTY = -1;
+    private static final long serialVersionUID = 1L;
+    private static final int DEFAULT_CAPACITY = 16;
+    private final int width, height;
+    private final int[] occupancy;
+    private int[] cellOf = new int[DEFAULT_CAPACITY];
+
+    /**
+     * @param width
+     *            the number of columns
+     * @param height
+     *            the number of rows
+     */
+    LatticePositionStore(final int width, final int height) {
+        if (width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid lattice size: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        occupancy = new int[width * height];
+        Arrays.fill(occupancy, EMPTY);
+        Arrays.fill(cellOf, EMPTY);
+    }
+
+    /**
+     * @return the number of columns
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the index of the cell, or {@link #EMPTY} if it is outside the
+     *         lattice
+     */
+    int cell(final double x, final double y) {
+        final long cx = Math.round(x);
+        final long cy = Math.round(y);
+        if (cx < 0 || cy < 0 || cx >= width || cy >= height) {
+            return EMPTY;
+        }
+        return (int) (cy * width + cx);
+    }
+
+    /**
+     * @param cell
+     *            the index of a cell inside the lattice
+     * @return the id of the node in the cell, or {@link #EMPTY}
+     */
+    int getOccupant(final int cell) {
+        return occupancy[cell];
+    }
+
+    /**
+     * @param id
+     *            the node id
+     * @return the index of the cell of the node
+     */
+    int cellOf(final int id) {
+        final int cell = id >= 0 && id < cellOf.length ? cellOf[id] : EMPTY;
+        if (cell == EMPTY) {
+            throw new IllegalArgumentException("No position stored for node " + id);
+        }
+        return cell;
+    }
+
+    /**
+     * @param id1
+     *            the first node id
+     * @param id2
+     *            the second node id
+     * @return the Manhattan distance between the two nodes
+     */
+    int getDistance(final int id1, final int id2) {
+        final int c1 = cellOf(id1);
+        final int c2 = cellOf(id2);
+        return Math.abs(c1 % width - c2 % width) + Math.abs(c1 / width - c2 / width);
+    }
+
+    @Override
+    public boolean contains(final int id) {
+        return id >= 0 && id < cellOf.length && cellOf[id] != EMPTY;
+    }
+
+    @Override
+    public Position get(final int id) {
+        if (!contains(id)) {
+            return null;
+        }
+        final int cell = cellOf[id];
+        return new Discrete2DManhattan(cell % width, cell / width);
+    }
+
+    @Override
+    public double getCoordinate(final int id, final int dim) {
+        final int cell = cellOf(id);
+        if (dim == 0) {
+            return cell % width;
+        }
+        if (dim == 1) {
+            return cell / width;
+        }
+        throw new IllegalArgumentException(dim + " is not a valid dimension. Only 0 and 1 can be used.");
+    }
+
+    @Override
+    public double[] getCoordinates(final int id) {
+        final double[] result = new double[2];
+        getCoordinates(id, result, 0);
+        return result;
+    }
+
+    @Override
+    public void getCoordinates(final int id, final double[] result, final int offset) {
+        final int cell = cellOf(id);
+        result[offset] = cell % width;
+        result[offset + 1] = cell / width;
+    }
+
+    @Override
+    public void setCoordinates(final int id, final double[] coordinates, final int offset) {
+        final int from = cellOf(id);
+        occupy(id, coordinates[offset], coordinates[offset + 1]);
+        if (from != cellOf[id]) {
+            occupancy[from] = EMPTY;
+        }
+    }
+
+    /**
+     * The whole batch is validated before any node moves: nodes are first
+     * removed from their cells, and then placed in the new ones. As a
+     * consequence, nodes can swap their cells, or move into a cell that
+     * another node of the batch is leaving.
+     * 
+     * @throws IllegalArgumentException
+     *             if a target cell is outside the lattice, is targeted by
+     *             two nodes, or is occupied by a node which does not move
+     */
+    @Override
+    public void setCoordinates(final int[] ids, final double[] coordinates, final int dimensions) {
+        /*
+         * Just as moving the nodes in order, the last target of each node wins
+         */
+        final TIntIntMap targets = new TIntIntHashMap(ids.length * 2, 0.5f, EMPTY, EMPTY);
+        for (int i = 0; i < ids.length; i++) {
+            cellOf(ids[i]);
+            final double x = coordinates[i * dimensions];
+            final double y = coordinates[i * dimensions + 1];
+            final int cell = cell(x, y);
+            if (cell == EMPTY) {
+                throw new IllegalArgumentException("[" + x + ", " + y + "] is outside the " + width + "x" + height + " lattice.");
+            }
+            targets.put(ids[i], cell);
+        }
+        final int[] moving = targets.keys();
+        final TIntIntMap claims = new TIntIntHashMap(moving.length * 2, 0.5f, EMPTY, EMPTY);
+        for (final int id : moving) {
+            final int cell = targets.get(id);
+            final int other = claims.put(cell, id);
+            if (other != EMPTY) {
+                throw new IllegalArgumentException("Nodes " + other + " and " + id + " can not both move to cell "
+                        + cell % width + ", " + cell / width);
+            }
+            final int occupant = occupancy[cell];
+            if (occupant != EMPTY && !targets.containsKey(occupant)) {
+                throw new IllegalArgumentException("Cell " + cell % width + ", " + cell / width
+                        + " is already occupied by node " + occupant);
+            }
+        }
+        for (final int id : moving) {
+            occupancy[cellOf[id]] = EMPTY;
+        }
+        for (final int id : moving) {
+            final int cell = targets.get(id);
+            occupancy[cell] = id;
+            cellOf[id] = cell;
+        }
+    }
+
+    @Override
+    public boolean isWithinRange(final int id, final Position center, final double range, final double squaredRange) {
+        final int cell = cellOf(id);
+        return Math.abs(cell % width - center.getCoordinate(0)) + Math.abs(cell / width - center.getCoordinate(1)) <= range;
+    }
+
+    @Override
+    public void put(final int id, final Position p) {
+        if (p.getDimensions() != 2) {
+            throw new IllegalArgumentException(p + " has " + p.getDimensions() + " dimensions, 2 expected.");
+        }
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative node ids are not supported: " + id);
+        }
+        if (id >= cellOf.length) {
+            final int oldLength = cellOf.length;
+            cellOf = Arrays.copyOf(cellOf, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(cellOf, oldLength, cellOf.length, EMPTY);
+        }
+        final int from = cellOf[id];
+        occupy(id, p.getCoordinate(0), p.getCoordinate(1));
+        if (from != EMPTY && from != cellOf[id]) {
+            occupancy[from] = EMPTY;
+        }
+    }
+
+    @Override
+    public Position remove(final int id) {
+        final Position result = get(id);
+        if (result != null) {
+            occupancy[cellOf[id]] = EMPTY;
+            cellOf[id] = EMPTY;
+        }
+        return result;
+    }
+
+    private void occupy(final int id, final double x, final double y) {
+        final int cell = cell(x, y);
+        if (cell == EMPTY) {
+            throw new IllegalArgumentException("[" + x + ", " + y + "] is outside the " + width + "x" + height + " lattice.");
+        }
+        if (occupancy[cell] != EMPTY && occupancy[cell] != id) {
+            throw new IllegalArgumentException("Cell [" + x + ", " + y + "] is already occupied by node " + occupancy[cell]);
+        }
+        occupancy[cell] = id;
+        cellOf[id] = cell;
+    }
+
+}
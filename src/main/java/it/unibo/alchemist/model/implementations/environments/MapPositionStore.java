@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.environments;
+
+import java.util.Arrays;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.implementations.positions.ContinuousGenericEuclidean;
+import it.unibo.alchemist.model.implementations.positions.Euclidean2DPosition;
+import it.unibo.alchemist.model.implementations.positions.Euclidean3DPosition;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * Stores {@link Position} objects as they are provided, in a map keyed by node
+ * id. Works with every kind of {@link Position}.
+ */
+final class MapPositionStore implements PositionStore {
+
+    private static final long serialVersionUID = 1L;
+    private final TIntObjectHashMap<Position> nodeToPos = new TIntObjectHashMap<>();
+
+    @Override
+    public boolean contains(final int id) {
+        return nodeToPos.containsKey(id);
+    }
+
+    @Override
+    public Position get(final int id) {
+        return nodeToPos.get(id);
+    }
+
+    @Override
+    public double getCoordinate(final int id, final int dim) {
+        return nodeToPos.get(id).getCoordinate(dim);
+    }
+
+    @Override
+    public double[] getCoordinates(final int id) {
+        return nodeToPos.get(id).getCartesianCoordinates();
+    }
+
+    @Override
+    public void getCoordinates(final int id, final double[] result, final int offset) {
+        final Position pos = nodeToPos.get(id);
+        for (int d = 0; d < pos.getDimensions(); d++) {
+            result[offset + d] = pos.getCoordinate(d);
+        }
+    }
+
+    /**
+     * Stores a new position of the same class of the current one.
+     * 
+     * @throws IllegalArgumentException
+     *             if the current position can not be rebuilt from raw
+     *             coordinates
+     */
+    @Override
+    public void setCoordinates(final int id, final double[] coordinates, final int offset) {
+        nodeToPos.put(id, rebuild(nodeToPos.get(id), coordinates, offset));
+    }
+
+    /**
+     * Checks every node before changing any position.
+     * 
+     * @throws IllegalArgumentException
+     *             if the position of any node can not be rebuilt from raw
+     *             coordinates
+     */
+    @Override
+    public void setCoordinates(final int[] ids, final double[] coordinates, final int dimensions) {
+        for (final int id : ids) {
+            checkRebuildable(nodeToPos.get(id));
+        }
+        PositionStore.super.setCoordinates(ids, coordinates, dimensions);
+    }
+
+    private static Position rebuild(final Position current, final double[] coordinates, final int offset) {
+        checkRebuildable(current);
+        final Class<?> type = current.getClass();
+        if (type == Euclidean2DPosition.class) {
+            return new Euclidean2DPosition(coordinates[offset], coordinates[offset + 1]);
+        }
+        if (type == Euclidean3DPosition.class) {
+            return new Euclidean3DPosition(coordinates[offset], coordinates[offset + 1], coordinates[offset + 2]);
+        }
+        if (type == Continuous2DEuclidean.class) {
+            return new Continuous2DEuclidean(coordinates[offset], coordinates[offset + 1]);
+        }
+        return new ContinuousGenericEuclidean(Arrays.copyOfRange(coordinates, offset, offset + current.getDimensions()));
+    }
+
+    /*
+     * Subclasses and other kinds of positions may carry more than coordinates,
+     * or may not be able to represent arbitrary ones.
+     */
+    private static void checkRebuildable(final Position current) {
+        final Class<?> type = current.getClass();
+        if (type != Euclidean2DPosition.class && type != Euclidean3DPosition.class
+                && type != Continuous2DEuclidean.class && type != ContinuousGenericEuclidean.class) {
+            throw new IllegalArgumentException(type.getName() + " positions can not be built from raw coordinates.");
+        }
+    }
+
+    @Override
+    public boolean isWithinRange(final int id, final Position center, final double range, final double squaredRange) {
+        final Position pos = nodeToPos.get(id);
+        if (isEuclidean(center) && center.getDimensions() == pos.getDimensions()) {
+            if (pos instanceof Euclidean2DPosition) {
+                return ((Euclidean2DPosition) pos).getDistanceSquaredTo(center) <= squaredRange;
+            }
+            if (pos instanceof Euclidean3DPosition) {
+                return ((Euclidean3DPosition) pos).getDistanceSquaredTo(center) <= squaredRange;
+            }
+            if (pos instanceof ContinuousGenericEuclidean) {
+                return ((ContinuousGenericEuclidean) pos).getDistanceSquaredTo(center) <= squaredRange;
+            }
+        }
+        return pos.getDistanceTo(center) <= range;
+    }
+
+    private static boolean isEuclidean(final Position p) {
+        return p instanceof Euclidean2DPosition || p instanceof Euclidean3DPosition || p instanceof ContinuousGenericEuclidean;
+    }
+
+    @Override
+    public void put(final int id, final Position p) {
+        nodeToPos.put(id, p);
+    }
+
+    @Override
+    public Position remove(final int id) {
+        return nodeToPos.remove(id);
+    }
+
+}
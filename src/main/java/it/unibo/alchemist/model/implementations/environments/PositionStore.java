@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.environments;
+
+import it.unibo.alchemist.model.interfaces.Position;
+
+import java.io.Serializable;
+
+/**
+ * Storage for the positions of the nodes of an {@link AbstractEnvironment},
+ * indexed by node id.
+ */
+interface PositionStore extends Serializable {
+
+    /**
+     * @param id
+     *            the node id
+     * @return true if a position is stored for the node
+     */
+    boolean contains(int id);
+
+    /**
+     * @param id
+     *            the node id
+     * @return the position of the node, or null if no position is stored
+     */
+    Position get(int id);
+
+    /**
+     * @param id
+     *            the node id
+     * @param dim
+     *            the dimension
+     * @return the coordinate of the node along the dimension
+     */
+    double getCoordinate(int id, int dim);
+
+    /**
+     * @param id
+     *            the node id
+     * @return a fresh array containing the coordinates of the node
+     */
+    double[] getCoordinates(int id);
+
+    /**
+     * Copies the coordinates of a node in an existing array.
+     * 
+     * @param id
+     *            the node id
+     * @param result
+     *            the destination array
+     * @param offset
+     *            where to write the first coordinate
+     */
+    void getCoordinates(int id, double[] result, int offset);
+
+    /**
+     * Changes the position of a node which is already stored.
+     * 
+     * @param id
+     *            the node id
+     * @param coordinates
+     *            the source array, which is not retained
+     * @param offset
+     *            where to read the first coordinate
+     */
+    void setCoordinates(int id, double[] coordinates, int offset);
+
+    /**
+     * Changes the positions of many nodes which are already stored, as
+     * {@link #setCoordinates(int, double[], int)} would do for each of them,
+     * in order. If any of the new positions is not valid, no position
+     * changes.
+     * 
+     * @param ids
+     *            the node ids
+     * @param coordinates
+     *            the new coordinates, flattened: those of the node with id
+     *            ids[i] start at index i * dimensions. The array is not
+     *            retained
+     * @param dimensions
+     *            the number of coordinates per node
+     */
+    default void setCoordinates(final int[] ids, final double[] coordinates, final int dimensions) {
+        for (int i = 0; i < ids.length; i++) {
+            setCoordinates(ids[i], coordinates, i * dimensions);
+        }
+    }
+
+    /**
+     * @param id
+     *            the node id
+     * @param center
+     *            the center of the query
+     * @param range
+     *            the query range
+     * @param squaredRange
+     *            range * range, precomputed by the caller
+     * @return true if the node is not farther than range from center
+     */
+    boolean isWithinRange(int id, Position center, double range, double squaredRange);
+
+    /**
+     * Adds or changes the position of a node.
+     * 
+     * @param id
+     *            the node id
+     * @param p
+     *            the new position
+     */
+    void put(int id, Position p);
+
+    /**
+     * @param id
+     *            the node id
+     * @return the removed position, or null if no position was stored
+     */
+    Position remove(int id);
+
+}
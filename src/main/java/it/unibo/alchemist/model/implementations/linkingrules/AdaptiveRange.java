@@ -8,8 +8,16 @@
  */
 package it.unibo.alchemist.model.implementations.linkingrules;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import gnu.trove.map.TIntDoubleMap;
+import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntDoubleHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
 import it.unibo.alchemist.model.implementations.neighborhoods.CachedNeighborhood;
 import it.unibo.alchemist.model.interfaces.Environment;
 import it.unibo.alchemist.model.interfaces.Neighborhood;
@@ -17,7 +25,9 @@ import it.unibo.alchemist.model.interfaces.Node;
 
 /**
  * This linking rule dynamically searches for the best radius for each device,
- * in such a way that it connects to a certain number of devices.
+ * in such a way that it connects to a certain number of devices. Ranges are
+ * kept in striped primitive maps, so neighborhoods can be safely computed
+ * from multiple threads.
  * 
  * @param <T>
  */
@@ -35,10 +45,10 @@ public class AdaptiveRange<T> extends EuclideanDistance<T> {
      * Default minimum range.
      */
     public static final double DEFAULT_MINRANGE = 1d;
-    private static final long serialVersionUID = 8301318269785386062L;
+    private static final long serialVersionUID = -2391447205571309418L;
     private final double defaultAdjustment, minRange, maxRange;
     private final int n, t;
-    private final TIntDoubleMap ranges = new TIntDoubleHashMap();
+    private final StripedRanges ranges = new StripedRanges();
 
     /**
      * @param radius
@@ -152,27 +162,83 @@ public class AdaptiveRange<T> extends EuclideanDistance<T> {
 
     @Override
     public final Neighborhood<T> computeNeighborhood(final Node<T> center, final Environment<T> env) {
-        if (!ranges.containsKey(center.getId())) {
-            ranges.put(center.getId(), getRange());
+        final double curRange = ranges.getOrInit(center.getId(), getRange());
+        final List<Node<T>> neighbors = filter(center, env, curRange);
+        ranges.put(center.getId(), adjust(curRange, neighbors.size()));
+        return new CachedNeighborhood<>(center, neighbors, env);
+    }
+
+    /**
+     * Computes all the neighborhoods in parallel, on the common fork-join
+     * pool. As allowed by {@link BulkLinkingRule} for rules with state, the
+     * result differs from calling
+     * {@link #computeNeighborhood(Node, Environment)} on each node in
+     * sequence: all the neighborhoods are computed against the same snapshot
+     * of the ranges, and the ranges are adjusted only once all of them are
+     * ready. Relinking twice is thus the same as two rounds in which all the
+     * nodes adjust their range at the same time, regardless of the iteration
+     * order of the nodes and of the number of threads.
+     * 
+     * @param env
+     *            the environment
+     * @return a map from node ids to the neighborhoods of the nodes
+     */
+    @Override
+    public TIntObjectMap<Neighborhood<T>> computeNeighborhoods(final Environment<T> env) {
+        @SuppressWarnings("unchecked")
+        final Node<T>[] nodes = env.getNodes().toArray(new Node[env.getNodesNumber()]);
+        final double[] current = new double[nodes.length];
+        IntStream.range(0, nodes.length).parallel()
+            .forEach(i -> current[i] = ranges.getOrInit(nodes[i].getId(), getRange()));
+        @SuppressWarnings("unchecked")
+        final Neighborhood<T>[] neighborhoods = new Neighborhood[nodes.length];
+        IntStream.range(0, nodes.length).parallel().forEach(i -> {
+            neighborhoods[i] = new CachedNeighborhood<>(nodes[i], filter(nodes[i], env, current[i]), env);
+        });
+        final TIntObjectMap<Neighborhood<T>> result = new TIntObjectHashMap<>(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            ranges.put(nodes[i].getId(), adjust(current[i], neighborhoods[i].size()));
+            result.put(nodes[i].getId(), neighborhoods[i]);
         }
-        final double curRange = ranges.get(center.getId());
-        final Neighborhood<T> neigh = new CachedNeighborhood<>(center, env.getNodesWithinRange(center, curRange), env);
-        for (int i = 0; i < neigh.size();) {
-            final Node<T> neighbor = neigh.getNeighborByNumber(i);
-            final double neighrange = ranges.get(neighbor.getId());
-            if (conditionForRemoval(env, center, neighbor, curRange, neighrange)) {
-                neigh.removeNeighbor(neighbor);
-                i = 0;
-            } else {
-                i++;
+        return result;
+    }
+
+    /**
+     * Ranges get adjusted every time a neighborhood is computed, so the
+     * neighborhoods of moving nodes must be computed through
+     * {@link #computeNeighborhood(Node, Environment)}.
+     * 
+     * @return false
+     */
+    @Override
+    public final boolean isPairwise() {
+        return false;
+    }
+
+    /*
+     * Single pass over the nodes within range, dropping those that fail the
+     * removal condition.
+     */
+    private List<Node<T>> filter(final Node<T> center, final Environment<T> env, final double curRange) {
+        final List<Node<T>> inRange = env.getNodesWithinRange(center, curRange);
+        final List<Node<T>> neighbors = new ArrayList<>(inRange.size());
+        for (final Node<T> neighbor : inRange) {
+            if (isLinkAllowed(env, center, neighbor)
+                    && !conditionForRemoval(env, center, neighbor, curRange, ranges.get(neighbor.getId()))) {
+                neighbors.add(neighbor);
             }
         }
-        if (neigh.size() > n + t) {
-            ranges.put(center.getId(), Math.max(curRange - defaultAdjustment, minRange));
-        } else if (neigh.size() < Math.max(1, n - t)) {
-            ranges.put(center.getId(), Math.min(curRange + defaultAdjustment, maxRange));
+        return neighbors;
+    }
+
+    private double adjust(final double curRange, final int neighbors) {
+        if (neighbors > n + t) {
+            return Math.max(curRange - defaultAdjustment, minRange);
+        }
+        if (neighbors < Math.max(1, n - t)) {
+            return Math.min(curRange + defaultAdjustment, maxRange);
         }
-        return neigh;
+        return curRange;
     }
 
     /**
@@ -189,4 +255,50 @@ public class AdaptiveRange<T> extends EuclideanDistance<T> {
         return env.getDistanceBetweenNodes(center, neighbor) > neighRange;
     }
 
+    /*
+     * Per-node ranges, split among independently locked primitive maps, so
+     * that neighborhoods of different nodes can be computed concurrently.
+     * Nodes whose range is not known yet have range zero.
+     */
+    private static final class StripedRanges implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private static final int STRIPES = 16;
+        @SuppressFBWarnings(value = "SE_BAD_FIELD", justification = "TIntDoubleMap implements Externalizable that Implements Serializable")
+        private final TIntDoubleMap[] stripes = new TIntDoubleMap[STRIPES];
+
+        StripedRanges() {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new TIntDoubleHashMap();
+            }
+        }
+
+        private TIntDoubleMap stripe(final int id) {
+            return stripes[(id ^ id >>> 16) & (STRIPES - 1)];
+        }
+
+        double get(final int id) {
+            final TIntDoubleMap stripe = stripe(id);
+            synchronized (stripe) {
+                return stripe.get(id);
+            }
+        }
+
+        double getOrInit(final int id, final double initial) {
+            final TIntDoubleMap stripe = stripe(id);
+            synchronized (stripe) {
+                if (!stripe.containsKey(id)) {
+                    stripe.put(id, initial);
+                }
+                return stripe.get(id);
+            }
+        }
+
+        void put(final int id, final double range) {
+            final TIntDoubleMap stripe = stripe(id);
+            synchronized (stripe) {
+                stripe.put(id, range);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.linkingrules;
+
+import gnu.trove.map.TIntObjectMap;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.LinkingRule;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+
+/**
+ * A {@link LinkingRule} able to compute the neighborhoods of all the nodes of
+ * an environment at once, more efficiently than calling
+ * {@link #computeNeighborhood(it.unibo.alchemist.model.interfaces.Node, Environment)}
+ * for each of them.
+ * 
+ * For rules without state, the result must be the same as calling
+ * {@link #computeNeighborhood(it.unibo.alchemist.model.interfaces.Node, Environment)}
+ * on every node. Rules whose state changes at each call, such as
+ * {@link AdaptiveRange}, can not match a sequence of calls without depending
+ * on the order of the nodes: they may instead compute all the neighborhoods
+ * against the state found when the relink starts, and update the state once
+ * all of them are ready, as if all the nodes got relinked at the same time.
+ * Such rules must document it.
+ * 
+ * @param <T>
+ *            The type which describes the concentration of a molecule
+ */
+public interface BulkLinkingRule<T> extends LinkingRule<T> {
+
+    /**
+     * Computes the neighborhoods of all the nodes in the environment. The
+     * result must not depend on how the computation gets scheduled, nor on
+     * the iteration order of the nodes.
+     * 
+     * @param env
+     *            the environment
+     * @return a map from node ids to the neighborhoods of the nodes
+     */
+    TIntObjectMap<Neighborhood<T>> computeNeighborhoods(Environment<T> env);
+
+}
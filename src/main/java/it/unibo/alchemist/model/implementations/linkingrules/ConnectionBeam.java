@@ -11,13 +11,9 @@ package it.unibo.alchemist.model.implementations.linkingrules;
 import static org.apache.commons.math3.util.FastMath.PI;
 import static org.apache.commons.math3.util.FastMath.atan2;
 import static org.apache.commons.math3.util.FastMath.cos;
-import static org.apache.commons.math3.util.FastMath.nextAfter;
-import static org.apache.commons.math3.util.FastMath.nextUp;
 import static org.apache.commons.math3.util.FastMath.sin;
-import it.unibo.alchemist.model.implementations.neighborhoods.CachedNeighborhood;
 import it.unibo.alchemist.model.interfaces.Environment;
 import it.unibo.alchemist.model.interfaces.Environment2DWithObstacles;
-import it.unibo.alchemist.model.interfaces.Neighborhood;
 import it.unibo.alchemist.model.interfaces.Node;
 import it.unibo.alchemist.model.interfaces.Position;
 
@@ -25,18 +21,17 @@ import java.awt.geom.Area;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Rectangle2D;
-import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
-
-import org.danilopianini.lang.HashUtils;
+import java.util.function.Function;
 
 /**
  * Connects two nodes if, throwing a beam from one to the other, there exists at
  * least one path entirely inside the beam that connects the two nodes. This
  * rule is ideal for environments with obstacles, where the user wants some
- * tolerance in connection breaking.
+ * tolerance in connection breaking. Unless obstacles can move, the outcome of
+ * each check is kept in a {@link LineOfSightCache} and reused as long as
+ * neither node moves.
  * 
  * @param <T>
  */
@@ -45,8 +40,8 @@ public class ConnectionBeam<T> extends EuclideanDistance<T> {
     private static final long serialVersionUID = -6303232843110524434L;
     private static final int COORDS = 6;
     private final double range;
-    private transient Environment2DWithObstacles<?, ?> oenv;
-    private transient Area obstacles = new Area();
+    private final LineOfSightCache cache;
+    private transient volatile ObstacleIndex index;
 
     /**
      * @param radius
@@ -55,45 +50,75 @@ public class ConnectionBeam<T> extends EuclideanDistance<T> {
      *            beam span (tolerance)
      */
     public ConnectionBeam(final double radius, final double beamSize) {
+        this(radius, beamSize, LineOfSightCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param radius
+     *            beam maximum length
+     * @param beamSize
+     *            beam span (tolerance)
+     * @param cacheCapacity
+     *            the number of slots of the {@link LineOfSightCache}
+     */
+    public ConnectionBeam(final double radius, final double beamSize, final int cacheCapacity) {
         super(radius);
         range = beamSize;
+        cache = new LineOfSightCache(cacheCapacity);
     }
 
     @Override
-    public Neighborhood<T> computeNeighborhood(final Node<T> center, final Environment<T> env) {
-        final Neighborhood<T> normal = super.computeNeighborhood(center, env);
-        if (!HashUtils.pointerEquals(env, oenv)) {
-            if (!(env instanceof Environment2DWithObstacles<?, ?>)) {
-                return normal;
-            }
-            oenv = (Environment2DWithObstacles<?, ?>) env;
-            obstacles.reset();
-            oenv.getObstacles().forEach((obs) -> {
-                /*
-                 * Doubles are prone to approximation errors. Use nextAfter to get rid of them
-                 */
-                final Rectangle2D bounds = obs.getBounds2D();
-                final double mx = nextAfter(bounds.getMinX(), java.lang.Double.NEGATIVE_INFINITY);
-                final double my = nextAfter(bounds.getMinY(), java.lang.Double.NEGATIVE_INFINITY);
-                final double ex = nextUp(bounds.getMaxX());
-                final double ey = nextUp(bounds.getMaxY());
-                obstacles.add(new Area(new Rectangle2D.Double(mx, my, ex - mx, ey - my)));
-            });
+    protected boolean isLinkAllowed(final Environment<T> env, final Node<T> center, final Node<T> neighbor) {
+        if (!(env instanceof Environment2DWithObstacles<?, ?>)) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        final Environment2DWithObstacles<?, T> oenv = (Environment2DWithObstacles<?, T>) env;
+        final Position cp = env.getPosition(center);
+        final Position np = env.getPosition(neighbor);
+        final ObstacleIndex idx = currentIndex(oenv);
+        if (idx == null) {
+            return !oenv.intersectsObstacle(cp, np)
+                || projectedBeamOvercomesObstacle(area -> ObstacleIndex.obstaclesWithin(oenv, area), cp, np);
+        }
+        return cache.getOrCompute(env, center, neighbor, () ->
+            !idx.mayIntersect(cp.getCoordinate(0), cp.getCoordinate(1), np.getCoordinate(0), np.getCoordinate(1))
+                || !oenv.intersectsObstacle(cp, np)
+                || projectedBeamOvercomesObstacle(idx::obstaclesWithin, cp, np));
+    }
+
+    /**
+     * @return the cache of the line of sight checks
+     */
+    public final LineOfSightCache getLineOfSightCache() {
+        return cache;
+    }
+
+    /*
+     * Links are also checked one pair at a time by incremental linking, so
+     * obstacles added or removed since the last check are detected here. The
+     * index is not updated when obstacles move: if they can, there is none,
+     * and each check scans all the obstacles.
+     */
+    private ObstacleIndex currentIndex(final Environment2DWithObstacles<?, ?> env) {
+        if (env.hasMobileObstacles()) {
+            return null;
         }
-        if (!normal.isEmpty()) {
-            final Position cp = env.getPosition(center);
-            final List<Node<T>> neighs = normal.getNeighbors().stream()
-                .filter((neigh) -> {
-                    final Position np = env.getPosition(neigh);
-                    return !oenv.intersectsObstacle(cp, np) || projectedBeamOvercomesObstacle(cp, np);
-                })
-                .collect(ArrayList::new, (l, el) -> l.add(el), (l1, l2) -> l1.addAll(l2));
-            return new CachedNeighborhood<>(center, neighs, env);
+        final ObstacleIndex idx = index;
+        return idx != null && idx.isUpToDate(env) ? idx : rebuildIndex(env);
+    }
+
+    private synchronized ObstacleIndex rebuildIndex(final Environment2DWithObstacles<?, ?> env) {
+        ObstacleIndex idx = index;
+        if (idx == null || !idx.isUpToDate(env)) {
+            idx = new ObstacleIndex(env);
+            cache.clear();
+            index = idx;
         }
-        return normal;
+        return idx;
     }
 
-    private boolean projectedBeamOvercomesObstacle(final Position pos1, final Position pos2) {
+    private boolean projectedBeamOvercomesObstacle(final Function<Rectangle2D, Area> obstaclesWithin, final Position pos1, final Position pos2) {
         final double p1x = pos1.getCoordinate(0);
         final double p1y = pos1.getCoordinate(1);
         final double p2x = pos2.getCoordinate(0);
@@ -125,8 +150,12 @@ public class ConnectionBeam<T> extends EuclideanDistance<T> {
         beamShape.closePath();
         final Area beam = new Area(beamShape);
         /*
-         * Perform subtraction
+         * Perform subtraction, only considering the obstacles nearby
          */
+        final Area obstacles = obstaclesWithin.apply(beamShape.getBounds2D());
+        if (obstacles.isEmpty()) {
+            return true;
+        }
         beam.subtract(obstacles);
         /*
          * Rebuild single areas
@@ -163,10 +192,4 @@ public class ConnectionBeam<T> extends EuclideanDistance<T> {
         return false;
     }
 
-    private void readObject(final ObjectInputStream o) throws ClassNotFoundException, IOException {
-        o.defaultReadObject();
-        oenv = null;
-        obstacles = new Area();
-    }
-
 }
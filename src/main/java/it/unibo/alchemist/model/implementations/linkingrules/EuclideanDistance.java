@@ -8,8 +8,18 @@
  */
 package it.unibo.alchemist.model.implementations.linkingrules;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import it.unibo.alchemist.model.implementations.environments.AbstractEnvironment;
 import it.unibo.alchemist.model.implementations.neighborhoods.CachedNeighborhood;
-import it.unibo.alchemist.model.interfaces.LinkingRule;
 import it.unibo.alchemist.model.interfaces.Environment;
 import it.unibo.alchemist.model.interfaces.Neighborhood;
 import it.unibo.alchemist.model.interfaces.Node;
@@ -21,10 +31,11 @@ import it.unibo.alchemist.model.interfaces.Node;
  * @param <T>
  *            The type which describes the concentration of a molecule
  */
-public class EuclideanDistance<T> implements LinkingRule<T> {
+public class EuclideanDistance<T> implements BulkLinkingRule<T>, PairwiseLinkingRule<T> {
 
     private static final long serialVersionUID = -405055780667941773L;
     private final double range;
+    private transient volatile Boolean customNeighborhood;
 
     /**
      * @param radius
@@ -36,7 +47,132 @@ public class EuclideanDistance<T> implements LinkingRule<T> {
 
     @Override
     public Neighborhood<T> computeNeighborhood(final Node<T> center, final Environment<T> env) {
-        return new CachedNeighborhood<>(center, env.getNodesWithinRange(center, range), env);
+        final List<Node<T>> inRange = env.getNodesWithinRange(center, range);
+        final List<Node<T>> neighbors = new ArrayList<>(inRange.size());
+        for (final Node<T> node : inRange) {
+            if (isLinkAllowed(env, center, node)) {
+                neighbors.add(node);
+            }
+        }
+        return new CachedNeighborhood<>(center, neighbors, env);
+    }
+
+    /**
+     * Computes all the neighborhoods in parallel, on the common fork-join
+     * pool. Links are symmetric, so each pair of nodes within range is checked
+     * through {@link #isLinkAllowed(Environment, Node, Node)} only once, from
+     * the node with the lower id. On an {@link AbstractEnvironment}, pairs are
+     * found through {@link AbstractEnvironment#findPairsWithinRange(Node[], double)},
+     * so that the distance of each pair is computed only once as well. The
+     * result is the same as calling
+     * {@link #computeNeighborhood(Node, Environment)} on every node, and does
+     * not depend on the number of threads. If a subclass overrides
+     * {@link #computeNeighborhood(Node, Environment)}, that is exactly what
+     * happens, sequentially.
+     * 
+     * @param env
+     *            the environment
+     * @return a map from node ids to the neighborhoods of the nodes
+     */
+    @Override
+    public TIntObjectMap<Neighborhood<T>> computeNeighborhoods(final Environment<T> env) {
+        if (hasCustomNeighborhood()) {
+            final TIntObjectMap<Neighborhood<T>> result = new TIntObjectHashMap<>(env.getNodesNumber());
+            for (final Node<T> node : env.getNodes()) {
+                result.put(node.getId(), computeNeighborhood(node, env));
+            }
+            return result;
+        }
+        @SuppressWarnings("unchecked")
+        final Node<T>[] nodes = env.getNodes().toArray(new Node[env.getNodesNumber()]);
+        /*
+         * First phase, parallel: find the allowed links, each pair on one of
+         * its nodes only.
+         */
+        final int[][] forward = new int[nodes.length][];
+        if (env instanceof AbstractEnvironment) {
+            final int[][] pairs = ((AbstractEnvironment<T>) env).findPairsWithinRange(nodes, range);
+            IntStream.range(0, nodes.length).parallel().forEach(i -> {
+                final TIntArrayList links = new TIntArrayList(pairs[i].length);
+                for (final int j : pairs[i]) {
+                    final boolean lower = nodes[i].getId() < nodes[j].getId();
+                    if (isLinkAllowed(env, lower ? nodes[i] : nodes[j], lower ? nodes[j] : nodes[i])) {
+                        links.add(j);
+                    }
+                }
+                forward[i] = links.toArray();
+            });
+        } else {
+            final TIntIntMap indexes = new TIntIntHashMap(nodes.length * 2, 0.5f, -1, -1);
+            for (int i = 0; i < nodes.length; i++) {
+                indexes.put(nodes[i].getId(), i);
+            }
+            IntStream.range(0, nodes.length).parallel().forEach(i -> {
+                final Node<T> center = nodes[i];
+                final TIntArrayList links = new TIntArrayList();
+                for (final Node<T> node : env.getNodesWithinRange(center, range)) {
+                    if (node.getId() > center.getId() && isLinkAllowed(env, center, node)) {
+                        links.add(indexes.get(node.getId()));
+                    }
+                }
+                forward[i] = links.toArray();
+            });
+        }
+        /*
+         * Second phase: mirror the links into a compact adjacency structure.
+         */
+        final int[] offsets = new int[nodes.length + 1];
+        for (int i = 0; i < nodes.length; i++) {
+            offsets[i + 1] += forward[i].length;
+            for (final int j : forward[i]) {
+                offsets[j + 1]++;
+            }
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        final int[] adjacency = new int[offsets[nodes.length]];
+        final int[] fill = Arrays.copyOf(offsets, nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            for (final int j : forward[i]) {
+                adjacency[fill[i]++] = j;
+                adjacency[fill[j]++] = i;
+            }
+        }
+        /*
+         * Third phase, parallel: build the neighborhoods.
+         */
+        @SuppressWarnings("unchecked")
+        final Neighborhood<T>[] neighborhoods = new Neighborhood[nodes.length];
+        IntStream.range(0, nodes.length).parallel().forEach(i -> {
+            final List<Node<T>> neighbors = new ArrayList<>(offsets[i + 1] - offsets[i]);
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                neighbors.add(nodes[adjacency[k]]);
+            }
+            neighborhoods[i] = new CachedNeighborhood<>(nodes[i], neighbors, env);
+        });
+        final TIntObjectMap<Neighborhood<T>> result = new TIntObjectHashMap<>(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            result.put(nodes[i].getId(), neighborhoods[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Further filters the nodes within range. This implementation always
+     * returns true. Subclasses may override it, but must keep it symmetric
+     * with respect to the two nodes, and safe to be called concurrently.
+     * 
+     * @param env
+     *            the environment
+     * @param center
+     *            the node whose neighborhood is being computed
+     * @param neighbor
+     *            a node within range
+     * @return true if the two nodes should be linked
+     */
+    protected boolean isLinkAllowed(final Environment<T> env, final Node<T> center, final Node<T> neighbor) {
+        return true;
     }
 
     /**
@@ -46,4 +182,45 @@ public class EuclideanDistance<T> implements LinkingRule<T> {
         return range;
     }
 
+    @Override
+    public final double getLinkingRange() {
+        return range;
+    }
+
+    /**
+     * Links only depend on {@link #isLinkAllowed(Environment, Node, Node)},
+     * unless a subclass overrides
+     * {@link #computeNeighborhood(Node, Environment)}: in such case, the
+     * environment must keep calling it.
+     * 
+     * @return true if {@link #computeNeighborhood(Node, Environment)} is not
+     *         overridden
+     */
+    @Override
+    public boolean isPairwise() {
+        return !hasCustomNeighborhood();
+    }
+
+    /*
+     * Whether a subclass redeclares computeNeighborhood. Computed once, races
+     * are harmless.
+     */
+    private boolean hasCustomNeighborhood() {
+        Boolean custom = customNeighborhood;
+        if (custom == null) {
+            try {
+                custom = getClass().getMethod("computeNeighborhood", Node.class, Environment.class).getDeclaringClass() != EuclideanDistance.class;
+            } catch (final NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+            customNeighborhood = custom;
+        }
+        return custom;
+    }
+
+    @Override
+    public final boolean isLinked(final Environment<T> env, final Node<T> a, final Node<T> b) {
+        return isLinkAllowed(env, a, b);
+    }
+
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.linkingrules;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import it.unibo.alchemist.model.implementations.environments.AbstractEnvironment;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * A bounded cache for the outcome of line of sight checks between two nodes.
+ * Entries are keyed by the ids of the two nodes, and are only valid for the
+ * position epochs (see {@link AbstractEnvironment#getPositionEpoch(Node)}) the
+ * check was performed at: as soon as either node moves, the entry is
+ * stale. The cache is direct mapped: each pair of nodes can only be stored in
+ * one slot, and evicts whatever was there.
+ * 
+ * Lookups and updates are lock free, and can be performed concurrently.
+ */
+public final class LineOfSightCache implements Serializable {
+
+    /**
+     * Default number of slots.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final long serialVersionUID = -2185496620155000521L;
+    private final Entry[] entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity
+     *            the number of slots, rounded up to the next power of two
+     */
+    public LineOfSightCache(final int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("The capacity must be between 1 and " + MAX_CAPACITY + ", " + capacity + " provided.");
+        }
+        entries = new Entry[capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1];
+    }
+
+    /**
+     * Returns the cached outcome of the check between two nodes, if it was
+     * computed at the current epochs of both. Otherwise, performs the check and
+     * caches it. The check must be symmetric.
+     * 
+     * @param id1
+     *            first node id
+     * @param epoch1
+     *            first node position epoch
+     * @param id2
+     *            second node id
+     * @param epoch2
+     *            second node position epoch
+     * @param check
+     *            the check to perform on cache misses
+     * @return the outcome of the check
+     */
+    boolean getOrCompute(final int id1, final long epoch1, final int id2, final long epoch2, final BooleanSupplier check) {
+        final boolean ordered = id1 < id2;
+        final int lower = ordered ? id1 : id2;
+        final int upper = ordered ? id2 : id1;
+        final long lowerEpoch = ordered ? epoch1 : epoch2;
+        final long upperEpoch = ordered ? epoch2 : epoch1;
+        final int slot = slotOf(lower, upper);
+        /*
+         * Entries are immutable: a racy read either sees a whole entry or null
+         */
+        final Entry cached = entries[slot];
+        if (cached != null && cached.matches(lower, lowerEpoch, upper, upperEpoch)) {
+            hits.increment();
+            return cached.result;
+        }
+        misses.increment();
+        final boolean result = check.getAsBoolean();
+        entries[slot] = new Entry(lower, lowerEpoch, upper, upperEpoch, result);
+        return result;
+    }
+
+    /**
+     * Same as {@link #getOrCompute(int, long, int, long, BooleanSupplier)},
+     * reading ids and epochs from the nodes. Only {@link AbstractEnvironment}s
+     * track position epochs: on any other environment, the check is always
+     * performed and nothing gets cached.
+     * 
+     * @param env
+     *            the environment
+     * @param n1
+     *            the first node
+     * @param n2
+     *            the second node
+     * @param check
+     *            the check to perform on cache misses
+     * @param <T>
+     *            concentration type
+     * @return the outcome of the check
+     */
+    public <T> boolean getOrCompute(final Environment<T> env, final Node<T> n1, final Node<T> n2, final BooleanSupplier check) {
+        if (env instanceof AbstractEnvironment) {
+            final AbstractEnvironment<T> aenv = (AbstractEnvironment<T>) env;
+            return getOrCompute(n1.getId(), aenv.getPositionEpoch(n1), n2.getId(), aenv.getPositionEpoch(n2), check);
+        }
+        return check.getAsBoolean();
+    }
+
+    /**
+     * Drops all the entries. Counters are not reset.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = null;
+        }
+    }
+
+    /**
+     * @return the number of slots
+     */
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * @return how many lookups have been answered from the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return how many lookups required the check to be performed
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private int slotOf(final int lower, final int upper) {
+        final long key = ((long) lower << Integer.SIZE | upper & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L;
+        return (int) (key >>> Integer.SIZE) & (entries.length - 1);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[capacity=" + entries.length + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+
+    private static final class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final int lower, upper;
+        private final long lowerEpoch, upperEpoch;
+        private final boolean result;
+
+        Entry(final int lower, final long lowerEpoch, final int upper, final long upperEpoch, final boolean result) {
+            this.lower = lower;
+            this.lowerEpoch = lowerEpoch;
+            this.upper = upper;
+            this.upperEpoch = upperEpoch;
+            this.result = result;
+        }
+
+        boolean matches(final int l, final long le, final int u, final long ue) {
+            return lower == l && upper == u && lowerEpoch == le && upperEpoch == ue;
+        }
+    }
+
+}
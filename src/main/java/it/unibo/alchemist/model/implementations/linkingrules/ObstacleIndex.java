@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.linkingrules;
+
+import static org.apache.commons.math3.util.FastMath.ceil;
+import static org.apache.commons.math3.util.FastMath.floor;
+import static org.apache.commons.math3.util.FastMath.max;
+import static org.apache.commons.math3.util.FastMath.min;
+import static org.apache.commons.math3.util.FastMath.nextAfter;
+import static org.apache.commons.math3.util.FastMath.nextUp;
+import static org.apache.commons.math3.util.FastMath.sqrt;
+
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+
+import org.danilopianini.lang.HashUtils;
+
+import gnu.trove.list.array.TIntArrayList;
+import it.unibo.alchemist.model.interfaces.Environment2DWithObstacles;
+import it.unibo.alchemist.model.interfaces.Obstacle2D;
+
+/**
+ * Broad phase for the obstacle-aware linking rules. The bounding boxes of the
+ * obstacles of an environment are slightly enlarged (to get rid of
+ * approximation errors) and bucketed in a uniform grid, so that a segment or a
+ * rectangle only gets tested against the obstacles nearby.
+ * 
+ * Instances are immutable, and safe to be used from multiple threads. They are not updated when obstacles are added, removed
+ * or moved: use {@link #isUpToDate(Environment2DWithObstacles)} to know when a
+ * new one is needed.
+ */
+final class ObstacleIndex {
+
+    private final Environment2DWithObstacles<?, ?> env;
+    private final int obstaclesCount;
+    private final Rectangle2D[] bounds;
+    private final double originX, originY, endX, endY, cellSize;
+    private final int columns, rows;
+    private final int[] cellStart;
+    private final int[] cellContent;
+
+    /**
+     * @param environment
+     *            the environment whose obstacles should be indexed
+     */
+    ObstacleIndex(final Environment2DWithObstacles<?, ?> environment) {
+        env = environment;
+        final List<? extends Obstacle2D> obstacles = environment.getObstacles();
+        obstaclesCount = obstacles.size();
+        bounds = new Rectangle2D[obstaclesCount];
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < obstaclesCount; i++) {
+            bounds[i] = enlargedBounds(obstacles.get(i));
+            minX = min(minX, bounds[i].getMinX());
+            minY = min(minY, bounds[i].getMinY());
+            maxX = max(maxX, bounds[i].getMaxX());
+            maxY = max(maxY, bounds[i].getMaxY());
+        }
+        if (obstaclesCount == 0) {
+            originX = 0;
+            originY = 0;
+            endX = 0;
+            endY = 0;
+            cellSize = 1;
+            columns = 1;
+            rows = 1;
+        } else {
+            /*
+             * About one obstacle per cell, if they were evenly spread
+             */
+            final double width = maxX - minX;
+            final double height = maxY - minY;
+            originX = minX;
+            originY = minY;
+            endX = maxX;
+            endY = maxY;
+            cellSize = max(sqrt(width * height / obstaclesCount), max(width, height) / obstaclesCount);
+            columns = (int) min(max(1, ceil(width / cellSize)), obstaclesCount);
+            rows = (int) min(max(1, ceil(height / cellSize)), obstaclesCount);
+        }
+        /*
+         * Compressed cell lists: count, prefix sum, fill
+         */
+        cellStart = new int[columns * rows + 1];
+        for (final Rectangle2D b : bounds) {
+            forEachCell(b.getMinX(), b.getMinY(), b.getMaxX(), b.getMaxY(), cell -> cellStart[cell + 1]++);
+        }
+        for (int i = 0; i < columns * rows; i++) {
+            cellStart[i + 1] += cellStart[i];
+        }
+        cellContent = new int[cellStart[columns * rows]];
+        final int[] fill = cellStart.clone();
+        for (int i = 0; i < obstaclesCount; i++) {
+            final int obstacle = i;
+            final Rectangle2D b = bounds[i];
+            forEachCell(b.getMinX(), b.getMinY(), b.getMaxX(), b.getMaxY(), cell -> cellContent[fill[cell]++] = obstacle);
+        }
+    }
+
+    /**
+     * @param environment
+     *            the environment
+     * @return true if this index has been built for the passed environment
+     */
+    boolean isBuiltFor(final Environment2DWithObstacles<?, ?> environment) {
+        return HashUtils.pointerEquals(env, environment);
+    }
+
+    /**
+     * @param environment
+     *            the environment
+     * @return true if this index has been built for the passed environment,
+     *         and the number of obstacles did not change
+     */
+    boolean isUpToDate(final Environment2DWithObstacles<?, ?> environment) {
+        return isBuiltFor(environment) && environment.getObstacles().size() == obstaclesCount;
+    }
+
+    /**
+     * @param x1
+     *            first point x
+     * @param y1
+     *            first point y
+     * @param x2
+     *            second point x
+     * @param y2
+     *            second point y
+     * @return false if the segment surely does not touch any obstacle, true
+     *         if it crosses at least one of the enlarged bounding boxes
+     */
+    boolean mayIntersect(final double x1, final double y1, final double x2, final double y2) {
+        final boolean[] found = new boolean[1];
+        forEachCandidate(min(x1, x2), min(y1, y2), max(x1, x2), max(y1, y2), i -> {
+            found[0] = bounds[i].intersectsLine(x1, y1, x2, y2);
+            return !found[0];
+        });
+        return found[0];
+    }
+
+    /**
+     * @param area
+     *            the rectangle of interest
+     * @return the union of the enlarged bounding boxes of the obstacles which
+     *         intersect the given rectangle
+     */
+    Area obstaclesWithin(final Rectangle2D area) {
+        final TIntArrayList candidates = new TIntArrayList();
+        forEachCandidate(area.getMinX(), area.getMinY(), area.getMaxX(), area.getMaxY(), i -> {
+            if (bounds[i].intersects(area)) {
+                candidates.add(i);
+            }
+            return true;
+        });
+        candidates.sort();
+        final Area result = new Area();
+        for (int k = 0; k < candidates.size(); k++) {
+            if (k == 0 || candidates.get(k) != candidates.get(k - 1)) {
+                result.add(new Area(bounds[candidates.get(k)]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #obstaclesWithin(Rectangle2D)}, but scanning all the
+     * current obstacles of the environment, without any index. Meant for
+     * environments whose obstacles can move.
+     * 
+     * @param environment
+     *            the environment
+     * @param area
+     *            the rectangle of interest
+     * @return the union of the enlarged bounding boxes of the obstacles which
+     *         intersect the given rectangle
+     */
+    static Area obstaclesWithin(final Environment2DWithObstacles<?, ?> environment, final Rectangle2D area) {
+        final Area result = new Area();
+        for (final Obstacle2D obstacle : environment.getObstacles()) {
+            final Rectangle2D b = enlargedBounds(obstacle);
+            if (b.intersects(area)) {
+                result.add(new Area(b));
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Doubles are prone to approximation errors. Use nextAfter to get rid of
+     * them.
+     */
+    private static Rectangle2D enlargedBounds(final Obstacle2D obstacle) {
+        final Rectangle2D b = obstacle.getBounds2D();
+        final double mx = nextAfter(b.getMinX(), Double.NEGATIVE_INFINITY);
+        final double my = nextAfter(b.getMinY(), Double.NEGATIVE_INFINITY);
+        final double ex = nextUp(b.getMaxX());
+        final double ey = nextUp(b.getMaxY());
+        return new Rectangle2D.Double(mx, my, ex - mx, ey - my);
+    }
+
+    private int column(final double x) {
+        return (int) min(max(0, floor((x - originX) / cellSize)), columns - 1);
+    }
+
+    private int row(final double y) {
+        return (int) min(max(0, floor((y - originY) / cellSize)), rows - 1);
+    }
+
+    private void forEachCell(final double minX, final double minY, final double maxX, final double maxY, final CellAction action) {
+        final int c2 = column(maxX);
+        final int r2 = row(maxY);
+        for (int r = row(minY); r <= r2; r++) {
+            for (int c = column(minX); c <= c2; c++) {
+                action.apply(r * columns + c);
+            }
+        }
+    }
+
+    /*
+     * Visits the obstacles bucketed in the cells overlapping the rectangle,
+     * possibly more than once, until the visitor returns false.
+     */
+    private void forEachCandidate(final double minX, final double minY, final double maxX, final double maxY, final Visitor visitor) {
+        if (obstaclesCount == 0
+                || maxX < originX || maxY < originY
+                || minX > endX || minY > endY) {
+            return;
+        }
+        final int c2 = column(maxX);
+        final int r2 = row(maxY);
+        for (int r = row(minY); r <= r2; r++) {
+            for (int c = column(minX); c <= c2; c++) {
+                final int cell = r * columns + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    if (!visitor.visit(cellContent[k])) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface CellAction {
+        void apply(int cell);
+    }
+
+    @FunctionalInterface
+    private interface Visitor {
+        boolean visit(int obstacle);
+    }
+
+}
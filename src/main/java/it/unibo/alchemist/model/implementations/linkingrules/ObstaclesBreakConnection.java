@@ -10,45 +10,89 @@ package it.unibo.alchemist.model.implementations.linkingrules;
 
 import it.unibo.alchemist.model.interfaces.Environment;
 import it.unibo.alchemist.model.interfaces.Environment2DWithObstacles;
-import it.unibo.alchemist.model.interfaces.Neighborhood;
 import it.unibo.alchemist.model.interfaces.Node;
 import it.unibo.alchemist.model.interfaces.Position;
 
 /**
  * Similar to {@link EuclideanDistance}, but if the environment has obstacles,
- * the links are removed.
+ * the links are removed. Unless the obstacles can move, segments are first
+ * checked against a grid of the obstacle bounding boxes, and the outcome of
+ * each check is kept in a {@link LineOfSightCache} and reused as long as
+ * neither node moves.
  * 
  * @param <T>
  */
 public class ObstaclesBreakConnection<T> extends EuclideanDistance<T> {
 
     private static final long serialVersionUID = -3279202906910960340L;
+    private final LineOfSightCache cache;
+    private transient volatile ObstacleIndex index;
 
     /**
      * @param radius
      *            connection range
      */
     public ObstaclesBreakConnection(final Double radius) {
+        this(radius, LineOfSightCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param radius
+     *            connection range
+     * @param cacheCapacity
+     *            the number of slots of the {@link LineOfSightCache}
+     */
+    public ObstaclesBreakConnection(final Double radius, final int cacheCapacity) {
         super(radius);
+        cache = new LineOfSightCache(cacheCapacity);
     }
 
     @Override
-    public Neighborhood<T> computeNeighborhood(final Node<T> center, final Environment<T> env) {
-        final Neighborhood<T> normal = super.computeNeighborhood(center, env);
-        if (!normal.isEmpty() && env instanceof Environment2DWithObstacles) {
-            final Position cp = env.getPosition(center);
+    protected boolean isLinkAllowed(final Environment<T> env, final Node<T> center, final Node<T> neighbor) {
+        if (env instanceof Environment2DWithObstacles) {
             @SuppressWarnings("unchecked")
             final Environment2DWithObstacles<?, T> environment = (Environment2DWithObstacles<?, T>) env;
-            for (int i = 0; i < normal.size(); i++) {
-                final Node<T> node = normal.getNeighborByNumber(i);
-                final Position np = environment.getPosition(node);
-                if (environment.intersectsObstacle(cp, np)) {
-                    normal.removeNeighbor(node);
-                    i--;
-                }
+            final Position cp = environment.getPosition(center);
+            final Position np = environment.getPosition(neighbor);
+            final ObstacleIndex idx = currentIndex(environment);
+            if (idx == null) {
+                return !environment.intersectsObstacle(cp, np);
             }
+            return cache.getOrCompute(environment, center, neighbor, () ->
+                !idx.mayIntersect(cp.getCoordinate(0), cp.getCoordinate(1), np.getCoordinate(0), np.getCoordinate(1))
+                    || !environment.intersectsObstacle(cp, np));
+        }
+        return true;
+    }
+
+    /**
+     * @return the cache of the line of sight checks
+     */
+    public final LineOfSightCache getLineOfSightCache() {
+        return cache;
+    }
+
+    /*
+     * Links are also checked one pair at a time by incremental linking, so
+     * obstacles added or removed since the last check are detected here.
+     * Null if obstacles can move.
+     */
+    private ObstacleIndex currentIndex(final Environment2DWithObstacles<?, ?> env) {
+        if (env.hasMobileObstacles()) {
+            return null;
+        }
+        final ObstacleIndex idx = index;
+        return idx != null && idx.isUpToDate(env) ? idx : rebuildIndex(env);
+    }
+
+    private synchronized ObstacleIndex rebuildIndex(final Environment2DWithObstacles<?, ?> env) {
+        ObstacleIndex idx = index;
+        if (idx == null || !idx.isUpToDate(env)) {
+            idx = new ObstacleIndex(env);
+            cache.clear();
+            index = idx;
         }
-        return normal;
+        return idx;
     }
 
 }
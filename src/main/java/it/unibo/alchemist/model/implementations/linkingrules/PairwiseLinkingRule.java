@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.linkingrules;
+
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.LinkingRule;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * A {@link LinkingRule} whose links can be checked pair by pair: two nodes are
+ * linked if and only if their distance is not greater than
+ * {@link #getLinkingRange()} and {@link #isLinked(Environment, Node, Node)}
+ * holds. When a node moves, environments can then find the neighbors it
+ * gained and lost looking at its former neighbors and at the nodes near its
+ * new position, without recomputing its whole neighborhood.
+ * 
+ * @param <T>
+ *            The type which describes the concentration of a molecule
+ */
+public interface PairwiseLinkingRule<T> extends LinkingRule<T> {
+
+    /**
+     * @return the maximum distance between two linked nodes
+     */
+    double getLinkingRange();
+
+    /**
+     * Must be symmetric with respect to the two nodes.
+     * 
+     * @param env
+     *            the environment
+     * @param a
+     *            the first node
+     * @param b
+     *            the second node, within {@link #getLinkingRange()} from the
+     *            first one
+     * @return true if the two nodes are linked
+     */
+    boolean isLinked(Environment<T> env, Node<T> a, Node<T> b);
+
+    /**
+     * Rules whose links depend on state that
+     * {@link #computeNeighborhood(Node, Environment)} updates must return
+     * false, so that environments keep calling it.
+     * 
+     * @return true if links only depend on the two nodes, as described by
+     *         {@link #isLinked(Environment, Node, Node)}
+     */
+    default boolean isPairwise() {
+        return true;
+    }
+
+}
@@ -149,6 +149,13 @@ public final class CachedNeighborhood<T> implements Neighborhood<T> {
         return k.get(num % size());
     }
 
+    /**
+     * @return the sorted ids of the neighbors. Must not be modified.
+     */
+    TIntList getSortedIds() {
+        return kCache;
+    }
+
     @Override
     public List<? extends Node<T>> getNeighbors() {
         return Collections.unmodifiableList(k);
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.neighborhoods;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * A compact neighborhood which only stores the sorted ids of the neighbors, and
+ * resolves them through {@link Environment#getNodeByID(int)} on access. The id
+ * array is never modified in place: every update replaces it, so arrays
+ * returned by {@link #getNeighborIds()} are stable snapshots and cloning is
+ * cheap. Membership tests are logarithmic, single updates and bulk merges are
+ * linear.
+ *
+ * @param <T>
+ *            The type which describes the concentration of a molecule
+ */
+public final class IntArrayNeighborhood<T> implements Neighborhood<T> {
+
+    private static final long serialVersionUID = -5766263406406463316L;
+    private static final int[] EMPTY = new int[0];
+    private final Node<T> c;
+    private final Environment<T> env;
+    private int[] ids;
+
+    /**
+     * Builds a new neighborhood given a central node, its neighbors and the
+     * environment.
+     *
+     * @param center
+     *            the central node
+     * @param nodes
+     *            the neighbors of the central node
+     * @param environment
+     *            the environment, used to resolve the neighbor ids
+     */
+    public IntArrayNeighborhood(final Node<T> center, final Collection<? extends Node<T>> nodes, final Environment<T> environment) {
+        this(center, EMPTY, environment);
+        addNeighbors(nodes);
+    }
+
+    private IntArrayNeighborhood(final Node<T> center, final int[] neighbors, final Environment<T> environment) {
+        c = Objects.requireNonNull(center);
+        env = Objects.requireNonNull(environment);
+        ids = neighbors;
+    }
+
+    @Override
+    public void addNeighbor(final Node<T> neigh) {
+        final int pos = Arrays.binarySearch(ids, neigh.getId());
+        if (pos < 0) {
+            final int insertion = -pos - 1;
+            final int[] res = new int[ids.length + 1];
+            System.arraycopy(ids, 0, res, 0, insertion);
+            res[insertion] = neigh.getId();
+            System.arraycopy(ids, insertion, res, insertion + 1, ids.length - insertion);
+            ids = res;
+        }
+    }
+
+    /**
+     * Adds many neighbors at once. The new ids get sorted, then merged with the
+     * current ones in a single linear pass. Nodes which already are neighbors
+     * are ignored.
+     *
+     * @param nodes
+     *            the nodes to add
+     */
+    public void addNeighbors(final Collection<? extends Node<T>> nodes) {
+        if (nodes.isEmpty()) {
+            return;
+        }
+        final int[] incoming = new int[nodes.size()];
+        int i = 0;
+        for (final Node<T> n : nodes) {
+            incoming[i++] = n.getId();
+        }
+        Arrays.sort(incoming);
+        final int[] res = new int[ids.length + incoming.length];
+        int a = 0;
+        int b = 0;
+        int size = 0;
+        while (a < ids.length || b < incoming.length) {
+            final int next;
+            if (b == incoming.length || a < ids.length && ids[a] <= incoming[b]) {
+                next = ids[a++];
+            } else {
+                next = incoming[b++];
+            }
+            if (size == 0 || res[size - 1] != next) {
+                res[size++] = next;
+            }
+        }
+        ids = size == res.length ? res : Arrays.copyOf(res, size);
+    }
+
+    @Override
+    public IntArrayNeighborhood<T> clone() {
+        return new IntArrayNeighborhood<>(c, ids, env);
+    }
+
+    @Override
+    public boolean contains(final Node<T> n) {
+        return contains(n.getId());
+    }
+
+    @Override
+    public boolean contains(final int n) {
+        return Arrays.binarySearch(ids, n) >= 0;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj instanceof IntArrayNeighborhood<?>) {
+            final IntArrayNeighborhood<?> n = (IntArrayNeighborhood<?>) obj;
+            return c.equals(n.c) && Arrays.equals(ids, n.ids);
+        }
+        if (obj instanceof Neighborhood<?>) {
+            final Neighborhood<?> n = (Neighborhood<?>) obj;
+            return c.equals(n.getCenter()) && getNeighbors().equals(n.getNeighbors());
+        }
+        return false;
+    }
+
+    /**
+     * Performs the given action on the id of each neighbor, in ascending
+     * order, without resolving any node.
+     *
+     * @param action
+     *            the action
+     */
+    public void forEachNeighborId(final IntConsumer action) {
+        for (final int id : ids) {
+            action.accept(id);
+        }
+    }
+
+    @Override
+    public Set<Node<T>> getBetweenRange(final double min, final double max) {
+        final Set<Node<T>> res = new LinkedHashSet<>(ids.length + 1, 1f);
+        final Position centerposition = env.getPosition(c);
+        for (final Node<T> n : this) {
+            final double dist = centerposition.getDistanceTo(env.getPosition(n));
+            if (dist < max && dist > min) {
+                res.add(n);
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public Node<T> getCenter() {
+        return c;
+    }
+
+    @Override
+    public Node<T> getNeighborById(final int id) {
+        return contains(id) ? env.getNodeByID(id) : null;
+    }
+
+    @Override
+    public Node<T> getNeighborByNumber(final int num) {
+        return env.getNodeByID(ids[num % ids.length]);
+    }
+
+    /**
+     * @return the ids of the neighbors, in ascending order. The returned array
+     *         is a snapshot that is not affected by subsequent updates of this
+     *         neighborhood, and it must not be modified
+     */
+    public int[] getNeighborIds() {
+        return ids;
+    }
+
+    @Override
+    public List<Node<T>> getNeighbors() {
+        final int[] snapshot = ids;
+        return new AbstractList<Node<T>>() {
+            @Override
+            public Node<T> get(final int index) {
+                return env.getNodeByID(snapshot[index]);
+            }
+            @Override
+            public int size() {
+                return snapshot.length;
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        return c.hashCode() ^ getNeighbors().hashCode();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    @Override
+    public Iterator<Node<T>> iterator() {
+        final int[] snapshot = ids;
+        return new Iterator<Node<T>>() {
+            private int next;
+            @Override
+            public boolean hasNext() {
+                return next < snapshot.length;
+            }
+            @Override
+            public Node<T> next() {
+                if (hasNext()) {
+                    return env.getNodeByID(snapshot[next++]);
+                }
+                throw new NoSuchElementException();
+            }
+        };
+    }
+
+    @Override
+    public void removeNeighbor(final Node<T> neighbor) {
+        final int pos = Arrays.binarySearch(ids, neighbor.getId());
+        if (pos >= 0) {
+            final int[] res = new int[ids.length - 1];
+            System.arraycopy(ids, 0, res, 0, pos);
+            System.arraycopy(ids, pos + 1, res, pos, res.length - pos);
+            ids = res;
+        }
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public String toString() {
+        return c + " links " + Arrays.toString(ids);
+    }
+
+    @Override
+    public void forEach(final Consumer<? super Node<T>> action) {
+        for (final int id : ids) {
+            action.accept(env.getNodeByID(id));
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.neighborhoods;
+
+import java.io.Serializable;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * The difference between two versions of the same {@link Neighborhood},
+ * expressed as the ids of the neighbors that were added and of those that were
+ * removed. Instances are meant to be reused: each call to
+ * {@link #compute(Neighborhood, Neighborhood)} overwrites the previous content.
+ */
+public final class NeighborhoodDiff implements Serializable {
+
+    private static final long serialVersionUID = 7373150462530532434L;
+    @SuppressFBWarnings(value = "SE_BAD_FIELD", justification = "TIntList implements Externalizable that Implements Serializable")
+    private final TIntList added = new TIntArrayList();
+    @SuppressFBWarnings(value = "SE_BAD_FIELD", justification = "TIntList implements Externalizable that Implements Serializable")
+    private final TIntList removed = new TIntArrayList();
+    private final SortedIds first = new SortedIds();
+    private final SortedIds second = new SortedIds();
+
+    /**
+     * Computes the difference between two neighborhoods, discarding any
+     * previously computed content. If both neighborhoods keep their neighbor
+     * ids sorted ({@link CachedNeighborhood} and {@link IntArrayNeighborhood}),
+     * the ids are compared with a single linear merge, and no node is
+     * touched. Other implementations are compared through
+     * {@link Neighborhood#contains(Node)}. In both cases, the recorded ids are
+     * in ascending order.
+     *
+     * @param before
+     *            the old neighborhood
+     * @param after
+     *            the new neighborhood
+     * @param <T>
+     *            concentration type
+     * @return this object, for chaining
+     */
+    public <T> NeighborhoodDiff compute(final Neighborhood<T> before, final Neighborhood<T> after) {
+        clear();
+        if (first.wrap(before) && second.wrap(after)) {
+            merge();
+        } else {
+            for (final Node<T> n : before) {
+                if (!after.contains(n)) {
+                    removed.add(n.getId());
+                }
+            }
+            for (final Node<T> n : after) {
+                if (!before.contains(n)) {
+                    added.add(n.getId());
+                }
+            }
+            removed.sort();
+            added.sort();
+        }
+        first.release();
+        second.release();
+        return this;
+    }
+
+    private void merge() {
+        int i = 0;
+        int j = 0;
+        while (i < first.size && j < second.size) {
+            final int a = first.get(i);
+            final int b = second.get(j);
+            if (a == b) {
+                i++;
+                j++;
+            } else if (a < b) {
+                removed.add(a);
+                i++;
+            } else {
+                added.add(b);
+                j++;
+            }
+        }
+        for (; i < first.size; i++) {
+            removed.add(first.get(i));
+        }
+        for (; j < second.size; j++) {
+            added.add(second.get(j));
+        }
+    }
+
+    /**
+     * Records a neighbor that was added. Once all the changes are recorded,
+     * call {@link #sort()}.
+     *
+     * @param id
+     *            the id of the neighbor
+     */
+    public void recordAdded(final int id) {
+        added.add(id);
+    }
+
+    /**
+     * Records a neighbor that was removed. Once all the changes are recorded,
+     * call {@link #sort()}.
+     *
+     * @param id
+     *            the id of the neighbor
+     */
+    public void recordRemoved(final int id) {
+        removed.add(id);
+    }
+
+    /**
+     * Sorts the recorded ids in ascending order, as
+     * {@link #compute(Neighborhood, Neighborhood)} does.
+     */
+    public void sort() {
+        added.sort();
+        removed.sort();
+    }
+
+    /**
+     * Empties this diff.
+     */
+    public void clear() {
+        added.resetQuick();
+        removed.resetQuick();
+    }
+
+    /**
+     * @return true if neither additions nor removals are recorded
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * @return the number of neighbors that were added
+     */
+    public int addedCount() {
+        return added.size();
+    }
+
+    /**
+     * @param i
+     *            the index, between 0 and {@link #addedCount()} - 1
+     * @return the id of the i-th added neighbor
+     */
+    public int getAdded(final int i) {
+        return added.get(i);
+    }
+
+    /**
+     * @return the number of neighbors that were removed
+     */
+    public int removedCount() {
+        return removed.size();
+    }
+
+    /**
+     * @param i
+     *            the index, between 0 and {@link #removedCount()} - 1
+     * @return the id of the i-th removed neighbor
+     */
+    public int getRemoved(final int i) {
+        return removed.get(i);
+    }
+
+    @Override
+    public String toString() {
+        return "+" + added + " -" + removed;
+    }
+
+    /*
+     * Reusable read-only cursor over the sorted ids of a neighborhood. Holds
+     * no state between two computations.
+     */
+    private static final class SortedIds implements Serializable {
+        private static final long serialVersionUID = 1L;
+        @SuppressFBWarnings(value = "SE_BAD_FIELD", justification = "Always null outside compute()")
+        private TIntList list;
+        private int[] array;
+        private int size;
+
+        boolean wrap(final Neighborhood<?> n) {
+            if (n instanceof CachedNeighborhood) {
+                list = ((CachedNeighborhood<?>) n).getSortedIds();
+                size = list.size();
+                return true;
+            }
+            if (n instanceof IntArrayNeighborhood) {
+                array = ((IntArrayNeighborhood<?>) n).getNeighborIds();
+                size = array.length;
+                return true;
+            }
+            return false;
+        }
+
+        int get(final int i) {
+            return array == null ? list.get(i) : array[i];
+        }
+
+        void release() {
+            list = null;
+            array = null;
+            size = 0;
+        }
+    }
+
+}
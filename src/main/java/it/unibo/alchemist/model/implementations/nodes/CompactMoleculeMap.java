@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.nodes;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import it.unibo.alchemist.model.interfaces.Molecule;
+
+/**
+ * A compact, non thread-safe map from molecules to concentrations. Entries are
+ * kept in three parallel arrays (molecule ids, molecules and values) with open
+ * addressing and linear probing on {@link Molecule#getId()}: no entry object is
+ * stored. Two molecules are considered the same key if their ids are
+ * equal. Null values are not allowed. The entry set does not support removal.
+ *
+ * @param <T>
+ *            concentration type
+ */
+public final class CompactMoleculeMap<T> extends AbstractMap<Molecule, T> implements Serializable {
+
+    private static final long serialVersionUID = -2301558618467040735L;
+    private static final int MIN_CAPACITY = 4;
+    private long[] ids;
+    private Molecule[] keys;
+    private Object[] values;
+    private int size;
+
+    /**
+     * Builds an empty map.
+     */
+    public CompactMoleculeMap() {
+        this(MIN_CAPACITY);
+    }
+
+    private CompactMoleculeMap(final int capacity) {
+        ids = new long[capacity];
+        keys = new Molecule[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * @return a copy of this map, sharing no mutable state with it
+     */
+    CompactMoleculeMap<T> copy() {
+        final CompactMoleculeMap<T> res = new CompactMoleculeMap<>(keys.length);
+        System.arraycopy(ids, 0, res.ids, 0, ids.length);
+        System.arraycopy(keys, 0, res.keys, 0, keys.length);
+        System.arraycopy(values, 0, res.values, 0, values.length);
+        res.size = size;
+        return res;
+    }
+
+    @Override
+    public void clear() {
+        final int capacity = MIN_CAPACITY;
+        ids = new long[capacity];
+        keys = new Molecule[capacity];
+        values = new Object[capacity];
+        size = 0;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return key instanceof Molecule && keys[slotOf(((Molecule) key).getId())] != null;
+    }
+
+    @Override
+    public Set<Map.Entry<Molecule, T>> entrySet() {
+        return new AbstractSet<Map.Entry<Molecule, T>>() {
+            @Override
+            public Iterator<Map.Entry<Molecule, T>> iterator() {
+                return new EntryIterator();
+            }
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(final Object key) {
+        if (key instanceof Molecule) {
+            return (T) values[slotOf(((Molecule) key).getId())];
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T put(final Molecule key, final T value) {
+        Objects.requireNonNull(value);
+        final long id = key.getId();
+        int slot = slotOf(id);
+        if (keys[slot] != null) {
+            final T old = (T) values[slot];
+            values[slot] = value;
+            return old;
+        }
+        if ((size + 1) * 3 > keys.length * 2) {
+            rehash(keys.length * 2);
+            slot = slotOf(id);
+        }
+        ids[slot] = id;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T remove(final Object key) {
+        if (!(key instanceof Molecule)) {
+            return null;
+        }
+        int slot = slotOf(((Molecule) key).getId());
+        if (keys[slot] == null) {
+            return null;
+        }
+        final T old = (T) values[slot];
+        /*
+         * Backward shift deletion: move back the following entries of the
+         * cluster that would not be reachable anymore.
+         */
+        final int mask = keys.length - 1;
+        int next = (slot + 1) & mask;
+        while (keys[next] != null) {
+            final int home = home(ids[next]);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                ids[slot] = ids[next];
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[slot] = null;
+        values[slot] = null;
+        size--;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private int home(final long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) h & (keys.length - 1);
+    }
+
+    /*
+     * Either the slot holding the id, or the empty slot where it would go.
+     */
+    private int slotOf(final long id) {
+        final int mask = keys.length - 1;
+        int slot = home(id);
+        while (keys[slot] != null && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldIds = ids;
+        final Molecule[] oldKeys = keys;
+        final Object[] oldValues = values;
+        ids = new long[capacity];
+        keys = new Molecule[capacity];
+        values = new Object[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                final int slot = slotOf(oldIds[i]);
+                ids[slot] = oldIds[i];
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<Molecule, T>> {
+        private int next = advance(0);
+
+        private int advance(final int from) {
+            int i = from;
+            while (i < keys.length && keys[i] == null) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < keys.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<Molecule, T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Map.Entry<Molecule, T> res = new SimpleImmutableEntry<>(keys[next], (T) values[next]);
+            next = advance(next + 1);
+            return res;
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.nodes;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import it.unibo.alchemist.model.interfaces.Molecule;
+
+/**
+ * A lock-free, thread-safe map from molecules to concentrations. The content
+ * is an immutable {@link CompactMoleculeMap} snapshot: reads never block, and
+ * writes copy the snapshot and publish it with a compare-and-set, retrying on
+ * contention. Iterations work on the snapshot taken when they started, and
+ * never throw {@link java.util.ConcurrentModificationException}. Since each
+ * write copies the whole map, this is suited to nodes with few molecules.
+ *
+ * @param <T>
+ *            concentration type
+ */
+public final class CopyOnWriteMoleculeMap<T> extends AbstractMap<Molecule, T> implements Serializable {
+
+    private static final long serialVersionUID = 4427370735829917470L;
+    private final AtomicReference<CompactMoleculeMap<T>> snapshot = new AtomicReference<>(new CompactMoleculeMap<>());
+
+    @Override
+    public void clear() {
+        snapshot.set(new CompactMoleculeMap<>());
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return snapshot.get().containsKey(key);
+    }
+
+    @Override
+    public Set<Map.Entry<Molecule, T>> entrySet() {
+        return Collections.unmodifiableSet(snapshot.get().entrySet());
+    }
+
+    @Override
+    public T get(final Object key) {
+        return snapshot.get().get(key);
+    }
+
+    @Override
+    public T put(final Molecule key, final T value) {
+        while (true) {
+            final CompactMoleculeMap<T> current = snapshot.get();
+            final CompactMoleculeMap<T> next = current.copy();
+            final T old = next.put(key, value);
+            if (snapshot.compareAndSet(current, next)) {
+                return old;
+            }
+        }
+    }
+
+    @Override
+    public T remove(final Object key) {
+        while (true) {
+            final CompactMoleculeMap<T> current = snapshot.get();
+            if (!current.containsKey(key)) {
+                return null;
+            }
+            final CompactMoleculeMap<T> next = current.copy();
+            final T old = next.remove(key);
+            if (snapshot.compareAndSet(current, next)) {
+                return old;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return snapshot.get().size();
+    }
+
+}
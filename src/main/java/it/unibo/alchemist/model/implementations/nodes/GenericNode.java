@@ -49,16 +49,30 @@ public abstract class GenericNode<T> implements Node<T> {
     private static final AtomicInteger THREAD_UNSAFE = new AtomicInteger();
     private final int id;
     private final List<Reaction<T>> reactions = new ArrayList<>();
-    private final Map<Molecule, T> molecules = new MapMaker().concurrencyLevel(2).makeMap();
+    private final Map<Molecule, T> molecules;
+    private final Map<Molecule, T> contents;
 
     private static int idFromEnv(final Environment<?> env) {
+        Objects.requireNonNull(env);
+        AtomicInteger idgen;
         MUTEX.acquireUninterruptibly();
-        AtomicInteger idgen = IDGENERATOR.get(Objects.requireNonNull(env));
-        if (idgen == null) {
-            idgen = new AtomicInteger();
-            IDGENERATOR.put(env, idgen);
+        try {
+            idgen = IDGENERATOR.get(env);
+            if (idgen == null) {
+                /*
+                 * A deserialized environment may already contain nodes: new
+                 * ids must not clash with theirs.
+                 */
+                int next = 0;
+                for (final Node<?> node : env.getNodes()) {
+                    next = Math.max(next, node.getId() + 1);
+                }
+                idgen = new AtomicInteger(next);
+                IDGENERATOR.put(env, idgen);
+            }
+        } finally {
+            MUTEX.release();
         }
-        MUTEX.release();
         return idgen.getAndIncrement();
     }
 
@@ -76,7 +90,7 @@ public abstract class GenericNode<T> implements Node<T> {
      */
     @Deprecated
     protected GenericNode(final boolean threadLocal) {
-        this(threadLocal ? SINGLETON.genId() : THREAD_UNSAFE.getAndIncrement());
+        this(threadLocal ? SINGLETON.genId() : THREAD_UNSAFE.getAndIncrement(), new MapMaker().concurrencyLevel(2).<Molecule, T>makeMap());
     }
 
     /**
@@ -85,11 +99,30 @@ public abstract class GenericNode<T> implements Node<T> {
      *            environment, always starting from 0.
      */
     public GenericNode(final Environment<?> env) {
-        this(idFromEnv(env));
+        this(env, new MapMaker().concurrencyLevel(2).<Molecule, T>makeMap());
+    }
+
+    /**
+     * Builds a node with a custom molecule store. {@link CompactMoleculeMap}
+     * is the most compact choice for single-threaded simulations, while
+     * {@link CopyOnWriteMoleculeMap} is lock-free and can be shared among
+     * threads.
+     * 
+     * @param env
+     *            the environment, used to generate sequential ids for each
+     *            environment, always starting from 0.
+     * @param moleculeStore
+     *            an empty map, where molecules and concentrations will be
+     *            stored
+     */
+    protected GenericNode(final Environment<?> env, final Map<Molecule, T> moleculeStore) {
+        this(idFromEnv(env), moleculeStore);
     }
 
-    private GenericNode(final int id) {
+    private GenericNode(final int id, final Map<Molecule, T> moleculeStore) {
         this.id = id;
+        molecules = Objects.requireNonNull(moleculeStore);
+        contents = Collections.unmodifiableMap(molecules);
     }
 
     @Override
@@ -154,7 +187,7 @@ public abstract class GenericNode<T> implements Node<T> {
 
     @Override
     public Map<Molecule, T> getContents() {
-        return Collections.unmodifiableMap(molecules);
+        return contents;
     }
 
     @Override
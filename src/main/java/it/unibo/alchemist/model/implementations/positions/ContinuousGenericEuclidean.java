@@ -11,12 +11,11 @@
  */
 package it.unibo.alchemist.model.implementations.positions;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
-import org.apache.commons.math3.util.MathArrays;
+import org.apache.commons.math3.util.FastMath;
 import org.danilopianini.lang.HashUtils;
 
 import it.unibo.alchemist.exceptions.UncomparableDistancesException;
@@ -54,18 +53,18 @@ public class ContinuousGenericEuclidean implements Position {
 
     @Override
     public List<Position> buildBoundingBox(final double range) {
-        return IntStream.range(0, getDimensions()).parallel()
-            .mapToObj(i -> {
-                final double[] coords = new double[c.length];
-                /*
-                 * Canonical base: always sum the range, but
-                 */
-                for (int j = 0; j < coords.length; j++) {
-                    coords[j] = c[j] + (i == j ? -range : range);
-                }
-                return new ContinuousGenericEuclidean(false, coords);
-            })
-            .collect(Collectors.toList());
+        final List<Position> result = new ArrayList<>(c.length);
+        for (int i = 0; i < c.length; i++) {
+            final double[] coords = new double[c.length];
+            /*
+             * Canonical base: always sum the range, but
+             */
+            for (int j = 0; j < coords.length; j++) {
+                coords[j] = c[j] + (i == j ? -range : range);
+            }
+            result.add(new ContinuousGenericEuclidean(false, coords));
+        }
+        return result;
     }
 
     @Override
@@ -76,12 +75,12 @@ public class ContinuousGenericEuclidean implements Position {
         if (c.length > o.getDimensions()) {
             return 1;
         }
-        final double[] pos = o.getCartesianCoordinates();
         for (int i = 0; i < c.length; i++) {
-            if (c[i] < pos[i]) {
+            final double other = o.getCoordinate(i);
+            if (c[i] < other) {
                 return -1;
             }
-            if (c[i] > pos[i]) {
+            if (c[i] > other) {
                 return 1;
             }
         }
@@ -117,12 +116,35 @@ public class ContinuousGenericEuclidean implements Position {
 
     @Override
     public double getDistanceTo(final Position p) {
-        final double[] coord = p.getCartesianCoordinates();
-        if (c.length == coord.length) {
-            return MathArrays.distance(c, coord);
-        } else {
+        return FastMath.sqrt(getDistanceSquaredTo(p));
+    }
+
+    /**
+     * Cheaper than {@link #getDistanceTo(Position)}, useful when distances
+     * only need to be compared.
+     * 
+     * @param p
+     *            the other position
+     * @return the squared distance between this position and p
+     */
+    public double getDistanceSquaredTo(final Position p) {
+        if (c.length != p.getDimensions()) {
             throw new UncomparableDistancesException(this, p);
         }
+        double sum = 0;
+        if (p instanceof ContinuousGenericEuclidean) {
+            final double[] o = ((ContinuousGenericEuclidean) p).c;
+            for (int i = 0; i < c.length; i++) {
+                final double delta = c[i] - o[i];
+                sum += delta * delta;
+            }
+        } else {
+            for (int i = 0; i < c.length; i++) {
+                final double delta = c[i] - p.getCoordinate(i);
+                sum += delta * delta;
+            }
+        }
+        return sum;
     }
 
     @Override
@@ -139,8 +161,18 @@ public class ContinuousGenericEuclidean implements Position {
      * @return true if the two positions are the the same
      */
     public boolean samePosition(final Position o) {
-        final double[] p = o.getCartesianCoordinates();
-        return Arrays.equals(c, p);
+        if (o instanceof ContinuousGenericEuclidean) {
+            return Arrays.equals(c, ((ContinuousGenericEuclidean) o).c);
+        }
+        if (o.getDimensions() != c.length) {
+            return false;
+        }
+        for (int i = 0; i < c.length; i++) {
+            if (Double.doubleToLongBits(c[i]) != Double.doubleToLongBits(o.getCoordinate(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -154,9 +186,9 @@ public class ContinuousGenericEuclidean implements Position {
     @Override
     public Position sum(final Position other) {
         assert getDimensions() == other.getDimensions();
-        double[] res = other.getCartesianCoordinates();
+        final double[] res = new double[c.length];
         for (int i = 0; i < res.length; i++) {
-            res[i] += c[i];
+            res[i] = c[i] + other.getCoordinate(i);
         }
         return new ContinuousGenericEuclidean(false, res);
     }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.positions;
+
+import static org.apache.commons.math3.util.MathUtils.checkFinite;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.util.FastMath;
+import org.danilopianini.lang.HashUtils;
+
+import it.unibo.alchemist.exceptions.UncomparableDistancesException;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * A bidimensional euclidean position, stored in two scalar fields. Operations
+ * between two instances of this class never allocate arrays. It is equal to
+ * (and has the same hash code of) any other {@link Position} with the same
+ * coordinates, e.g. a {@link Continuous2DEuclidean}.
+ */
+public final class Euclidean2DPosition implements Position {
+
+    private static final long serialVersionUID = -1640482478962522052L;
+    private final double x, y;
+    private int hash;
+
+    /**
+     * @param xp
+     *            The X coordinate
+     * @param yp
+     *            The Y coordinate
+     */
+    public Euclidean2DPosition(final double xp, final double yp) {
+        checkFinite(xp);
+        checkFinite(yp);
+        x = xp;
+        y = yp;
+    }
+
+    /**
+     * @return the X coordinate
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return the Y coordinate
+     */
+    public double getY() {
+        return y;
+    }
+
+    @Override
+    public List<Position> buildBoundingBox(final double range) {
+        return Arrays.asList(new Euclidean2DPosition(x - range, y + range), new Euclidean2DPosition(x + range, y - range));
+    }
+
+    @Override
+    public int compareTo(final Position o) {
+        if (o.getDimensions() != 2) {
+            return o.getDimensions() > 2 ? -1 : 1;
+        }
+        if (o instanceof Euclidean2DPosition) {
+            final Euclidean2DPosition p = (Euclidean2DPosition) o;
+            return compare(p.x, p.y);
+        }
+        return compare(o.getCoordinate(0), o.getCoordinate(1));
+    }
+
+    private int compare(final double ox, final double oy) {
+        if (x != ox) {
+            return x < ox ? -1 : 1;
+        }
+        if (y != oy) {
+            return y < oy ? -1 : 1;
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o instanceof Euclidean2DPosition) {
+            final Euclidean2DPosition p = (Euclidean2DPosition) o;
+            return same(x, p.x) && same(y, p.y);
+        }
+        if (o instanceof Position) {
+            final Position p = (Position) o;
+            return p.getDimensions() == 2 && same(x, p.getCoordinate(0)) && same(y, p.getCoordinate(1));
+        }
+        return false;
+    }
+
+    /*
+     * Same semantics of Arrays.equals(double[], double[])
+     */
+    private static boolean same(final double a, final double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    @Override
+    public double[] getCartesianCoordinates() {
+        return new double[] {x, y};
+    }
+
+    @Override
+    public double getCoordinate(final int dim) {
+        if (dim == 0) {
+            return x;
+        }
+        if (dim == 1) {
+            return y;
+        }
+        throw new IllegalArgumentException(dim + " is not an allowed dimension, only values between 0 and 1 are allowed.");
+    }
+
+    @Override
+    public int getDimensions() {
+        return 2;
+    }
+
+    @Override
+    public double getDistanceTo(final Position p) {
+        return FastMath.sqrt(getDistanceSquaredTo(p));
+    }
+
+    /**
+     * Cheaper than {@link #getDistanceTo(Position)}, useful when distances
+     * only need to be compared.
+     * 
+     * @param p
+     *            the other position
+     * @return the squared distance between this position and p
+     */
+    public double getDistanceSquaredTo(final Position p) {
+        final double dx;
+        final double dy;
+        if (p instanceof Euclidean2DPosition) {
+            final Euclidean2DPosition o = (Euclidean2DPosition) p;
+            dx = x - o.x;
+            dy = y - o.y;
+        } else if (p.getDimensions() == 2) {
+            dx = x - p.getCoordinate(0);
+            dy = y - p.getCoordinate(1);
+        } else {
+            throw new UncomparableDistancesException(this, p);
+        }
+        return dx * dx + dy * dy;
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = HashUtils.hash32(new double[] {x, y});
+        }
+        return hash;
+    }
+
+    @Override
+    public Euclidean2DPosition sum(final Position other) {
+        if (other instanceof Euclidean2DPosition) {
+            final Euclidean2DPosition o = (Euclidean2DPosition) other;
+            return new Euclidean2DPosition(x + o.x, y + o.y);
+        }
+        assert other.getDimensions() == 2;
+        return new Euclidean2DPosition(x + other.getCoordinate(0), y + other.getCoordinate(1));
+    }
+
+    @Override
+    public String toString() {
+        return "[" + x + ", " + y + "]";
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.positions;
+
+import static org.apache.commons.math3.util.MathUtils.checkFinite;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.util.FastMath;
+import org.danilopianini.lang.HashUtils;
+
+import it.unibo.alchemist.exceptions.UncomparableDistancesException;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * A tridimensional euclidean position, stored in three scalar fields. Operations
+ * between two instances of this class never allocate arrays. It is equal to
+ * (and has the same hash code of) any other {@link Position} with the same
+ * coordinates.
+ */
+public final class Euclidean3DPosition implements Position {
+
+    private static final long serialVersionUID = 6271436390727617387L;
+    private final double x, y, z;
+    private int hash;
+
+    /**
+     * @param xp
+     *            The X coordinate
+     * @param yp
+     *            The Y coordinate
+     * @param zp
+     *            The Z coordinate
+     */
+    public Euclidean3DPosition(final double xp, final double yp, final double zp) {
+        checkFinite(xp);
+        checkFinite(yp);
+        checkFinite(zp);
+        x = xp;
+        y = yp;
+        z = zp;
+    }
+
+    /**
+     * @return the X coordinate
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return the Y coordinate
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return the Z coordinate
+     */
+    public double getZ() {
+        return z;
+    }
+
+    @Override
+    public List<Position> buildBoundingBox(final double range) {
+        return Arrays.asList(
+                new Euclidean3DPosition(x - range, y + range, z + range),
+                new Euclidean3DPosition(x + range, y - range, z + range),
+                new Euclidean3DPosition(x + range, y + range, z - range));
+    }
+
+    @Override
+    public int compareTo(final Position o) {
+        if (o.getDimensions() != 3) {
+            return o.getDimensions() > 3 ? -1 : 1;
+        }
+        if (o instanceof Euclidean3DPosition) {
+            final Euclidean3DPosition p = (Euclidean3DPosition) o;
+            return compare(p.x, p.y, p.z);
+        }
+        return compare(o.getCoordinate(0), o.getCoordinate(1), o.getCoordinate(2));
+    }
+
+    private int compare(final double ox, final double oy, final double oz) {
+        if (x != ox) {
+            return x < ox ? -1 : 1;
+        }
+        if (y != oy) {
+            return y < oy ? -1 : 1;
+        }
+        if (z != oz) {
+            return z < oz ? -1 : 1;
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o instanceof Euclidean3DPosition) {
+            final Euclidean3DPosition p = (Euclidean3DPosition) o;
+            return same(x, p.x) && same(y, p.y) && same(z, p.z);
+        }
+        if (o instanceof Position) {
+            final Position p = (Position) o;
+            return p.getDimensions() == 3
+                    && same(x, p.getCoordinate(0)) && same(y, p.getCoordinate(1)) && same(z, p.getCoordinate(2));
+        }
+        return false;
+    }
+
+    /*
+     * Same semantics of Arrays.equals(double[], double[])
+     */
+    private static boolean same(final double a, final double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    @Override
+    public double[] getCartesianCoordinates() {
+        return new double[] {x, y, z};
+    }
+
+    @Override
+    public double getCoordinate(final int dim) {
+        if (dim == 0) {
+            return x;
+        }
+        if (dim == 1) {
+            return y;
+        }
+        if (dim == 2) {
+            return z;
+        }
+        throw new IllegalArgumentException(dim + " is not an allowed dimension, only values between 0 and 2 are allowed.");
+    }
+
+    @Override
+    public int getDimensions() {
+        return 3;
+    }
+
+    @Override
+    public double getDistanceTo(final Position p) {
+        return FastMath.sqrt(getDistanceSquaredTo(p));
+    }
+
+    /**
+     * Cheaper than {@link #getDistanceTo(Position)}, useful when distances
+     * only need to be compared.
+     * 
+     * @param p
+     *            the other position
+     * @return the squared distance between this position and p
+     */
+    public double getDistanceSquaredTo(final Position p) {
+        final double dx;
+        final double dy;
+        final double dz;
+        if (p instanceof Euclidean3DPosition) {
+            final Euclidean3DPosition o = (Euclidean3DPosition) p;
+            dx = x - o.x;
+            dy = y - o.y;
+            dz = z - o.z;
+        } else if (p.getDimensions() == 3) {
+            dx = x - p.getCoordinate(0);
+            dy = y - p.getCoordinate(1);
+            dz = z - p.getCoordinate(2);
+        } else {
+            throw new UncomparableDistancesException(this, p);
+        }
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = HashUtils.hash32(new double[] {x, y, z});
+        }
+        return hash;
+    }
+
+    @Override
+    public Euclidean3DPosition sum(final Position other) {
+        if (other instanceof Euclidean3DPosition) {
+            final Euclidean3DPosition o = (Euclidean3DPosition) other;
+            return new Euclidean3DPosition(x + o.x, y + o.y, z + o.z);
+        }
+        assert other.getDimensions() == 3;
+        return new Euclidean3DPosition(x + other.getCoordinate(0), y + other.getCoordinate(1), z + other.getCoordinate(2));
+    }
+
+    @Override
+    public String toString() {
+        return "[" + x + ", " + y + ", " + z + "]";
+    }
+
+}
@@ -21,10 +21,11 @@ import it.unibo.alchemist.model.interfaces.Reaction;
 import it.unibo.alchemist.model.interfaces.Time;
 import it.unibo.alchemist.model.interfaces.TimeDistribution;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -50,15 +51,14 @@ public abstract class AReaction<T> implements Reaction<T> {
      * Separators for toString.
      */
     protected static final String NEXT = "next scheduled @", SEP0 = " :: ", SEP1 = " -", SEP2 = "-> ";
-    private static final AtomicInteger ODD = new AtomicInteger(1);
-    private static final AtomicBoolean POSITIVE = new AtomicBoolean(true);
-    private static final AtomicInteger POW = new AtomicInteger(1);
+    private static final ThreadLocal<int[]> RESERVED = new ThreadLocal<>();
     private static final long serialVersionUID = 6454665278161217867L;
 
     private List<? extends Action<T>> actions = new ArrayList<Action<T>>(0);
     private List<? extends Condition<T>> conditions = new ArrayList<Condition<T>>(0);
     private List<Molecule> influencing = new ArrayList<Molecule>(), influenced = new ArrayList<Molecule>();
 
+    private final int id;
     private final int hash;
     private Context incontext = Context.LOCAL, outcontext = Context.LOCAL;
     private int stringLength = Byte.MAX_VALUE;
@@ -96,6 +96,68 @@ public abstract class AReaction<T> implements Reaction<T> {
         res.setConditions(c);
     }
 
+    /**
+     * Reserves a block of consecutive reaction ids. Along with
+     * {@link #useReservedIds(int, int)}, it allows reactions to be built by
+     * multiple threads and still get the same hash codes they would get if
+     * built sequentially, in the order of reservation.
+     * 
+     * @param count
+     *            the number of ids to reserve
+     * @return the first reserved id
+     */
+    public static int reserveIds(final int count) {
+        return ID_GEN.getAndAdd(count);
+    }
+
+    /**
+     * Makes the reactions subsequently built by the calling thread take their
+     * ids from a block obtained with {@link #reserveIds(int)}. Once the block
+     * is exhausted, ids are drawn from the shared sequence again: they are
+     * still unique, but depend on thread scheduling. Pass a count of zero to
+     * release the block.
+     * 
+     * @param first
+     *            the first id of the block
+     * @param count
+     *            the size of the block
+     */
+    public static void useReservedIds(final int first, final int count) {
+        if (count > 0) {
+            RESERVED.set(new int[]{first, first + count});
+        } else {
+            RESERVED.remove();
+        }
+    }
+
+    private static int nextId() {
+        final int[] block = RESERVED.get();
+        if (block != null && block[0] < block[1]) {
+            return block[0]++;
+        }
+        return ID_GEN.getAndIncrement();
+    }
+
+    /*
+     * Maps the n-th id on a sequence which spreads the hash codes over the
+     * whole int range: 0, MAX, MIN, MAX/2, MIN/2, MAX/4, MIN/4, 3MAX/4...
+     * Being a pure function of the id, it needs no shared state besides the
+     * id generator.
+     */
+    private static int hashOf(final int id) {
+        if (id == 0) {
+            return CENTER;
+        }
+        final int pair = (id - 1) / 2;
+        final int val = (id - 1) % 2 == 0 ? MAX : MIN;
+        if (pair == 0) {
+            return val;
+        }
+        final int level = Integer.highestOneBit(pair);
+        final int odd = 2 * (pair - level) + 1;
+        return val / (level * 2) * odd;
+    }
+
     /**
      * Builds a new reaction, starting at time t.
      * 
@@ -105,29 +167,21 @@ public abstract class AReaction<T> implements Reaction<T> {
      *            the time distribution this reaction should follow
      */
     public AReaction(final Node<T> n, final TimeDistribution<T> pd) {
-        final int id = ID_GEN.getAndIncrement();
-        if (id == 0) {
-            hash = CENTER;
-        } else {
-            final boolean positive = POSITIVE.get();
-            final int val = positive ? MAX : MIN;
-            final int pow = POW.get();
-            final int odd = ODD.get();
-            hash = val / pow * odd;
-            if (!positive) {
-                if (odd + 2 > pow) {
-                    POW.set(pow * 2);
-                    ODD.set(1);
-                } else {
-                    ODD.set(odd + 2);
-                }
-            }
-            POSITIVE.set(!positive);
-        }
+        id = nextId();
+        hash = hashOf(id);
         dist = pd;
         node = n;
     }
 
+    /*
+     * As for node ids, reactions built after a restore must not share their
+     * hash code with the restored ones.
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ID_GEN.accumulateAndGet(id + 1, Math::max);
+    }
+
     @Override
     public int compareTo(final Reaction<T> o) {
         return getTau().compareTo(o.getTau());
@@ -304,7 +358,7 @@ public abstract class AReaction<T> implements Reaction<T> {
 
     @Override
     public List<? extends Molecule> getInfluencingMolecules() {
-        return influenced == null ? null : Collections.unmodifiableList(influencing);
+        return influencing == null ? null : Collections.unmodifiableList(influencing);
     }
 
     /**
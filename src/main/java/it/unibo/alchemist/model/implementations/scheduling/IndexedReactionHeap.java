@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.scheduling;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import it.unibo.alchemist.model.interfaces.Reaction;
+
+/**
+ * Indexed binary min-heap of reactions, ordered by their putative time of
+ * occurrence. Each reaction remembers its own position in the heap, so that
+ * {@link #updateReaction(Reaction)} moves it in O(log n) without removing and
+ * re-inserting it. Taus are cached as primitive doubles in a parallel array,
+ * and {@link it.unibo.alchemist.model.interfaces.Time} objects are never
+ * compared.
+ * 
+ * @param <T>
+ *            concentration type
+ */
+public final class IndexedReactionHeap<T> implements Serializable {
+
+    private static final long serialVersionUID = -8379451370128766447L;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int NOT_PRESENT = -1;
+    @SuppressFBWarnings(value = "SE_BAD_FIELD", justification = "Trove maps are Externalizable")
+    private final TObjectIntMap<Reaction<T>> indexes = new TObjectIntHashMap<>(DEFAULT_CAPACITY, 0.5f, NOT_PRESENT);
+    private Reaction<T>[] reactions;
+    private double[] taus;
+    private int size;
+
+    /**
+     * Builds an empty heap.
+     */
+    public IndexedReactionHeap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize
+     *            the number of reactions this heap is expected to hold
+     */
+    @SuppressWarnings("unchecked")
+    public IndexedReactionHeap(final int expectedSize) {
+        final int capacity = Math.max(1, expectedSize);
+        reactions = new Reaction[capacity];
+        taus = new double[capacity];
+    }
+
+    /**
+     * Inserts a reaction, reading its current tau.
+     * 
+     * @param r
+     *            the reaction
+     * @throws IllegalArgumentException
+     *             if the reaction is already in the heap
+     */
+    public void addReaction(final Reaction<T> r) {
+        if (indexes.containsKey(r)) {
+            throw new IllegalArgumentException(r + " is already scheduled");
+        }
+        if (size == reactions.length) {
+            reactions = Arrays.copyOf(reactions, size * 2);
+            taus = Arrays.copyOf(taus, size * 2);
+        }
+        place(r, r.getTau().toDouble(), size);
+        siftUp(size++);
+    }
+
+    /**
+     * @param r
+     *            the reaction
+     * @return true if the reaction is in the heap
+     */
+    public boolean contains(final Reaction<T> r) {
+        return indexes.containsKey(r);
+    }
+
+    /**
+     * @return the reaction with the lowest tau, or null if the heap is empty
+     */
+    public Reaction<T> getNext() {
+        return size == 0 ? null : reactions[0];
+    }
+
+    /**
+     * @return the tau of the next reaction, as cached at its last insertion or
+     *         update, or {@link Double#POSITIVE_INFINITY} if the heap is empty
+     */
+    public double getNextTau() {
+        return size == 0 ? Double.POSITIVE_INFINITY : taus[0];
+    }
+
+    /**
+     * @return true if no reaction is scheduled
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param r
+     *            the reaction to remove
+     * @return true if the reaction was in the heap
+     */
+    public boolean removeReaction(final Reaction<T> r) {
+        final int index = indexes.remove(r);
+        if (index == NOT_PRESENT) {
+            return false;
+        }
+        size--;
+        if (index != size) {
+            place(reactions[size], taus[size], index);
+            reactions[size] = null;
+            if (!siftUp(index)) {
+                siftDown(index);
+            }
+        } else {
+            reactions[size] = null;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of scheduled reactions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reads the current tau of the reaction and restores the heap order.
+     * 
+     * @param r
+     *            the reaction whose tau has changed
+     * @throws IllegalArgumentException
+     *             if the reaction is not in the heap
+     */
+    public void updateReaction(final Reaction<T> r) {
+        final int index = indexes.get(r);
+        if (index == NOT_PRESENT) {
+            throw new IllegalArgumentException(r + " is not scheduled");
+        }
+        final double old = taus[index];
+        final double tau = r.getTau().toDouble();
+        taus[index] = tau;
+        if (tau < old) {
+            siftUp(index);
+        } else if (tau > old) {
+            siftDown(index);
+        }
+    }
+
+    private void place(final Reaction<T> r, final double tau, final int index) {
+        reactions[index] = r;
+        taus[index] = tau;
+        indexes.put(r, index);
+    }
+
+    /*
+     * Returns true if the element moved.
+     */
+    private boolean siftUp(final int start) {
+        final Reaction<T> r = reactions[start];
+        final double tau = taus[start];
+        int index = start;
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (taus[parent] <= tau) {
+                break;
+            }
+            place(reactions[parent], taus[parent], index);
+            index = parent;
+        }
+        if (index != start) {
+            place(r, tau, index);
+            return true;
+        }
+        return false;
+    }
+
+    private void siftDown(final int start) {
+        final Reaction<T> r = reactions[start];
+        final double tau = taus[start];
+        int index = start;
+        final int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            final int right = child + 1;
+            if (right < size && taus[right] < taus[child]) {
+                child = right;
+            }
+            if (tau <= taus[child]) {
+                break;
+            }
+            place(reactions[child], taus[child], index);
+            index = child;
+        }
+        if (index != start) {
+            place(r, tau, index);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[size=" + size + ", next=" + getNext() + "]";
+    }
+
+}
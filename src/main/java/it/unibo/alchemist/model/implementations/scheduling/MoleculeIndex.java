@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.scheduling;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import it.unibo.alchemist.model.implementations.molecules.SimpleMolecule;
+import it.unibo.alchemist.model.interfaces.Molecule;
+import it.unibo.alchemist.model.interfaces.Reaction;
+
+/**
+ * Indexes reactions by (node id, molecule id), for one of their molecule lists
+ * (either the influencing or the influenced ones). Reactions whose list is
+ * null, meaning "every molecule", are kept apart and match any lookup. Only
+ * {@link SimpleMolecule}s, which depend exactly on the molecules with their
+ * same id, are indexed by id: a list with any other molecule is treated as
+ * null, so that lookups return a superset of the actual dependencies.
+ * 
+ * @param <T>
+ *            concentration type
+ */
+final class MoleculeIndex<T> implements Serializable {
+
+    private static final long serialVersionUID = 3925405069712009318L;
+    @SuppressFBWarnings(value = "SE_BAD_FIELD", justification = "Trove maps are Externalizable")
+    private final TIntObjectMap<NodeEntry<T>> nodes = new TIntObjectHashMap<>();
+
+    /**
+     * @param r
+     *            the reaction
+     * @param molecules
+     *            its molecules, null meaning every molecule
+     */
+    void add(final Reaction<T> r, final List<? extends Molecule> molecules) {
+        final int id = r.getNode().getId();
+        NodeEntry<T> entry = nodes.get(id);
+        if (entry == null) {
+            entry = new NodeEntry<>();
+            nodes.put(id, entry);
+        }
+        entry.all.add(r);
+        if (!isIndexable(molecules)) {
+            entry.any.add(r);
+        } else {
+            for (final Molecule m : molecules) {
+                Set<Reaction<T>> bucket = entry.byMolecule.get(m.getId());
+                if (bucket == null) {
+                    bucket = new LinkedHashSet<>();
+                    entry.byMolecule.put(m.getId(), bucket);
+                }
+                bucket.add(r);
+            }
+        }
+    }
+
+    /**
+     * @param r
+     *            the reaction
+     * @param molecules
+     *            the same molecules it was added with
+     */
+    void remove(final Reaction<T> r, final List<? extends Molecule> molecules) {
+        final int id = r.getNode().getId();
+        final NodeEntry<T> entry = nodes.get(id);
+        if (entry != null) {
+            entry.all.remove(r);
+            if (!isIndexable(molecules)) {
+                entry.any.remove(r);
+            } else {
+                for (final Molecule m : molecules) {
+                    final Set<Reaction<T>> bucket = entry.byMolecule.get(m.getId());
+                    if (bucket != null && bucket.remove(r) && bucket.isEmpty()) {
+                        entry.byMolecule.remove(m.getId());
+                    }
+                }
+            }
+            if (entry.all.isEmpty()) {
+                nodes.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Feeds the action with every reaction of the node whose molecules
+     * intersect the given ones. Reactions may be fed more than once.
+     * 
+     * @param nodeId
+     *            the node id
+     * @param molecules
+     *            the molecules to look for, null meaning every molecule
+     * @param action
+     *            the action
+     */
+    void forEachMatching(final int nodeId, final List<? extends Molecule> molecules, final Consumer<Reaction<T>> action) {
+        final NodeEntry<T> entry = nodes.get(nodeId);
+        if (entry != null) {
+            if (!isIndexable(molecules)) {
+                entry.all.forEach(action);
+            } else {
+                entry.any.forEach(action);
+                for (final Molecule m : molecules) {
+                    final Set<Reaction<T>> bucket = entry.byMolecule.get(m.getId());
+                    if (bucket != null) {
+                        bucket.forEach(action);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param nodeId
+     *            the node id
+     * @return all the indexed reactions of the node
+     */
+    Set<Reaction<T>> getReactions(final int nodeId) {
+        final NodeEntry<T> entry = nodes.get(nodeId);
+        return entry == null ? Collections.emptySet() : Collections.unmodifiableSet(entry.all);
+    }
+
+    /**
+     * @return the ids of the nodes with at least one indexed reaction
+     */
+    int[] getNodeIds() {
+        return nodes.keys();
+    }
+
+    private static boolean isIndexable(final List<? extends Molecule> molecules) {
+        if (molecules == null) {
+            return false;
+        }
+        for (final Molecule m : molecules) {
+            if (m.getClass() != SimpleMolecule.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class NodeEntry<T> implements Serializable {
+        private static final long serialVersionUID = 1L;
+        @SuppressFBWarnings(value = "SE_BAD_FIELD", justification = "Trove maps are Externalizable")
+        private final TLongObjectMap<Set<Reaction<T>>> byMolecule = new TLongObjectHashMap<>();
+        private final Set<Reaction<T>> any = new LinkedHashSet<>();
+        private final Set<Reaction<T>> all = new LinkedHashSet<>();
+    }
+
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.scheduling;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import it.unibo.alchemist.model.implementations.neighborhoods.NeighborhoodDiff;
+import it.unibo.alchemist.model.interfaces.Context;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Molecule;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Reaction;
+
+/**
+ * Dependency graph for the next reaction method (Gibson and Bruck). A reaction
+ * B depends on a reaction A if:
+ * <ul>
+ * <li>one of the molecules influencing B depends on one of the molecules
+ * influenced by A, according to {@link Molecule#dependsOn(Molecule)}, where
+ * a null molecule list stands for "every molecule"; and</li>
+ * <li>the two reactions are close enough, according to the output context of
+ * A and to the input context of B: {@link Context#LOCAL} reactions only reach
+ * the reactions on the same node, {@link Context#NEIGHBORHOOD} ones reach also
+ * those on the neighbors, and {@link Context#GLOBAL} ones reach every
+ * reaction.</li>
+ * </ul>
+ * Reactions are indexed by (node id, molecule id), so that adding a reaction
+ * only visits the reactions that share molecules with it, on its own node and
+ * on its neighbors, plus the global ones. Links are assumed to be symmetric.
+ * When the topology changes, {@link #addLink(Node, Node)},
+ * {@link #removeLink(Node, Node)} and
+ * {@link #updateLinks(Node, NeighborhoodDiff)} patch the edges among the
+ * reactions of the involved nodes only. Reactions must not change their
+ * conditions or actions while in the graph.
+ * 
+ * @param <T>
+ *            concentration type
+ */
+public final class ReactionDependencyGraph<T> implements Serializable {
+
+    private static final long serialVersionUID = 1379204393216394112L;
+    private final Environment<T> env;
+    private final Map<Reaction<T>, Set<Reaction<T>>> outbound = new LinkedHashMap<>();
+    private final Map<Reaction<T>, Set<Reaction<T>>> inbound = new LinkedHashMap<>();
+    private final Set<Reaction<T>> global = new LinkedHashSet<>();
+    private final MoleculeIndex<T> byInfluencing = new MoleculeIndex<>();
+    private final MoleculeIndex<T> byInfluenced = new MoleculeIndex<>();
+
+    /**
+     * Builds an empty dependency graph.
+     * 
+     * @param environment
+     *            the environment, used to navigate the links among nodes
+     */
+    public ReactionDependencyGraph(final Environment<T> environment) {
+        env = Objects.requireNonNull(environment);
+    }
+
+    /**
+     * Builds the dependency graph of all the reactions of all the nodes
+     * currently in the environment.
+     * 
+     * @param environment
+     *            the environment
+     * @param <T>
+     *            concentration type
+     * @return a new dependency graph
+     */
+    public static <T> ReactionDependencyGraph<T> build(final Environment<T> environment) {
+        final ReactionDependencyGraph<T> graph = new ReactionDependencyGraph<>(environment);
+        for (final Node<T> node : environment) {
+            graph.addNode(node);
+        }
+        return graph;
+    }
+
+    /**
+     * Adds all the reactions of a node.
+     * 
+     * @param node
+     *            the node
+     */
+    public void addNode(final Node<T> node) {
+        for (final Reaction<T> r : node) {
+            addReaction(r);
+        }
+    }
+
+    /**
+     * Adds a reaction, linking it with all the reactions already in the graph
+     * that either depend on it or it depends on.
+     * 
+     * @param r
+     *            the reaction
+     * @throws IllegalArgumentException
+     *             if the reaction is already in the graph
+     */
+    public void addReaction(final Reaction<T> r) {
+        if (outbound.containsKey(r)) {
+            throw new IllegalArgumentException(r + " is already in the dependency graph");
+        }
+        outbound.put(r, new LinkedHashSet<>());
+        inbound.put(r, new LinkedHashSet<>());
+        byInfluencing.add(r, r.getInfluencingMolecules());
+        byInfluenced.add(r, r.getInfluencedMolecules());
+        final Node<T> node = r.getNode();
+        if (isGlobal(r)) {
+            global.add(r);
+            for (final int nodeId : byInfluencing.getNodeIds()) {
+                connect(r, nodeId, false);
+            }
+        } else {
+            connect(r, node.getId(), false);
+        }
+        /*
+         * A global input context does not imply a global output context (and
+         * vice versa), so neighbors must be visited anyway.
+         */
+        final Neighborhood<T> neighborhood = env.getNeighborhood(node);
+        if (neighborhood != null) {
+            for (final Node<T> neighbor : neighborhood) {
+                connect(r, neighbor.getId(), true);
+            }
+        }
+        if (!isGlobal(r)) {
+            for (final Reaction<T> candidate : global) {
+                if (influences(r, candidate, false)) {
+                    link(r, candidate);
+                }
+                if (influences(candidate, r, false)) {
+                    link(candidate, r);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the dependencies which arise from two nodes becoming neighbors.
+     * 
+     * @param node
+     *            a node
+     * @param neighbor
+     *            its new neighbor
+     */
+    public void addLink(final Node<T> node, final Node<T> neighbor) {
+        addLink(node.getId(), neighbor.getId());
+    }
+
+    /**
+     * @param r
+     *            the reaction
+     * @return true if the reaction is in the graph
+     */
+    public boolean contains(final Reaction<T> r) {
+        return outbound.containsKey(r);
+    }
+
+    /**
+     * @param r
+     *            the reaction
+     * @return the reactions that r depends on
+     */
+    public Set<Reaction<T>> getInboundDependencies(final Reaction<T> r) {
+        return Collections.unmodifiableSet(inbound.get(r));
+    }
+
+    /**
+     * @param r
+     *            the reaction
+     * @return the reactions that must be updated once r has been executed
+     */
+    public Set<Reaction<T>> getOutboundDependencies(final Reaction<T> r) {
+        return Collections.unmodifiableSet(outbound.get(r));
+    }
+
+    /**
+     * Removes the dependencies which only existed because two nodes were
+     * neighbors.
+     * 
+     * @param node
+     *            a node
+     * @param formerNeighbor
+     *            the node which is no longer its neighbor
+     */
+    public void removeLink(final Node<T> node, final Node<T> formerNeighbor) {
+        removeLink(node.getId(), formerNeighbor.getId());
+    }
+
+    /**
+     * Removes all the reactions of a node.
+     * 
+     * @param node
+     *            the node
+     */
+    public void removeNode(final Node<T> node) {
+        for (final Reaction<T> r : new ArrayList<>(byInfluencing.getReactions(node.getId()))) {
+            removeReaction(r);
+        }
+    }
+
+    /**
+     * Removes a reaction and all its dependencies.
+     * 
+     * @param r
+     *            the reaction
+     * @return true if the reaction was in the graph
+     */
+    public boolean removeReaction(final Reaction<T> r) {
+        final Set<Reaction<T>> out = outbound.remove(r);
+        if (out == null) {
+            return false;
+        }
+        for (final Reaction<T> target : out) {
+            inbound.get(target).remove(r);
+        }
+        for (final Reaction<T> source : inbound.remove(r)) {
+            outbound.get(source).remove(r);
+        }
+        global.remove(r);
+        byInfluencing.remove(r, r.getInfluencingMolecules());
+        byInfluenced.remove(r, r.getInfluencedMolecules());
+        return true;
+    }
+
+    /**
+     * @return the number of reactions in the graph
+     */
+    public int size() {
+        return outbound.size();
+    }
+
+    /**
+     * Applies a neighborhood change, as computed by
+     * {@link NeighborhoodDiff#compute(Neighborhood, Neighborhood)}.
+     * 
+     * @param node
+     *            the node whose neighborhood changed
+     * @param diff
+     *            the neighbors it gained and lost
+     */
+    public void updateLinks(final Node<T> node, final NeighborhoodDiff diff) {
+        final int id = node.getId();
+        for (int i = 0; i < diff.removedCount(); i++) {
+            removeLink(id, diff.getRemoved(i));
+        }
+        for (int i = 0; i < diff.addedCount(); i++) {
+            addLink(id, diff.getAdded(i));
+        }
+    }
+
+    private void addLink(final int nodeId, final int neighborId) {
+        for (final Reaction<T> r : byInfluencing.getReactions(nodeId)) {
+            connect(r, neighborId, true);
+        }
+    }
+
+    private void removeLink(final int nodeId, final int neighborId) {
+        for (final Reaction<T> r : byInfluencing.getReactions(nodeId)) {
+            for (final Reaction<T> target : new ArrayList<>(outbound.get(r))) {
+                if (target.getNode().getId() == neighborId && !canReach(r, target, false)) {
+                    unlink(r, target);
+                }
+            }
+            for (final Reaction<T> source : new ArrayList<>(inbound.get(r))) {
+                if (source.getNode().getId() == neighborId && !canReach(source, r, false)) {
+                    unlink(source, r);
+                }
+            }
+        }
+    }
+
+    /*
+     * Links r with the reactions on the given node, in both directions.
+     */
+    private void connect(final Reaction<T> r, final int nodeId, final boolean neighbors) {
+        byInfluencing.forEachMatching(nodeId, r.getInfluencedMolecules(), target -> {
+            if (influences(r, target, neighbors)) {
+                link(r, target);
+            }
+        });
+        byInfluenced.forEachMatching(nodeId, r.getInfluencingMolecules(), source -> {
+            if (influences(source, r, neighbors)) {
+                link(source, r);
+            }
+        });
+    }
+
+    private void link(final Reaction<T> source, final Reaction<T> target) {
+        if (!source.equals(target)) {
+            outbound.get(source).add(target);
+            inbound.get(target).add(source);
+        }
+    }
+
+    private void unlink(final Reaction<T> source, final Reaction<T> target) {
+        outbound.get(source).remove(target);
+        inbound.get(target).remove(source);
+    }
+
+    private static <T> boolean influences(final Reaction<T> source, final Reaction<T> target, final boolean neighbors) {
+        return canReach(source, target, neighbors)
+                && sharesMolecules(source.getInfluencedMolecules(), target.getInfluencingMolecules());
+    }
+
+    private static <T> boolean canReach(final Reaction<T> source, final Reaction<T> target, final boolean neighbors) {
+        final Context out = source.getOutputContext();
+        final Context in = target.getInputContext();
+        return out == Context.GLOBAL || in == Context.GLOBAL
+                || source.getNode().equals(target.getNode())
+                || neighbors && (out == Context.NEIGHBORHOOD || in == Context.NEIGHBORHOOD);
+    }
+
+    private static boolean sharesMolecules(final List<? extends Molecule> influenced, final List<? extends Molecule> influencing) {
+        if (influenced == null || influencing == null) {
+            return true;
+        }
+        for (final Molecule in : influencing) {
+            for (final Molecule out : influenced) {
+                if (in.getId() == out.getId() || in.dependsOn(out)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isGlobal(final Reaction<?> r) {
+        return r.getInputContext() == Context.GLOBAL || r.getOutputContext() == Context.GLOBAL;
+    }
+
+}
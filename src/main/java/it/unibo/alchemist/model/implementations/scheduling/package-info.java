@@ -0,0 +1,4 @@
+/**
+ * Scheduling structures for next reaction method engines.
+ */
+package it.unibo.alchemist.model.implementations.scheduling;
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.spatialindexes;
+
+import java.util.List;
+
+import org.danilopianini.lang.SpatialIndex;
+
+/**
+ * A {@link SpatialIndex} which can move many elements at once, faster than
+ * moving them one by one.
+ * 
+ * @param <T>
+ *            the type of the indexed elements
+ */
+public interface BulkSpatialIndex<T> extends SpatialIndex<T> {
+
+    /**
+     * Moves many elements at once. The outcome is the same of calling
+     * {@link #move(Object, double[], double[])} for each element, in order.
+     * Coordinates are flattened: those of the i-th element start at index
+     * i * {@link #getDimensions()}.
+     * 
+     * @param elements
+     *            the elements to move
+     * @param start
+     *            the current coordinates of the elements
+     * @param end
+     *            the new coordinates of the elements
+     * @return true if all the elements were found
+     */
+    boolean moveAll(List<? extends T> elements, double[] start, double[] end);
+
+}
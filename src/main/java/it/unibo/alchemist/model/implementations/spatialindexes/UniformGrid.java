@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.model.implementations.spatialindexes;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math3.util.FastMath;
+import org.danilopianini.lang.SpatialIndex;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * A {@link SpatialIndex} that splits the space in cubic cells of fixed size
+ * (a cell list). Only non empty cells are stored. Each cell stores its
+ * elements and their coordinates in plain arrays.
+ * 
+ * This index is tuned for fixed range queries: if the cell size matches the
+ * range used by the linking rule (e.g. the radius of
+ * {@link it.unibo.alchemist.model.implementations.linkingrules.EuclideanDistance}),
+ * each neighborhood query visits at most 3^dimensions cells. Moving an element
+ * within its cell only updates its coordinates. Differently from trees, there
+ * is no rebalancing, and when most elements move at once all the cells are
+ * rebuilt in a single pass.
+ * 
+ * Up to three dimensions are supported.
+ * 
+ * @param <T>
+ *            the type of the indexed elements
+ */
+public final class UniformGrid<T> implements BulkSpatialIndex<T> {
+
+    private static final long serialVersionUID = 1L;
+    private static final int MAX_DIMENSIONS = 3;
+    private static final int BITS_3D = 21;
+    private static final long MASK_3D = (1L << BITS_3D) - 1;
+    private static final long MASK_2D = 0xFFFFFFFFL;
+    private final int dimensions;
+    private final double cellSize;
+    private final TLongObjectHashMap<Cell> cells = new TLongObjectHashMap<>();
+    private int size;
+
+    /**
+     * @param dimensions
+     *            the number of dimensions (1 to 3)
+     * @param cellSize
+     *            the size of the side of each cell. Use the range of the
+     *            linking rule to get the best out of this index.
+     */
+    public UniformGrid(final int dimensions, final double cellSize) {
+        if (dimensions < 1 || dimensions > MAX_DIMENSIONS) {
+            throw new IllegalArgumentException("Only 1 to " + MAX_DIMENSIONS + " dimensions are supported, " + dimensions + " requested.");
+        }
+        if (!(cellSize > 0) || Double.isInfinite(cellSize)) {
+            throw new IllegalArgumentException("The cell size must be positive and finite, " + cellSize + " provided.");
+        }
+        this.dimensions = dimensions;
+        this.cellSize = cellSize;
+    }
+
+    @Override
+    public void insert(final T element, final double... position) {
+        checkDimensions(position);
+        final long key = keyOf(position);
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            cell = new Cell(dimensions);
+            cells.put(key, cell);
+        }
+        cell.add(element, position);
+        size++;
+    }
+
+    @Override
+    public boolean remove(final T element, final double... position) {
+        checkDimensions(position);
+        final long key = keyOf(position);
+        final Cell cell = cells.get(key);
+        if (cell != null) {
+            final int index = cell.indexOf(element);
+            if (index >= 0) {
+                cell.removeAt(index);
+                if (cell.size == 0) {
+                    cells.remove(key);
+                }
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean move(final T element, final double[] start, final double[] end) {
+        checkDimensions(start);
+        checkDimensions(end);
+        final long startKey = keyOf(start);
+        final long endKey = keyOf(end);
+        if (startKey == endKey) {
+            final Cell cell = cells.get(startKey);
+            if (cell != null) {
+                final int index = cell.indexOf(element);
+                if (index >= 0) {
+                    cell.setCoordinates(index, end);
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (remove(element, start)) {
+            insert(element, end);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * If less than half of the indexed elements move, they are moved one by
+     * one. Otherwise, all the cells are rebuilt from scratch: in such case,
+     * the start coordinates are ignored.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean moveAll(final List<? extends T> elements, final double[] start, final double[] end) {
+        if (start.length != elements.size() * dimensions || end.length != start.length) {
+            throw new IllegalArgumentException("Expected " + elements.size() * dimensions + " coordinates");
+        }
+        if (elements.size() * 2 < size) {
+            final double[] from = new double[dimensions];
+            final double[] to = new double[dimensions];
+            boolean result = true;
+            for (int i = 0; i < elements.size(); i++) {
+                System.arraycopy(start, i * dimensions, from, 0, dimensions);
+                System.arraycopy(end, i * dimensions, to, 0, dimensions);
+                result &= move(elements.get(i), from, to);
+            }
+            return result;
+        }
+        final Map<Object, Integer> targets = new HashMap<>(elements.size() * 2);
+        for (int i = 0; i < elements.size(); i++) {
+            targets.put(elements.get(i), i);
+        }
+        final Object[] all = new Object[size];
+        final double[] coordinates = new double[size * dimensions];
+        int count = 0;
+        int found = 0;
+        for (final Cell cell : cells.valueCollection()) {
+            for (int k = 0; k < cell.size; k++) {
+                all[count] = cell.elements[k];
+                final Integer target = targets.get(all[count]);
+                if (target == null) {
+                    System.arraycopy(cell.coordinates, k * dimensions, coordinates, count * dimensions, dimensions);
+                } else {
+                    System.arraycopy(end, target * dimensions, coordinates, count * dimensions, dimensions);
+                    found++;
+                }
+                count++;
+            }
+        }
+        cells.clear();
+        size = 0;
+        for (int i = 0; i < count; i++) {
+            final int offset = i * dimensions;
+            final long key = keyOf(coordinates, offset);
+            Cell cell = cells.get(key);
+            if (cell == null) {
+                cell = new Cell(dimensions);
+                cells.put(key, cell);
+            }
+            cell.add(all[i], coordinates, offset);
+            size++;
+        }
+        return found == targets.size();
+    }
+
+    @Override
+    public List<T> query(final double[]... parallelotope) {
+        final double[] min = new double[dimensions];
+        final double[] max = new double[dimensions];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        for (final double[] corner : parallelotope) {
+            checkDimensions(corner);
+            for (int d = 0; d < dimensions; d++) {
+                min[d] = FastMath.min(min[d], corner[d]);
+                max[d] = FastMath.max(max[d], corner[d]);
+            }
+        }
+        final List<T> result = new ArrayList<>();
+        final int[] from = new int[MAX_DIMENSIONS];
+        final int[] to = new int[MAX_DIMENSIONS];
+        double cellsInArea = 1;
+        for (int d = 0; d < dimensions; d++) {
+            from[d] = cellIndex(min[d]);
+            to[d] = cellIndex(max[d]);
+            cellsInArea *= (double) to[d] - from[d] + 1;
+        }
+        if (cellsInArea > cells.size()) {
+            /*
+             * Huge query area: cheaper to scan the non empty cells.
+             */
+            cells.forEachValue(cell -> {
+                cell.collectInside(min, max, result);
+                return true;
+            });
+        } else {
+            for (int x = from[0]; x <= to[0]; x++) {
+                for (int y = from[1]; y <= to[1]; y++) {
+                    for (int z = from[2]; z <= to[2]; z++) {
+                        final Cell cell = cells.get(key(x, y, z));
+                        if (cell != null) {
+                            cell.collectInside(min, max, result);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return the size of the side of each cell
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return the number of indexed elements
+     */
+    public int size() {
+        return size;
+    }
+
+    private void checkDimensions(final double[] position) {
+        if (position.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " coordinates, got " + Arrays.toString(position));
+        }
+    }
+
+    private int cellIndex(final double coordinate) {
+        final double index = FastMath.floor(coordinate / cellSize);
+        if (index >= Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE - 1;
+        }
+        if (index <= Integer.MIN_VALUE) {
+            return Integer.MIN_VALUE + 1;
+        }
+        return (int) index;
+    }
+
+    private long keyOf(final double[] position) {
+        return keyOf(position, 0);
+    }
+
+    private long keyOf(final double[] coordinates, final int offset) {
+        return key(
+                cellIndex(coordinates[offset]),
+                dimensions > 1 ? cellIndex(coordinates[offset + 1]) : 0,
+                dimensions > 2 ? cellIndex(coordinates[offset + 2]) : 0);
+    }
+
+    private long key(final int x, final int y, final int z) {
+        switch (dimensions) {
+        case 1:
+            return x;
+        case 2:
+            return ((long) x << Integer.SIZE) | (y & MASK_2D);
+        default:
+            return ((x & MASK_3D) << (2 * BITS_3D)) | ((y & MASK_3D) << BITS_3D) | (z & MASK_3D);
+        }
+    }
+
+    private static final class Cell implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private static final int INITIAL_CAPACITY = 4;
+        private final int dimensions;
+        private Object[] elements = new Object[INITIAL_CAPACITY];
+        private double[] coordinates;
+        private int size;
+
+        Cell(final int dimensions) {
+            this.dimensions = dimensions;
+            coordinates = new double[INITIAL_CAPACITY * dimensions];
+        }
+
+        void add(final Object element, final double[] position) {
+            add(element, position, 0);
+        }
+
+        void add(final Object element, final double[] source, final int offset) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, size * 2);
+                coordinates = Arrays.copyOf(coordinates, size * 2 * dimensions);
+            }
+            elements[size] = element;
+            System.arraycopy(source, offset, coordinates, size * dimensions, dimensions);
+            size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> void collectInside(final double[] min, final double[] max, final List<T> result) {
+            for (int i = 0; i < size; i++) {
+                final int offset = i * dimensions;
+                boolean inside = true;
+                for (int d = 0; inside && d < dimensions; d++) {
+                    final double c = coordinates[offset + d];
+                    inside = c >= min[d] && c <= max[d];
+                }
+                if (inside) {
+                    result.add((T) elements[i]);
+                }
+            }
+        }
+
+        int indexOf(final Object element) {
+            for (int i = 0; i < size; i++) {
+                if (elements[i].equals(element)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void removeAt(final int index) {
+            final int last = --size;
+            if (index != last) {
+                elements[index] = elements[last];
+                System.arraycopy(coordinates, last * dimensions, coordinates, index * dimensions, dimensions);
+            }
+            elements[last] = null;
+        }
+
+        void setCoordinates(final int index, final double[] position) {
+            System.arraycopy(position, 0, coordinates, index * dimensions, dimensions);
+        }
+
+    }
+
+}
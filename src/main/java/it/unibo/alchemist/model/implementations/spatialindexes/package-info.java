@@ -0,0 +1,4 @@
+/**
+ * Spatial index implementations.
+ */
+package it.unibo.alchemist.model.implementations.spatialindexes;
@@ -8,6 +8,11 @@
  */
 package it.unibo.alchemist.model.implementations.timedistributions;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import it.unibo.alchemist.model.implementations.times.DoubleTime;
 import it.unibo.alchemist.model.interfaces.Environment;
 import it.unibo.alchemist.model.interfaces.Time;
 import it.unibo.alchemist.model.interfaces.TimeDistribution;
@@ -81,6 +86,35 @@ public abstract class AbstractDistribution<T> implements TimeDistribution<T> {
      */
     protected abstract void updateStatus(final Time curTime, final boolean executed, double param, final Environment<T> env);
 
+    /**
+     * Writes the state this distribution accumulated while the simulation
+     * was running, namely the next putative time and whether the start time
+     * was reached. Subclasses with further mutable state must extend both
+     * this method and {@link #restoreState(DataInput)}.
+     * 
+     * @param out
+     *            where to write
+     * @throws IOException
+     *             if the state can not be written
+     */
+    public void saveState(final DataOutput out) throws IOException {
+        out.writeDouble(tau.toDouble());
+        out.writeBoolean(schedulable);
+    }
+
+    /**
+     * Restores a state written by {@link #saveState(DataOutput)}.
+     * 
+     * @param in
+     *            where to read
+     * @throws IOException
+     *             if the state can not be read
+     */
+    public void restoreState(final DataInput in) throws IOException {
+        tau = new DoubleTime(in.readDouble());
+        schedulable = in.readBoolean();
+    }
+
     @Override
     public abstract AbstractDistribution<T> clone();
 
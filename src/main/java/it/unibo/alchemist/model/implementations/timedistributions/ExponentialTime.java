@@ -8,6 +8,10 @@
  */
 package it.unibo.alchemist.model.implementations.timedistributions;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.util.FastMath;
 
@@ -101,6 +105,18 @@ public class ExponentialTime<T> extends AbstractDistribution<T> {
         return -FastMath.log1p(-rand.nextDouble()) / lambda;
     }
 
+    @Override
+    public void saveState(final DataOutput out) throws IOException {
+        super.saveState(out);
+        out.writeDouble(oldPropensity);
+    }
+
+    @Override
+    public void restoreState(final DataInput in) throws IOException {
+        super.restoreState(in);
+        oldPropensity = in.readDouble();
+    }
+
     @Override
     @SuppressFBWarnings("CN_IDIOM_NO_SUPER_CALL")
     public ExponentialTime<T> clone() {
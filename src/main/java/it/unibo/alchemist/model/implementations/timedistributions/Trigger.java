@@ -3,6 +3,10 @@
  */
 package it.unibo.alchemist.model.implementations.timedistributions;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import it.unibo.alchemist.model.implementations.times.DoubleTime;
 import it.unibo.alchemist.model.interfaces.Environment;
@@ -38,6 +42,18 @@ public class Trigger<T> extends AbstractDistribution<T> {
         dryRunDone = true;
     }
 
+    @Override
+    public void saveState(final DataOutput out) throws IOException {
+        super.saveState(out);
+        out.writeBoolean(dryRunDone);
+    }
+
+    @Override
+    public void restoreState(final DataInput in) throws IOException {
+        super.restoreState(in);
+        dryRunDone = in.readBoolean();
+    }
+
     @Override
     @SuppressFBWarnings("CN_IDIOM_NO_SUPER_CALL")
     public Trigger<T> clone() {
@@ -0,0 +1,81 @@
+package it.unibo.alchemist.test;
+
+import org.danilopianini.lang.FlexibleQuadTree;
+import org.danilopianini.lang.SpatialIndex;
+
+import it.unibo.alchemist.model.implementations.environments.AbstractEnvironment;
+import it.unibo.alchemist.model.interfaces.LinkingRule;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * Two dimensional environment which accepts every node and keeps no links.
+ */
+public class SimpleEnvironment extends AbstractEnvironment<Object> {
+    private static final long serialVersionUID = 1L;
+    /**
+     * Builds an empty environment, indexed by a quadtree.
+     */
+    public SimpleEnvironment() {
+        this(new FlexibleQuadTree<>());
+    }
+    /**
+     * @param index
+     *            the spatial index
+     */
+    public SimpleEnvironment(final SpatialIndex<Node<Object>> index) {
+        super(index);
+    }
+    /**
+     * @return a new node for this environment, not yet added
+     */
+    public Node<Object> newNode() {
+        return new SimpleNode(this);
+    }
+    @Override
+    public int getDimensions() {
+        return 2;
+    }
+    @Override
+    public Neighborhood<Object> getNeighborhood(final Node<Object> center) {
+        return null;
+    }
+    @Override
+    public double[] getOffset() {
+        return new double[]{0, 0};
+    }
+    @Override
+    public double[] getSize() {
+        return new double[]{0, 0};
+    }
+    @Override
+    public void moveNode(final Node<Object> node, final Position direction) {
+        moveNodeToPosition(node, getPosition(node).sum(direction));
+    }
+    @Override
+    public void moveNodeToPosition(final Node<Object> node, final Position position) {
+        setPosition(node, position);
+    }
+    @Override
+    public void setLinkingRule(final LinkingRule<Object> rule) {
+    }
+    @Override
+    public LinkingRule<Object> getLinkingRule() {
+        return null;
+    }
+    @Override
+    protected void nodeAdded(final Node<Object> node, final Position p) {
+    }
+    @Override
+    protected boolean nodeShouldBeAdded(final Node<Object> node, final Position p) {
+        return true;
+    }
+    @Override
+    protected Position computeActualInsertionPosition(final Node<Object> node, final Position p) {
+        return p;
+    }
+    @Override
+    protected void nodeRemoved(final Node<Object> node, final Position pos) {
+    }
+}
@@ -0,0 +1,26 @@
+package it.unibo.alchemist.test;
+
+import it.unibo.alchemist.model.implementations.nodes.GenericNode;
+import it.unibo.alchemist.model.interfaces.Environment;
+
+/**
+ * Node with no behavior, whose concentrations default to zero.
+ */
+public class SimpleNode extends GenericNode<Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param env
+     *            the environment
+     */
+    public SimpleNode(final Environment<?> env) {
+        super(env);
+    }
+
+    @Override
+    protected Object createT() {
+        return 0;
+    }
+
+}
@@ -0,0 +1,166 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.danilopianini.lang.FlexibleQuadTree;
+import org.junit.Test;
+
+import it.unibo.alchemist.model.implementations.actions.BrownianMove;
+import it.unibo.alchemist.model.implementations.actions.MoveForwardAndTeleport;
+import it.unibo.alchemist.model.implementations.environments.AbstractDenseEnvironment;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.interfaces.Action;
+import it.unibo.alchemist.model.interfaces.LinkingRule;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ */
+public class TestAbstractDenseEnvironment {
+
+    private static final int NODES = 500;
+    private static final double SIZE = 100;
+    private static final double RANGE = 10;
+    private static final int STEPS = 200;
+
+    /**
+     * Checks that a dense environment answers exactly as a map based one, also
+     * after some nodes get removed and the slots get compacted.
+     */
+    @Test
+    public void testSameResultsAsMapBased() {
+        final Random rng = new Random(0);
+        final SimpleEnvironment map = new SimpleEnvironment();
+        final DenseEnv dense = new DenseEnv();
+        final List<Node<Object>> mapNodes = new ArrayList<>();
+        final List<Node<Object>> denseNodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            final Position p = new Continuous2DEuclidean(rng.nextDouble() * SIZE, rng.nextDouble() * SIZE);
+            final Node<Object> mn = new SimpleNode(map);
+            final Node<Object> dn = new SimpleNode(dense);
+            map.addNode(mn, p);
+            dense.addNode(dn, p);
+            mapNodes.add(mn);
+            denseNodes.add(dn);
+        }
+        for (int i = 0; i < NODES; i += 3) {
+            map.removeNode(mapNodes.get(i));
+            dense.removeNode(denseNodes.get(i));
+        }
+        for (int i = 1; i < NODES - 1; i += 3) {
+            assertEquals(map.getPosition(mapNodes.get(i)), dense.getPosition(denseNodes.get(i)));
+            assertEquals(ids(map.getNodesWithinRange(mapNodes.get(i), RANGE)),
+                    ids(dense.getNodesWithinRange(denseNodes.get(i), RANGE)));
+            assertEquals(map.getDistanceBetweenNodes(mapNodes.get(i), mapNodes.get(i + 1)),
+                    dense.getDistanceBetweenNodes(denseNodes.get(i), denseNodes.get(i + 1)), 1e-12);
+            assertEquals(dense.getPosition(denseNodes.get(i)).getCoordinate(1),
+                    dense.getCoordinate(denseNodes.get(i).getId(), 1), 0);
+        }
+    }
+
+    /**
+     * Movement actions must produce the same positions whether direct movement
+     * is enabled or not.
+     */
+    @Test
+    public void testDirectMovement() {
+        final Random rng = new Random(0);
+        final DenseEnv direct = new DenseEnv();
+        final DenseEnv regular = new DenseEnv();
+        direct.setDirectMovement(true);
+        final RandomGenerator directRng = new MersenneTwister(1);
+        final RandomGenerator regularRng = new MersenneTwister(1);
+        final List<Action<Object>> directMoves = new ArrayList<>();
+        final List<Action<Object>> regularMoves = new ArrayList<>();
+        final List<Node<Object>> directNodes = new ArrayList<>();
+        final List<Node<Object>> regularNodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            final Position p = new Continuous2DEuclidean(rng.nextDouble() * SIZE, rng.nextDouble() * SIZE);
+            final Node<Object> dn = new SimpleNode(direct);
+            final Node<Object> rn = new SimpleNode(regular);
+            direct.addNode(dn, p);
+            regular.addNode(rn, p);
+            directNodes.add(dn);
+            regularNodes.add(rn);
+            if (i % 2 == 0) {
+                directMoves.add(new BrownianMove<>(direct, dn, directRng, RANGE));
+                regularMoves.add(new BrownianMove<>(regular, rn, regularRng, RANGE));
+            } else {
+                directMoves.add(new MoveForwardAndTeleport<>(direct, dn, 1, 0, SIZE));
+                regularMoves.add(new MoveForwardAndTeleport<>(regular, rn, 1, 0, SIZE));
+            }
+        }
+        for (int step = 0; step < STEPS; step++) {
+            directMoves.forEach(Action::execute);
+            regularMoves.forEach(Action::execute);
+        }
+        for (int i = 0; i < NODES; i++) {
+            assertEquals(regular.getPosition(regularNodes.get(i)), direct.getPosition(directNodes.get(i)));
+            assertEquals(ids(regular.getNodesWithinRange(regularNodes.get(i), RANGE)),
+                    ids(direct.getNodesWithinRange(directNodes.get(i), RANGE)));
+        }
+    }
+
+    private static List<Integer> ids(final List<Node<Object>> nodes) {
+        final List<Integer> res = new ArrayList<>(nodes.size());
+        nodes.forEach(n -> res.add(n.getId()));
+        res.sort(null);
+        return res;
+    }
+
+    private static final class DenseEnv extends AbstractDenseEnvironment<Object> {
+        private static final long serialVersionUID = 1L;
+        DenseEnv() {
+            super(new FlexibleQuadTree<>(), 2);
+        }
+        @Override
+        public Neighborhood<Object> getNeighborhood(final Node<Object> center) {
+            return null;
+        }
+        @Override
+        public double[] getOffset() {
+            return new double[]{0, 0};
+        }
+        @Override
+        public double[] getSize() {
+            return new double[]{SIZE, SIZE};
+        }
+        @Override
+        public void moveNode(final Node<Object> node, final Position direction) {
+            moveNodeToPosition(node, getPosition(node).sum(direction));
+        }
+        @Override
+        public void moveNodeToPosition(final Node<Object> node, final Position position) {
+            setPosition(node, position);
+        }
+        @Override
+        public void setLinkingRule(final LinkingRule<Object> rule) {
+        }
+        @Override
+        public LinkingRule<Object> getLinkingRule() {
+            return null;
+        }
+        @Override
+        protected void nodeAdded(final Node<Object> node, final Position p) {
+        }
+        @Override
+        protected boolean nodeShouldBeAdded(final Node<Object> node, final Position p) {
+            return true;
+        }
+        @Override
+        protected Position computeActualInsertionPosition(final Node<Object> node, final Position p) {
+            return p;
+        }
+        @Override
+        protected void nodeRemoved(final Node<Object> node, final Position pos) {
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import gnu.trove.map.TIntObjectMap;
+import it.unibo.alchemist.model.implementations.linkingrules.AdaptiveRange;
+import it.unibo.alchemist.model.implementations.linkingrules.EuclideanDistance;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ */
+public class TestAdaptiveRange {
+
+    private static final int NODES = 1000;
+    private static final int ROUNDS = 5;
+    private static final double SIZE = 100;
+    private static final double RANGE = 5;
+    private static final int NEIGHBORS = 4;
+
+    /**
+     * The parallel relink must be deterministic, and must start from the
+     * plain euclidean neighborhoods.
+     */
+    @Test
+    public void testParallelRelink() {
+        final Random rng = new Random(0);
+        final SimpleEnvironment env = new SimpleEnvironment();
+        for (int i = 0; i < NODES; i++) {
+            env.addNode(env.newNode(), new Continuous2DEuclidean(rng.nextDouble() * SIZE, rng.nextDouble() * SIZE));
+        }
+        final AdaptiveRange<Object> first = new AdaptiveRange<>(RANGE, NEIGHBORS, 1);
+        final AdaptiveRange<Object> second = new AdaptiveRange<>(RANGE, NEIGHBORS, 1);
+        final TIntObjectMap<Neighborhood<Object>> plain = new EuclideanDistance<>(RANGE).computeNeighborhoods(env);
+        for (int round = 0; round < ROUNDS; round++) {
+            final TIntObjectMap<Neighborhood<Object>> a = first.computeNeighborhoods(env);
+            final TIntObjectMap<Neighborhood<Object>> b = second.computeNeighborhoods(env);
+            for (final Node<Object> node : env) {
+                assertEquals(a.get(node.getId()), b.get(node.getId()));
+                if (round == 0) {
+                    assertEquals(plain.get(node.getId()), a.get(node.getId()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Each bulk relink must behave as a round in which all the nodes adjust
+     * their range at the same time.
+     */
+    @Test
+    public void testSimultaneousRounds() {
+        final Random rng = new Random(1);
+        final SimpleEnvironment env = new SimpleEnvironment();
+        final List<Node<Object>> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            final Node<Object> node = env.newNode();
+            env.addNode(node, new Continuous2DEuclidean(rng.nextDouble() * SIZE, rng.nextDouble() * SIZE));
+            nodes.add(node);
+        }
+        final AdaptiveRange<Object> rule = new AdaptiveRange<>(RANGE, NEIGHBORS, 1);
+        final double[] ranges = new double[NODES];
+        Arrays.fill(ranges, RANGE);
+        for (int round = 0; round < ROUNDS; round++) {
+            final TIntObjectMap<Neighborhood<Object>> bulk = rule.computeNeighborhoods(env);
+            final double[] next = new double[NODES];
+            for (int i = 0; i < NODES; i++) {
+                final Set<Node<Object>> expected = new HashSet<>();
+                for (int j = 0; j < NODES; j++) {
+                    final double distance = env.getDistanceBetweenNodes(nodes.get(i), nodes.get(j));
+                    if (i != j && distance <= ranges[i] && distance <= ranges[j]) {
+                        expected.add(nodes.get(j));
+                    }
+                }
+                final Set<Node<Object>> actual = new HashSet<>();
+                bulk.get(nodes.get(i).getId()).forEach(actual::add);
+                assertEquals(expected, actual);
+                next[i] = expected.size() > NEIGHBORS + 1 ? Math.max(ranges[i] - 1, AdaptiveRange.DEFAULT_MINRANGE)
+                        : expected.size() < NEIGHBORS - 1 ? Math.min(ranges[i] + 1, AdaptiveRange.DEFAULT_MAXRANGE)
+                        : ranges[i];
+            }
+            System.arraycopy(next, 0, ranges, 0, NODES);
+        }
+    }
+
+}
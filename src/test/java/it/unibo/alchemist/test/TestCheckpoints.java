@@ -0,0 +1,170 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.math3.random.JDKRandomGenerator;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import it.unibo.alchemist.boundary.checkpoints.CheckpointReader;
+import it.unibo.alchemist.boundary.checkpoints.CheckpointWriter;
+import it.unibo.alchemist.model.implementations.molecules.SimpleMolecule;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.implementations.reactions.Event;
+import it.unibo.alchemist.model.implementations.timedistributions.ExponentialTime;
+import it.unibo.alchemist.model.implementations.times.DoubleTime;
+import it.unibo.alchemist.model.interfaces.Molecule;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Reaction;
+
+/**
+ */
+public class TestCheckpoints {
+
+    private static final int NODES = 1000;
+    private static final Molecule A = new SimpleMolecule("a");
+    private static final Molecule B = new SimpleMolecule("b");
+
+    /**
+     * Holds the checkpoints, deleted even if a test fails.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Restoring a full checkpoint followed by an incremental one on a freshly
+     * built environment must reproduce the state of the original one.
+     *
+     * @throws Exception
+     *             on failure
+     */
+    @Test
+    public void testRestore() throws Exception {
+        final Path full = folder.newFile("full.bin").toPath();
+        final Path delta = folder.newFile("delta.bin").toPath();
+        final RandomGenerator rng = new MersenneTwister(1);
+        final SimpleEnvironment env = build(rng);
+        for (final Node<Object> node : env.getNodes()) {
+            for (final Reaction<Object> r : node.getReactions()) {
+                r.update(new DoubleTime(1), true, env);
+            }
+        }
+        env.moveNode(env.getNodeByID(3), new Continuous2DEuclidean(0.5, 0.5));
+        try (CheckpointWriter<Object> writer = new CheckpointWriter<>(env, rng, o -> ((Number) o).doubleValue())) {
+            writer.checkpoint(full, new DoubleTime(1), true).get();
+            env.moveNode(env.getNodeByID(5), new Continuous2DEuclidean(1, 1));
+            env.getNodeByID(7).setConcentration(B, 2d);
+            env.getNodeByID(8).removeConcentration(A);
+            env.getNodeByID(9).getReactions().get(0).update(new DoubleTime(2), true, env);
+            env.removeNode(env.getNodeByID(11));
+            writer.checkpoint(delta, new DoubleTime(2), true).get();
+        }
+        assertTrue(Files.size(delta) * 10 < Files.size(full));
+        final RandomGenerator restoredRng = new MersenneTwister(2);
+        final SimpleEnvironment restored = build(restoredRng);
+        assertEquals(2, new CheckpointReader<>(restored, restoredRng, Double::valueOf).restore(full, delta).toDouble(), 0);
+        assertEquals(NODES - 1, restored.getNodesNumber());
+        assertNull(restored.getNodeByID(11));
+        for (final Node<Object> node : env.getNodes()) {
+            final Node<Object> copy = restored.getNodeByID(node.getId());
+            assertArrayEquals(env.getPosition(node).getCartesianCoordinates(), restored.getPosition(copy).getCartesianCoordinates(), 0);
+            assertEquals(node.getContents().keySet(), copy.getContents().keySet());
+            for (final Molecule m : node.getContents().keySet()) {
+                assertEquals(((Number) node.getConcentration(m)).doubleValue(), ((Number) copy.getConcentration(m)).doubleValue(), 0);
+            }
+            assertEquals(node.getReactions().get(0).getTau().toDouble(), copy.getReactions().get(0).getTau().toDouble(), 0);
+        }
+        assertEquals(rng.nextDouble(), restoredRng.nextDouble(), 0);
+    }
+
+    /**
+     * After a checkpoint fails to be written, the next one must be full, even
+     * if an incremental one is requested.
+     *
+     * @throws Exception
+     *             on failure
+     */
+    @Test
+    public void testFailedWrite() throws Exception {
+        final Path full = folder.newFile("full.bin").toPath();
+        final Path lost = folder.getRoot().toPath().resolve("missing").resolve("lost.bin");
+        final Path next = folder.newFile("next.bin").toPath();
+        final RandomGenerator rng = new MersenneTwister(1);
+        final SimpleEnvironment env = build(rng);
+        try (CheckpointWriter<Object> writer = new CheckpointWriter<>(env, rng, o -> ((Number) o).doubleValue())) {
+            writer.checkpoint(full, new DoubleTime(1), true).get();
+            env.getNodeByID(7).setConcentration(B, 2d);
+            try {
+                writer.checkpoint(lost, new DoubleTime(2), true).get();
+                fail();
+            } catch (final ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            writer.checkpoint(next, new DoubleTime(3), true).get();
+        }
+        assertTrue(Files.size(next) > Files.size(full) / 2);
+        final RandomGenerator restoredRng = new MersenneTwister(2);
+        final SimpleEnvironment restored = build(restoredRng);
+        assertEquals(3, new CheckpointReader<>(restored, restoredRng, Double::valueOf).restore(next).toDouble(), 0);
+        assertEquals(2, ((Number) restored.getNodeByID(7).getConcentration(B)).doubleValue(), 0);
+    }
+
+    /**
+     * Engines whose state can not be restored must be rejected up front, and
+     * the writer thread must not keep the JVM alive.
+     *
+     * @throws Exception
+     *             on failure
+     */
+    @Test
+    public void testEngineAndWriterThread() throws Exception {
+        final SimpleEnvironment env = build(new MersenneTwister(1));
+        try {
+            new CheckpointWriter<>(env, new JDKRandomGenerator(), o -> ((Number) o).doubleValue());
+            fail();
+        } catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains(JDKRandomGenerator.class.getName()));
+        }
+        try {
+            new CheckpointReader<>(env, new JDKRandomGenerator(), Double::valueOf);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains(JDKRandomGenerator.class.getName()));
+        }
+        try (CheckpointWriter<Object> writer = new CheckpointWriter<>(env, null, o -> ((Number) o).doubleValue())) {
+            writer.checkpoint(folder.newFile("full.bin").toPath(), new DoubleTime(1), true).get();
+            boolean found = false;
+            for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals("Checkpoint writer")) {
+                    assertTrue(thread.isDaemon());
+                    found = true;
+                }
+            }
+            assertTrue(found);
+        }
+    }
+
+    private static SimpleEnvironment build(final RandomGenerator rng) {
+        final SimpleEnvironment env = new SimpleEnvironment();
+        for (int i = 0; i < NODES; i++) {
+            final Node<Object> node = env.newNode();
+            node.setConcentration(A, (double) i);
+            node.addReaction(new Event<>(node, new ExponentialTime<>(1, rng)));
+            env.addNode(node, new Continuous2DEuclidean(i, 0));
+        }
+        return env;
+    }
+
+}
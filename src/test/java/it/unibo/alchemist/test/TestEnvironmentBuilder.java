@@ -0,0 +1,230 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import it.unibo.alchemist.language.EnvironmentBuilder;
+import it.unibo.alchemist.language.EnvironmentSnapshot;
+import it.unibo.alchemist.model.implementations.reactions.AReaction;
+import it.unibo.alchemist.model.implementations.reactions.Event;
+import it.unibo.alchemist.model.implementations.timedistributions.DiracComb;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Reaction;
+
+/**
+ */
+public class TestEnvironmentBuilder {
+
+    private static final int NODES = 1200;
+    private static final int REACTIONS = 2;
+
+    /**
+     * Holds the files of the snapshot test, deleted even if it fails.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Elements of the same type whose arguments have different kinds must be
+     * built with different constructors, even once constructors get cached.
+     *
+     * @throws Exception
+     *             on failure
+     */
+    @Test
+    public void testConstructorResolution() throws Exception {
+        check(EnvironmentBuilder.<Object>build(toStream(scenario(""))).get().getEnvironment());
+    }
+
+    /**
+     * The streaming mode must build the same environment, and must tolerate
+     * comments between the elements.
+     *
+     * @throws Exception
+     *             on failure
+     */
+    @Test
+    public void testStreaming() throws Exception {
+        check(EnvironmentBuilder.<Object>buildStreaming(toStream(scenario("<!-- comment -->\n"))).get().getEnvironment());
+    }
+
+    /**
+     * Building nodes in parallel must not change their ids, nor give two
+     * reactions the same hash code. Reactions must get the hash codes a
+     * sequential build would give them, references to named reactions
+     * included, and no id must be wasted.
+     *
+     * @throws Exception
+     *             on failure
+     */
+    @Test
+    public void testParallel() throws Exception {
+        check(EnvironmentBuilder.<Object>buildParallel(toStream(scenario("\n")), 2).get().getEnvironment());
+        final String xml = scenario("\n").replace("<reaction type", "<reaction name=\"r\" type")
+                .replace("</node>", "<reaction name=\"r\"/></node>");
+        final int sequentialStart = AReaction.reserveIds(0);
+        final List<Integer> sequential = reactionHashes(EnvironmentBuilder.<Object>build(toStream(xml)).get().getEnvironment());
+        final int parallelStart = AReaction.reserveIds(0);
+        final List<Integer> parallel = reactionHashes(EnvironmentBuilder.<Object>buildParallel(toStream(xml), 2).get().getEnvironment());
+        final int drawn = parallelStart - sequentialStart;
+        assertEquals(NODES * REACTIONS, drawn);
+        assertEquals(drawn, AReaction.reserveIds(0) - parallelStart);
+        assertEquals(toDrawOrder(sequential, sequentialStart, drawn), toDrawOrder(parallel, parallelStart, drawn));
+    }
+
+    /*
+     * Reaction hashes of each node, in node id order.
+     */
+    private static List<Integer> reactionHashes(final Environment<Object> env) {
+        final List<Node<Object>> nodes = new ArrayList<>(env.getNodes());
+        nodes.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+        final List<Integer> result = new ArrayList<>();
+        for (final Node<Object> node : nodes) {
+            for (final Reaction<Object> r : node.getReactions()) {
+                result.add(r.hashCode());
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Maps each hash on the position of its id among those drawn from start,
+     * by building probe reactions with known ids.
+     */
+    private static List<Integer> toDrawOrder(final List<Integer> hashes, final int start, final int drawn) {
+        final Map<Integer, Integer> order = new HashMap<>();
+        final SimpleEnvironment env = new SimpleEnvironment();
+        final Node<Object> node = env.newNode();
+        AReaction.useReservedIds(start, drawn);
+        try {
+            for (int i = 0; i < drawn; i++) {
+                order.put(new Event<>(node, new DiracComb<>(1)).hashCode(), i);
+            }
+        } finally {
+            AReaction.useReservedIds(start, 0);
+        }
+        final List<Integer> result = new ArrayList<>(hashes.size());
+        for (final Integer hash : hashes) {
+            assertTrue(order.containsKey(hash));
+            result.add(order.get(hash));
+        }
+        return result;
+    }
+
+    /**
+     * Snapshots must be restored as long as the XML does not change, and
+     * nodes created later must not reuse the restored ids. Truncated
+     * snapshots must be rebuilt.
+     *
+     * @throws Exception
+     *             on failure
+     */
+    @Test
+    public void testSnapshot() throws Exception {
+        final Path xml = folder.newFile("scenario.xml").toPath();
+        final Path snapshot = folder.getRoot().toPath().resolve("scenario.bin");
+        Files.write(xml, scenario("").getBytes(StandardCharsets.UTF_8));
+        final Environment<Object> built = EnvironmentSnapshot.<Object>load(xml, snapshot).getEnvironment();
+        check(built);
+        assertTrue(Files.isRegularFile(snapshot));
+        final FileTime written = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(snapshot, written);
+        final Environment<Object> restored = EnvironmentSnapshot.<Object>load(xml, snapshot).getEnvironment();
+        assertTrue(built != restored);
+        assertEquals(written, Files.getLastModifiedTime(snapshot));
+        check(restored);
+        assertEquals(NODES, new TestNode(restored, 0).getId());
+        final byte[] old = Files.readAllBytes(snapshot);
+        Files.write(xml, scenario(" ").getBytes(StandardCharsets.UTF_8));
+        check(EnvironmentSnapshot.<Object>load(xml, snapshot).getEnvironment());
+        assertFalse(Arrays.equals(old, Files.readAllBytes(snapshot)));
+        final byte[] current = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(current, current.length / 2));
+        check(EnvironmentSnapshot.<Object>load(xml, snapshot).getEnvironment());
+        assertEquals(current.length, Files.size(snapshot));
+    }
+
+    private static void check(final Environment<Object> env) {
+        assertEquals(NODES, env.getNodesNumber());
+        final Set<Integer> hashes = new HashSet<>();
+        for (final Node<Object> node : env.getNodes()) {
+            final int i = (int) env.getPosition(node).getCoordinate(0);
+            assertEquals(i, node.getId());
+            assertEquals(i % 3 == 0 ? 2 : i, ((TestNode) node).value, 0);
+            assertEquals(REACTIONS, node.getReactions().size());
+            for (final Reaction<Object> r : node.getReactions()) {
+                assertTrue(hashes.add(r.hashCode()));
+            }
+        }
+    }
+
+    private static String scenario(final String separator) {
+        final StringBuilder xml = new StringBuilder("<environment type=\"" + SimpleEnvironment.class.getName() + "\">"
+                + "<random type=\"MersenneTwister\" seed=\"1\"/>" + separator
+                + "<position type=\"Continuous2DEuclidean\"/>");
+        for (int i = 0; i < NODES; i++) {
+            xml.append(separator).append("<node type=\"").append(TestNode.class.getName()).append("\" p0=\"ENV\" p1=\"")
+                .append(i % 3 == 0 ? "[1, 2]" : Integer.toString(i)).append("\" position=\"").append(i).append(",0\">");
+            for (int r = 0; r < REACTIONS; r++) {
+                xml.append("<timedistribution type=\"DiracComb\" p0=\"1\"/>")
+                    .append("<reaction type=\"Event\" p0=\"NODE\" p1=\"TIMEDIST\"/>");
+            }
+            xml.append("</node>");
+        }
+        return xml.append("</environment>").toString();
+    }
+
+    private static InputStream toStream(final String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A node which can be built either from a number or from a list.
+     */
+    public static final class TestNode extends SimpleNode {
+        private static final long serialVersionUID = 1L;
+        private final double value;
+
+        /**
+         * @param env
+         *            the environment
+         * @param value
+         *            the value
+         */
+        public TestNode(final Environment<?> env, final double value) {
+            super(env);
+            this.value = value;
+        }
+
+        /**
+         * @param env
+         *            the environment
+         * @param values
+         *            the value is the size of this list
+         */
+        public TestNode(final Environment<?> env, final ArrayList<?> values) {
+            this(env, values.size());
+        }
+    }
+
+}
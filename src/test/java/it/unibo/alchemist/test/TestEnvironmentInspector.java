@@ -0,0 +1,163 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import it.unibo.alchemist.boundary.monitors.BinaryExportReader;
+import it.unibo.alchemist.boundary.monitors.EnvironmentInspector;
+import it.unibo.alchemist.model.implementations.times.DoubleTime;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Reaction;
+import it.unibo.alchemist.model.interfaces.Time;
+
+/**
+ */
+public class TestEnvironmentInspector {
+
+    private static final int STEPS = 5000;
+
+    /**
+     * Holds the exported files, deleted even if a test fails.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writing in background must produce the same file as writing on the
+     * simulation thread.
+     *
+     * @throws Exception
+     *             on failure
+     */
+    @Test
+    public void testBackgroundWriting() throws Exception {
+        final Path sync = folder.getRoot().toPath().resolve("sync.txt");
+        final Path async = folder.getRoot().toPath().resolve("async.txt");
+        run(sync, false, false);
+        run(async, true, false);
+        assertEquals(STEPS + 1, Files.readAllLines(async).size());
+        assertArrayEquals(Files.readAllBytes(sync), Files.readAllBytes(async));
+    }
+
+    /**
+     * The binary export must be read back as it was sampled, with short rows
+     * padded with NaN.
+     *
+     * @throws Exception
+     *             on failure
+     */
+    @Test
+    public void testBinaryExport() throws Exception {
+        final Path file = folder.newFile("export.bin").toPath();
+        run(file, false, true);
+        try (BinaryExportReader reader = new BinaryExportReader(file)) {
+            assertEquals(Arrays.asList("time", "step", "value0", "value1", "value2"), reader.getColumns());
+            assertEquals(STEPS + 1, reader.getRows());
+            final double[] row = new double[reader.getColumns().size()];
+            for (int step = 0; step <= STEPS; step++) {
+                assertTrue(reader.readRow(row));
+                assertEquals(step / 3d, row[0], 0);
+                assertEquals(step, row[1], 0);
+                final double[] expected = StepInspector.values(step);
+                for (int i = 0; i < 3; i++) {
+                    assertEquals(i < expected.length ? expected[i] : Double.NaN, row[i + 2], 0);
+                }
+            }
+            assertFalse(reader.readRow(row));
+            final double[] steps = reader.readColumn("step");
+            for (int step = 0; step <= STEPS; step++) {
+                assertEquals(step, steps[step], 0);
+            }
+        }
+    }
+
+    /**
+     * Rows longer than the first one do not fit the binary format: they must
+     * be dropped without stopping the sampling.
+     *
+     * @throws Exception
+     *             on failure
+     */
+    @Test
+    public void testGrowingRows() throws Exception {
+        final Path file = folder.newFile("export.bin").toPath();
+        final EnvironmentInspector<Object> inspector = new GrowingInspector();
+        run(inspector, file, false, true);
+        try (BinaryExportReader reader = new BinaryExportReader(file)) {
+            assertEquals(Arrays.asList("time", "step", "value0"), reader.getColumns());
+            final double[] steps = reader.readColumn("step");
+            assertEquals(STEPS / 2 + 1, steps.length);
+            for (int i = 0; i < steps.length; i++) {
+                assertEquals(2 * i, steps[i], 0);
+            }
+        }
+    }
+
+    /**
+     * A failure while sampling must not leave the inspector locked.
+     *
+     * @throws Exception
+     *             on failure
+     */
+    @Test(timeout = 10_000)
+    public void testFailureReleasesLock() throws Exception {
+        final EnvironmentInspector<Object> inspector = new StepInspector();
+        inspector.setFilePath(folder.getRoot().toPath().resolve("missing").resolve("out.txt").toString());
+        for (int step = 0; step < 2; step++) {
+            try {
+                inspector.stepDone(null, null, new DoubleTime(step), step);
+                fail();
+            } catch (final IllegalStateException e) {
+                assertTrue(e.getMessage().contains("file writer"));
+            }
+        }
+    }
+
+    private static void run(final Path file, final boolean async, final boolean binary) {
+        run(new StepInspector(), file, async, binary);
+    }
+
+    private static void run(final EnvironmentInspector<Object> inspector, final Path file, final boolean async, final boolean binary) {
+        inspector.setFilePath(new File(file.toString()).getPath());
+        inspector.setMode(EnvironmentInspector.Mode.STEP);
+        inspector.setWritingInBackground(async);
+        inspector.setWritingBinary(binary);
+        inspector.initialized(null);
+        for (int step = 1; step <= STEPS; step++) {
+            inspector.stepDone(null, null, new DoubleTime(step / 3d), step);
+        }
+        inspector.finished(null, new DoubleTime(STEPS / 3d), STEPS);
+    }
+
+    private static final class GrowingInspector extends EnvironmentInspector<Object> {
+        private static final long serialVersionUID = 1L;
+        @Override
+        protected double[] extractValues(final Environment<Object> env, final Reaction<Object> r, final Time time, final long step) {
+            return step % 2 == 0 ? new double[] { step } : new double[] { step, step };
+        }
+    }
+
+    private static final class StepInspector extends EnvironmentInspector<Object> {
+        private static final long serialVersionUID = 1L;
+        @Override
+        protected double[] extractValues(final Environment<Object> env, final Reaction<Object> r, final Time time, final long step) {
+            return values(step);
+        }
+        private static double[] values(final long step) {
+            return step % 7 == 3 ? new double[] { step * 0.1 } : new double[] { step * 0.1, Math.sqrt(step), Double.NaN };
+        }
+    }
+
+}
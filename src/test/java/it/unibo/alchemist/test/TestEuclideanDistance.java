@@ -0,0 +1,108 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import gnu.trove.map.TIntObjectMap;
+import it.unibo.alchemist.model.implementations.linkingrules.EuclideanDistance;
+import it.unibo.alchemist.model.implementations.neighborhoods.CachedNeighborhood;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ */
+public class TestEuclideanDistance {
+
+    private static final int NODES = 2000;
+    private static final double SIZE = 100;
+    private static final double RANGE = 5;
+
+    /**
+     * The parallel bulk computation must match the per-node one, also when
+     * some links are vetoed.
+     */
+    @Test
+    public void testBulkSameAsSequential() {
+        final Random rng = new Random(0);
+        final SimpleEnvironment env = new SimpleEnvironment();
+        for (int i = 0; i < NODES; i++) {
+            env.addNode(env.newNode(), new Continuous2DEuclidean(rng.nextDouble() * SIZE, rng.nextDouble() * SIZE));
+        }
+        check(env, new EuclideanDistance<>(RANGE));
+        check(env, new EuclideanDistance<Object>(RANGE) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean isLinkAllowed(final Environment<Object> e,
+                    final Node<Object> center, final Node<Object> neighbor) {
+                return (center.getId() + neighbor.getId()) % 3 != 0;
+            }
+        });
+    }
+
+    /**
+     * Nodes exactly at range from each other, lying on the borders of the
+     * cells used to find the pairs, must be linked as well, as well as nodes
+     * sharing their position.
+     */
+    @Test
+    public void testCellBorders() {
+        final SimpleEnvironment env = new SimpleEnvironment();
+        final int side = 12;
+        for (int x = -side / 2; x < side / 2; x++) {
+            for (int y = -side / 2; y < side / 2; y++) {
+                env.addNode(env.newNode(), new Continuous2DEuclidean(x * RANGE, y * RANGE));
+                env.addNode(env.newNode(), new Continuous2DEuclidean(x * RANGE, y * RANGE));
+            }
+        }
+        check(env, new EuclideanDistance<>(RANGE));
+        check(env, new EuclideanDistance<>(RANGE / 2));
+        check(env, new EuclideanDistance<>(0));
+    }
+
+    /**
+     * Subclasses overriding the per-node computation must not be bypassed by
+     * the bulk and the incremental paths.
+     */
+    @Test
+    public void testCustomNeighborhood() {
+        final Random rng = new Random(1);
+        final SimpleEnvironment env = new SimpleEnvironment();
+        for (int i = 0; i < NODES / 10; i++) {
+            env.addNode(env.newNode(), new Continuous2DEuclidean(rng.nextDouble() * SIZE / 3, rng.nextDouble() * SIZE / 3));
+        }
+        final EuclideanDistance<Object> rule = new EuclideanDistance<Object>(RANGE) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            public Neighborhood<Object> computeNeighborhood(final Node<Object> center, final Environment<Object> e) {
+                final List<Node<Object>> neighbors = new ArrayList<>();
+                for (final Node<Object> node : e.getNodesWithinRange(center, getRange())) {
+                    if (node.getId() % 2 == center.getId() % 2) {
+                        neighbors.add(node);
+                    }
+                }
+                return new CachedNeighborhood<>(center, neighbors, e);
+            }
+        };
+        assertFalse(rule.isPairwise());
+        assertTrue(new EuclideanDistance<>(RANGE).isPairwise());
+        check(env, rule);
+    }
+
+    private static void check(final SimpleEnvironment env, final EuclideanDistance<Object> rule) {
+        final TIntObjectMap<Neighborhood<Object>> bulk = rule.computeNeighborhoods(env);
+        assertEquals(env.getNodesNumber(), bulk.size());
+        for (final Node<Object> node : env) {
+            assertEquals(rule.computeNeighborhood(node, env), bulk.get(node.getId()));
+        }
+    }
+
+}
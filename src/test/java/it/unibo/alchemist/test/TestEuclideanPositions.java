@@ -0,0 +1,65 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.model.implementations.positions.ContinuousGenericEuclidean;
+import it.unibo.alchemist.model.implementations.positions.Euclidean2DPosition;
+import it.unibo.alchemist.model.implementations.positions.Euclidean3DPosition;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ */
+public class TestEuclideanPositions {
+
+    private static final Random RNG = new Random(0);
+    private static final int ROUNDS = 1000;
+
+    /**
+     * Specialized positions must behave exactly as the generic ones with the
+     * same coordinates.
+     */
+    @Test
+    public void testSameAsGeneric() {
+        for (int i = 0; i < ROUNDS; i++) {
+            check(new double[] {coord(), coord()}, new double[] {coord(), coord()});
+            check(new double[] {coord(), coord(), coord()}, new double[] {coord(), coord(), coord()});
+        }
+        check(new double[] {1, 2}, new double[] {1, 2});
+        check(new double[] {1, 2, 3}, new double[] {1, 2, 4});
+    }
+
+    private static double coord() {
+        /*
+         * Few distinct values, so that ties in comparisons are frequent
+         */
+        return RNG.nextInt(4) - 2;
+    }
+
+    private static Position specialized(final double[] c) {
+        return c.length == 2 ? new Euclidean2DPosition(c[0], c[1]) : new Euclidean3DPosition(c[0], c[1], c[2]);
+    }
+
+    private static void check(final double[] a, final double[] b) {
+        final Position ga = new ContinuousGenericEuclidean(a);
+        final Position gb = new ContinuousGenericEuclidean(b);
+        final Position sa = specialized(a);
+        final Position sb = specialized(b);
+        assertEquals(ga.getDistanceTo(gb), sa.getDistanceTo(sb), 0);
+        assertEquals(ga.getDistanceTo(gb), sa.getDistanceTo(gb), 0);
+        assertEquals(Integer.signum(ga.compareTo(gb)), Integer.signum(sa.compareTo(sb)));
+        assertEquals(Integer.signum(ga.compareTo(gb)), Integer.signum(sa.compareTo(gb)));
+        assertEquals(ga.equals(gb), sa.equals(sb));
+        assertEquals(ga, sa);
+        assertEquals(sa, ga);
+        assertEquals(ga.hashCode(), sa.hashCode());
+        assertEquals(ga.toString(), sa.toString());
+        assertArrayEquals(ga.sum(gb).getCartesianCoordinates(), sa.sum(sb).getCartesianCoordinates(), 0);
+        assertEquals(ga.buildBoundingBox(1), sa.buildBoundingBox(1));
+    }
+
+}
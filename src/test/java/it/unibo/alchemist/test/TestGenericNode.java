@@ -1,7 +1,9 @@
 package it.unibo.alchemist.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
+import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -18,6 +20,7 @@ import it.unibo.alchemist.model.implementations.molecules.SimpleMolecule;
 import it.unibo.alchemist.model.implementations.nodes.GenericNode;
 import it.unibo.alchemist.model.interfaces.Environment;
 import it.unibo.alchemist.model.interfaces.Molecule;
+import it.unibo.alchemist.model.interfaces.Node;
 
 /**
  *
@@ -77,4 +80,25 @@ public class TestGenericNode {
         }
     }
 
+    /**
+     * A failure while computing the first id of an environment must not
+     * prevent other nodes from being created.
+     */
+    @Test(timeout = 10_000)
+    public void testIdFailure() {
+        @SuppressWarnings("serial")
+        final Environment<Object> broken = new SimpleEnvironment() {
+            @Override
+            public Collection<Node<Object>> getNodes() {
+                throw new IllegalStateException();
+            }
+        };
+        try {
+            new SimpleNode(broken);
+            fail();
+        } catch (final IllegalStateException e) {
+            assertEquals(0, new SimpleNode(new SimpleEnvironment()).getId());
+        }
+    }
+
 }
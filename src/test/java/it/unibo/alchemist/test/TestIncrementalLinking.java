@@ -0,0 +1,213 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.danilopianini.lang.FlexibleQuadTree;
+import org.danilopianini.lang.SpatialIndex;
+import org.junit.Test;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import it.unibo.alchemist.model.implementations.linkingrules.EuclideanDistance;
+import it.unibo.alchemist.model.implementations.neighborhoods.NeighborhoodDiff;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.implementations.positions.Discrete2DManhattan;
+import it.unibo.alchemist.model.implementations.positions.Euclidean2DPosition;
+import it.unibo.alchemist.model.implementations.spatialindexes.UniformGrid;
+import it.unibo.alchemist.model.interfaces.LinkingRule;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ */
+public class TestIncrementalLinking {
+
+    private static final int NODES = 300;
+    private static final int MOVES = 2000;
+    private static final double SIZE = 100;
+    private static final double RANGE = 8;
+    private static final double STEP = 3;
+
+    /**
+     * Moves nodes around with incremental linking enabled, and checks that the
+     * neighborhoods are the same that a full recomputation would produce.
+     */
+    @Test
+    public void testSameAsFullRecomputation() {
+        final Random rng = new Random(1);
+        final LinkedEnv env = new LinkedEnv();
+        env.setIncrementalLinking(true);
+        final List<Node<Object>> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            final Node<Object> n = new SimpleNode(env);
+            env.addNode(n, new Continuous2DEuclidean(rng.nextDouble() * SIZE, rng.nextDouble() * SIZE));
+            nodes.add(n);
+        }
+        final List<Neighborhood<Object>> live = new ArrayList<>();
+        nodes.forEach(n -> live.add(env.getNeighborhood(n)));
+        for (int i = 0; i < MOVES; i++) {
+            final Node<Object> n = nodes.get(rng.nextInt(NODES));
+            env.moveNode(n, new Continuous2DEuclidean((rng.nextDouble() - 0.5) * STEP, (rng.nextDouble() - 0.5) * STEP));
+        }
+        for (int i = 0; i < NODES; i++) {
+            final Node<Object> n = nodes.get(i);
+            assertSame(live.get(i), env.getNeighborhood(n));
+            assertEquals(env.getLinkingRule().computeNeighborhood(n, env).getNeighbors(), env.getNeighborhood(n).getNeighbors());
+        }
+        assertEquals(true, env.updates > 0);
+    }
+
+    /**
+     * Moves small and large batches of nodes at once, both with a plain and
+     * with a bulk spatial index, and checks neighborhoods and range queries.
+     */
+    @Test
+    public void testBatchMovement() {
+        testBatchMovement(new LinkedEnv(new FlexibleQuadTree<>()));
+        testBatchMovement(new LinkedEnv(new UniformGrid<>(2, RANGE)));
+    }
+
+    private static void testBatchMovement(final LinkedEnv env) {
+        final Random rng = new Random(2);
+        env.setIncrementalLinking(true);
+        final List<Node<Object>> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            final Node<Object> n = new SimpleNode(env);
+            env.addNode(n, new Continuous2DEuclidean(rng.nextDouble() * SIZE, rng.nextDouble() * SIZE));
+            nodes.add(n);
+        }
+        for (final int batch : new int[] {NODES / 10, NODES}) {
+            final int[] ids = new int[batch];
+            final double[] coordinates = new double[batch * 2];
+            for (int i = 0; i < batch; i++) {
+                final Node<Object> n = nodes.get(rng.nextInt(NODES));
+                ids[i] = n.getId();
+                coordinates[2 * i] = env.getPosition(n).getCoordinate(0) + (rng.nextDouble() - 0.5) * RANGE;
+                coordinates[2 * i + 1] = env.getPosition(n).getCoordinate(1) + (rng.nextDouble() - 0.5) * RANGE;
+            }
+            env.moveNodes(ids, coordinates);
+            for (int i = 0; i < batch; i++) {
+                final Position p = env.getPosition(env.getNodeByID(ids[i]));
+                if (lastIndexOf(ids, ids[i]) == i) {
+                    assertEquals(new Continuous2DEuclidean(coordinates[2 * i], coordinates[2 * i + 1]), p);
+                }
+            }
+            for (final Node<Object> n : nodes) {
+                final Neighborhood<Object> expected = env.getLinkingRule().computeNeighborhood(n, env);
+                assertEquals(expected.getNeighbors(), env.getNeighborhood(n).getNeighbors());
+            }
+        }
+    }
+
+    /**
+     * Batches keep the class of the positions they replace, and leave every
+     * node where it was if any position can not be rebuilt or the spatial
+     * index fails.
+     */
+    @Test
+    public void testBatchMovementKeepsPositions() {
+        final FailingIndex index = new FailingIndex();
+        final SimpleEnvironment env = new SimpleEnvironment(index);
+        final Node<Object> a = env.newNode();
+        final Node<Object> b = env.newNode();
+        final Node<Object> c = env.newNode();
+        env.addNode(a, new Continuous2DEuclidean(0, 0));
+        env.addNode(b, new Euclidean2DPosition(1, 1));
+        env.addNode(c, new Discrete2DManhattan(2, 2));
+        env.moveNodes(new int[] {a.getId(), b.getId()}, new double[] {3, 3, 4, 4});
+        assertEquals(Continuous2DEuclidean.class, env.getPosition(a).getClass());
+        assertEquals(Euclidean2DPosition.class, env.getPosition(b).getClass());
+        try {
+            env.moveNodes(new int[] {a.getId(), c.getId()}, new double[] {5, 5, 6, 6});
+            fail();
+        } catch (final IllegalArgumentException e) {
+            assertEquals(new Continuous2DEuclidean(3, 3), env.getPosition(a));
+            assertEquals(new Discrete2DManhattan(2, 2), env.getPosition(c));
+        }
+        index.broken = b;
+        try {
+            env.moveNodes(new int[] {a.getId(), b.getId(), a.getId()}, new double[] {5, 5, 6, 6, 7, 7});
+            fail();
+        } catch (final IllegalStateException e) {
+            assertEquals(new Continuous2DEuclidean(3, 3), env.getPosition(a));
+            assertEquals(new Euclidean2DPosition(4, 4), env.getPosition(b));
+        }
+    }
+
+    private static int lastIndexOf(final int[] array, final int value) {
+        for (int i = array.length - 1; i >= 0; i--) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class FailingIndex implements SpatialIndex<Node<Object>> {
+        private static final long serialVersionUID = 1L;
+        private final SpatialIndex<Node<Object>> inner = new FlexibleQuadTree<>();
+        private Node<Object> broken;
+        @Override
+        public void insert(final Node<Object> element, final double... position) {
+            inner.insert(element, position);
+        }
+        @Override
+        public boolean remove(final Node<Object> element, final double... position) {
+            return inner.remove(element, position);
+        }
+        @Override
+        public boolean move(final Node<Object> element, final double[] start, final double[] end) {
+            return element != broken && inner.move(element, start, end);
+        }
+        @Override
+        public List<Node<Object>> query(final double[]... parallelotope) {
+            return inner.query(parallelotope);
+        }
+        @Override
+        public int getDimensions() {
+            return inner.getDimensions();
+        }
+    }
+
+    private static final class LinkedEnv extends SimpleEnvironment {
+        private static final long serialVersionUID = 1L;
+        private final LinkingRule<Object> rule = new EuclideanDistance<>(RANGE);
+        private final TIntObjectHashMap<Neighborhood<Object>> neighborhoods = new TIntObjectHashMap<>();
+        private int updates;
+        LinkedEnv() {
+            this(new FlexibleQuadTree<>());
+        }
+        LinkedEnv(final SpatialIndex<Node<Object>> index) {
+            super(index);
+        }
+        @Override
+        public Neighborhood<Object> getNeighborhood(final Node<Object> center) {
+            return neighborhoods.get(center.getId());
+        }
+        @Override
+        public double[] getSize() {
+            return new double[]{SIZE, SIZE};
+        }
+        @Override
+        public LinkingRule<Object> getLinkingRule() {
+            return rule;
+        }
+        @Override
+        protected void nodeAdded(final Node<Object> node, final Position p) {
+            final Neighborhood<Object> neigh = rule.computeNeighborhood(node, this);
+            neighborhoods.put(node.getId(), neigh);
+            neigh.forEach(n -> neighborhoods.get(n.getId()).addNeighbor(node));
+        }
+        @Override
+        protected void neighborhoodUpdated(final Node<Object> node, final NeighborhoodDiff diff) {
+            updates++;
+        }
+    }
+
+}
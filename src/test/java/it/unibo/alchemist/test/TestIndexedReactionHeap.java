@@ -0,0 +1,97 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.model.implementations.reactions.Event;
+import it.unibo.alchemist.model.implementations.scheduling.IndexedReactionHeap;
+import it.unibo.alchemist.model.implementations.timedistributions.AbstractDistribution;
+import it.unibo.alchemist.model.implementations.times.DoubleTime;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Reaction;
+import it.unibo.alchemist.model.interfaces.Time;
+
+/**
+ */
+public class TestIndexedReactionHeap {
+
+    private static final int REACTIONS = 500;
+    private static final int OPERATIONS = 5000;
+
+    /**
+     * Randomly updates, removes and re-adds reactions, checking that the head
+     * of the heap is always the reaction with the lowest tau.
+     */
+    @Test
+    public void testAlwaysReturnsMinimum() {
+        final Random rng = new Random(0);
+        final Node<Object> node = new SimpleEnvironment().newNode();
+        final List<SettableDistribution> distributions = new ArrayList<>();
+        final List<Reaction<Object>> reactions = new ArrayList<>();
+        final IndexedReactionHeap<Object> heap = new IndexedReactionHeap<>(2);
+        for (int i = 0; i < REACTIONS; i++) {
+            final SettableDistribution dist = new SettableDistribution(rng.nextDouble());
+            final Reaction<Object> r = new Event<>(node, dist);
+            distributions.add(dist);
+            reactions.add(r);
+            heap.addReaction(r);
+        }
+        for (int i = 0; i < OPERATIONS; i++) {
+            final int index = rng.nextInt(REACTIONS);
+            final Reaction<Object> r = reactions.get(index);
+            if (heap.contains(r)) {
+                if (rng.nextInt(10) == 0) {
+                    assertTrue(heap.removeReaction(r));
+                    assertFalse(heap.removeReaction(r));
+                } else {
+                    distributions.get(index).set(rng.nextDouble());
+                    heap.updateReaction(r);
+                }
+            } else {
+                distributions.get(index).set(rng.nextDouble());
+                heap.addReaction(r);
+            }
+            double min = Double.POSITIVE_INFINITY;
+            int count = 0;
+            for (final Reaction<Object> candidate : reactions) {
+                if (heap.contains(candidate)) {
+                    min = Math.min(min, candidate.getTau().toDouble());
+                    count++;
+                }
+            }
+            assertEquals(count, heap.size());
+            assertEquals(min, heap.getNextTau(), 0);
+            assertEquals(min, heap.getNext().getTau().toDouble(), 0);
+        }
+    }
+
+    private static final class SettableDistribution extends AbstractDistribution<Object> {
+        private static final long serialVersionUID = 1L;
+        SettableDistribution(final double tau) {
+            super(new DoubleTime(tau));
+        }
+        void set(final double tau) {
+            setTau(new DoubleTime(tau));
+        }
+        @Override
+        public double getRate() {
+            return 1;
+        }
+        @Override
+        protected void updateStatus(final Time curTime, final boolean executed, final double param, final Environment<Object> env) {
+        }
+        @Override
+        public SettableDistribution clone() {
+            return new SettableDistribution(getNextOccurence().toDouble());
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.model.implementations.neighborhoods.CachedNeighborhood;
+import it.unibo.alchemist.model.implementations.neighborhoods.IntArrayNeighborhood;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ */
+public class TestIntArrayNeighborhood {
+
+    private static final int NODES = 200;
+    private static final int OPERATIONS = 1000;
+
+    /**
+     * Applies the same random updates to an {@link IntArrayNeighborhood} and a
+     * {@link CachedNeighborhood}, and checks they stay equal.
+     */
+    @Test
+    public void testSameAsCachedNeighborhood() {
+        final Random rng = new Random(0);
+        final SimpleEnvironment env = new SimpleEnvironment();
+        final List<Node<Object>> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            final Node<Object> n = env.newNode();
+            env.addNode(n, new Continuous2DEuclidean(rng.nextDouble(), rng.nextDouble()));
+            nodes.add(n);
+        }
+        final Node<Object> center = nodes.get(0);
+        final List<Node<Object>> initial = new ArrayList<>(nodes.subList(1, NODES / 2));
+        Collections.shuffle(initial, rng);
+        final IntArrayNeighborhood<Object> compact = new IntArrayNeighborhood<>(center, initial, env);
+        final CachedNeighborhood<Object> cached = new CachedNeighborhood<>(center, initial, env);
+        assertEquals(cached, compact);
+        final int[] snapshot = compact.getNeighborIds().clone();
+        final IntArrayNeighborhood<Object> clone = compact.clone();
+        for (int i = 0; i < OPERATIONS; i++) {
+            final Node<Object> n = nodes.get(1 + rng.nextInt(NODES - 1));
+            if (rng.nextBoolean()) {
+                compact.addNeighbor(n);
+                cached.addNeighbor(n);
+            } else {
+                compact.removeNeighbor(n);
+                cached.removeNeighbor(n);
+            }
+            assertEquals(cached.contains(n), compact.contains(n));
+        }
+        final List<Node<Object>> bulk = new ArrayList<>(nodes.subList(NODES / 4, NODES));
+        Collections.shuffle(bulk, rng);
+        compact.addNeighbors(bulk);
+        bulk.forEach(cached::addNeighbor);
+        assertEquals(cached.getNeighbors(), compact.getNeighbors());
+        assertEquals(cached.hashCode(), compact.hashCode());
+        assertArrayEquals(snapshot, clone.getNeighborIds());
+    }
+
+}
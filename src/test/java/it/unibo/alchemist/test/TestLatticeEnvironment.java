@@ -0,0 +1,199 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import gnu.trove.map.TIntObjectMap;
+import it.unibo.alchemist.model.implementations.environments.AbstractLatticeEnvironment;
+import it.unibo.alchemist.model.implementations.linkingrules.EuclideanDistance;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.implementations.positions.Discrete2DManhattan;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.LinkingRule;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ */
+public class TestLatticeEnvironment {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+    private static final int ATTEMPTS = 600;
+    private static final double[] RANGES = { 0, 1, 2.5, 7, 100 };
+
+    /**
+     * Range queries scanning the lattice must return exactly the nodes within
+     * Manhattan distance, also after nodes get moved and removed.
+     */
+    @Test
+    public void testRangeQueries() {
+        final Random rng = new Random(0);
+        final LatticeEnv env = new LatticeEnv();
+        for (int i = 0; i < ATTEMPTS; i++) {
+            env.addNode(new SimpleNode(env), new Discrete2DManhattan(rng.nextInt(WIDTH), rng.nextInt(HEIGHT)));
+        }
+        final List<Node<Object>> nodes = new ArrayList<>(env.getNodes());
+        for (int i = 0; i < nodes.size(); i += 4) {
+            env.removeNode(nodes.get(i));
+        }
+        for (int i = 1; i < nodes.size(); i += 4) {
+            env.moveNode(nodes.get(i), new Discrete2DManhattan(rng.nextInt(3) - 1, rng.nextInt(3) - 1));
+        }
+        for (final Node<Object> center : env.getNodes()) {
+            for (final double range : RANGES) {
+                assertEquals(bruteForce(env, env.getPosition(center), range, center),
+                        ids(env.getNodesWithinRange(center, range)));
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            final Position center = new Continuous2DEuclidean(rng.nextDouble() * WIDTH, rng.nextDouble() * HEIGHT);
+            for (final double range : RANGES) {
+                assertEquals(bruteForce(env, center, range, null), ids(env.getNodesWithinRange(center, range)));
+            }
+        }
+    }
+
+    /**
+     * Each cell hosts at most one node, and nodes can not leave the lattice.
+     */
+    @Test
+    public void testOccupancy() {
+        final LatticeEnv env = new LatticeEnv();
+        final Node<Object> first = new SimpleNode(env);
+        final Node<Object> second = new SimpleNode(env);
+        env.addNode(first, new Discrete2DManhattan(3, 4));
+        env.addNode(second, new Discrete2DManhattan(3, 4));
+        assertEquals(1, env.getNodesNumber());
+        env.addNode(second, new Continuous2DEuclidean(WIDTH, 0));
+        assertEquals(1, env.getNodesNumber());
+        env.addNode(second, new Continuous2DEuclidean(4.2, 3.9));
+        assertEquals(new Discrete2DManhattan(4, 4), env.getPosition(second));
+        env.moveNodeToPosition(first, new Discrete2DManhattan(4, 4));
+        assertEquals(new Discrete2DManhattan(3, 4), env.getPosition(first));
+        env.moveNodeToPosition(first, new Discrete2DManhattan(-1, 4));
+        assertEquals(new Discrete2DManhattan(3, 4), env.getPosition(first));
+        env.moveNode(first, new Discrete2DManhattan(0, 1));
+        assertEquals(new Discrete2DManhattan(3, 5), env.getPosition(first));
+        assertNull(env.getNodeAt(3, 4));
+        assertSame(first, env.getNodeAt(3, 5));
+        assertEquals(2, env.getDistanceBetweenNodes(first, second), 0);
+        env.removeNode(second);
+        assertNull(env.getNodeAt(4, 4));
+        env.moveNodeToPosition(first, new Discrete2DManhattan(4, 4));
+        assertSame(first, env.getNodeAt(4, 4));
+    }
+
+    /**
+     * Batches are applied as a whole: nodes can swap or rotate their cells,
+     * and invalid batches leave every node where it was.
+     */
+    @Test
+    public void testBatchMoves() {
+        final LatticeEnv env = new LatticeEnv();
+        final Node<Object> a = new SimpleNode(env);
+        final Node<Object> b = new SimpleNode(env);
+        final Node<Object> c = new SimpleNode(env);
+        env.addNode(a, new Discrete2DManhattan(0, 0));
+        env.addNode(b, new Discrete2DManhattan(1, 0));
+        env.addNode(c, new Discrete2DManhattan(2, 0));
+        env.moveNodes(new int[] { a.getId(), b.getId() }, new double[] { 1, 0, 0, 0 });
+        assertSame(b, env.getNodeAt(0, 0));
+        assertSame(a, env.getNodeAt(1, 0));
+        env.moveNodes(new int[] { a.getId(), b.getId(), c.getId() }, new double[] { 2, 0, 1, 0, 0, 0 });
+        assertSame(c, env.getNodeAt(0, 0));
+        assertSame(b, env.getNodeAt(1, 0));
+        assertSame(a, env.getNodeAt(2, 0));
+        assertRejected(env, new int[] { a.getId(), b.getId() }, new double[] { 5, 5, 0, 0 });
+        assertRejected(env, new int[] { a.getId(), b.getId() }, new double[] { 5, 5, 5, 5 });
+        assertRejected(env, new int[] { a.getId(), b.getId() }, new double[] { 5, 5, WIDTH, 0 });
+        assertSame(c, env.getNodeAt(0, 0));
+        assertSame(b, env.getNodeAt(1, 0));
+        assertSame(a, env.getNodeAt(2, 0));
+        assertNull(env.getNodeAt(5, 5));
+        assertEquals(new Discrete2DManhattan(2, 0), env.getPosition(a));
+    }
+
+    /**
+     * The bulk computation of the neighborhoods must follow the Manhattan
+     * distance of the lattice.
+     */
+    @Test
+    public void testBulkLinking() {
+        final Random rng = new Random(1);
+        final LatticeEnv env = new LatticeEnv();
+        for (int i = 0; i < ATTEMPTS; i++) {
+            env.addNode(new SimpleNode(env), new Discrete2DManhattan(rng.nextInt(WIDTH), rng.nextInt(HEIGHT)));
+        }
+        for (final double range : RANGES) {
+            final EuclideanDistance<Object> rule = new EuclideanDistance<>(range);
+            final TIntObjectMap<Neighborhood<Object>> bulk = rule.computeNeighborhoods(env);
+            for (final Node<Object> node : env.getNodes()) {
+                assertEquals(rule.computeNeighborhood(node, env), bulk.get(node.getId()));
+            }
+        }
+    }
+
+    private static void assertRejected(final LatticeEnv env, final int[] ids, final double[] coordinates) {
+        try {
+            env.moveNodes(ids, coordinates);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            assertNotNull(e.getMessage());
+        }
+    }
+
+    private static List<Integer> bruteForce(final Environment<Object> env, final Position center, final double range, final Node<Object> exclude) {
+        final List<Node<Object>> res = new ArrayList<>();
+        for (final Node<Object> n : env.getNodes()) {
+            final Position p = env.getPosition(n);
+            if (!n.equals(exclude) && Math.abs(p.getCoordinate(0) - center.getCoordinate(0))
+                    + Math.abs(p.getCoordinate(1) - center.getCoordinate(1)) <= range) {
+                res.add(n);
+            }
+        }
+        return ids(res);
+    }
+
+    private static List<Integer> ids(final List<Node<Object>> nodes) {
+        final List<Integer> res = new ArrayList<>(nodes.size());
+        nodes.forEach(n -> res.add(n.getId()));
+        res.sort(null);
+        return res;
+    }
+
+    private static final class LatticeEnv extends AbstractLatticeEnvironment<Object> {
+        private static final long serialVersionUID = 1L;
+        LatticeEnv() {
+            super(WIDTH, HEIGHT);
+        }
+        @Override
+        public Neighborhood<Object> getNeighborhood(final Node<Object> center) {
+            return null;
+        }
+        @Override
+        public void setLinkingRule(final LinkingRule<Object> rule) {
+        }
+        @Override
+        public LinkingRule<Object> getLinkingRule() {
+            return null;
+        }
+        @Override
+        protected void nodeAdded(final Node<Object> node, final Position p) {
+        }
+        @Override
+        protected void nodeRemoved(final Node<Object> node, final Position pos) {
+        }
+    }
+
+}
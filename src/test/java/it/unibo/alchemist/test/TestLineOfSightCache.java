@@ -0,0 +1,142 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.model.implementations.linkingrules.LineOfSightCache;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ */
+public class TestLineOfSightCache {
+
+    /**
+     * Epochs change only for the nodes that move, and are never reused, also
+     * for the nodes added once epochs are being tracked.
+     */
+    @Test
+    public void testPositionEpochs() {
+        final SimpleEnvironment env = new SimpleEnvironment();
+        final Node<Object> a = env.newNode();
+        final Node<Object> b = env.newNode();
+        env.addNode(a, new Continuous2DEuclidean(0, 0));
+        env.addNode(b, new Continuous2DEuclidean(1, 1));
+        final long ea = env.getPositionEpoch(a);
+        final long eb = env.getPositionEpoch(b);
+        assertTrue(ea != eb);
+        env.moveNodeToPosition(a, new Continuous2DEuclidean(2, 2));
+        assertTrue(ea != env.getPositionEpoch(a));
+        assertTrue(eb != env.getPositionEpoch(a));
+        assertEquals(eb, env.getPositionEpoch(b));
+        env.removeNode(b);
+        assertEquals(-1, env.getPositionEpoch(b));
+        final Node<Object> c = env.newNode();
+        env.addNode(c, new Continuous2DEuclidean(3, 3));
+        assertTrue(env.getPositionEpoch(c) > env.getPositionEpoch(a));
+    }
+
+    /**
+     * A check is performed on the first lookup only, in either order of the
+     * two nodes, until one of them moves or the cache is cleared.
+     */
+    @Test
+    public void testHitsAndMisses() {
+        final SimpleEnvironment env = new SimpleEnvironment();
+        final Node<Object> a = env.newNode();
+        final Node<Object> b = env.newNode();
+        final Node<Object> c = env.newNode();
+        env.addNode(a, new Continuous2DEuclidean(0, 0));
+        env.addNode(b, new Continuous2DEuclidean(1, 1));
+        env.addNode(c, new Continuous2DEuclidean(2, 2));
+        final LineOfSightCache cache = new LineOfSightCache(LineOfSightCache.DEFAULT_CAPACITY);
+        final int[] checks = new int[1];
+        final BooleanSupplier visible = () -> {
+            checks[0]++;
+            return true;
+        };
+        assertTrue(cache.getOrCompute(env, a, b, visible));
+        assertTrue(cache.getOrCompute(env, a, b, visible));
+        assertTrue(cache.getOrCompute(env, b, a, visible));
+        assertEquals(1, checks[0]);
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        /*
+         * Moving a third node does not invalidate the entry
+         */
+        env.moveNodeToPosition(c, new Continuous2DEuclidean(3, 3));
+        assertTrue(cache.getOrCompute(env, a, b, visible));
+        assertEquals(1, checks[0]);
+        cache.clear();
+        assertTrue(cache.getOrCompute(env, a, b, visible));
+        assertEquals(2, checks[0]);
+        assertEquals(2, cache.getMisses());
+    }
+
+    /**
+     * When a node moves, its entries are stale, and the check is performed
+     * again, returning the new outcome. Moving back to the same place does not
+     * revive the old entry.
+     */
+    @Test
+    public void testEpochInvalidation() {
+        final SimpleEnvironment env = new SimpleEnvironment();
+        final Node<Object> a = env.newNode();
+        final Node<Object> b = env.newNode();
+        env.addNode(a, new Continuous2DEuclidean(0, 0));
+        env.addNode(b, new Continuous2DEuclidean(1, 1));
+        final LineOfSightCache cache = new LineOfSightCache(LineOfSightCache.DEFAULT_CAPACITY);
+        assertTrue(cache.getOrCompute(env, a, b, () -> true));
+        env.moveNodeToPosition(b, new Continuous2DEuclidean(5, 5));
+        assertFalse(cache.getOrCompute(env, a, b, () -> false));
+        assertFalse(cache.getOrCompute(env, b, a, () -> true));
+        env.moveNodeToPosition(b, new Continuous2DEuclidean(1, 1));
+        assertTrue(cache.getOrCompute(env, a, b, () -> true));
+        env.moveNodeToPosition(a, new Continuous2DEuclidean(1, 0));
+        assertFalse(cache.getOrCompute(env, a, b, () -> false));
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    /**
+     * With a single slot, all the pairs collide: each evicts the other, and
+     * an outcome is never returned for the wrong pair.
+     */
+    @Test
+    public void testCollisions() {
+        final SimpleEnvironment env = new SimpleEnvironment();
+        final Node<Object> a = env.newNode();
+        final Node<Object> b = env.newNode();
+        final Node<Object> c = env.newNode();
+        env.addNode(a, new Continuous2DEuclidean(0, 0));
+        env.addNode(b, new Continuous2DEuclidean(1, 1));
+        env.addNode(c, new Continuous2DEuclidean(2, 2));
+        final LineOfSightCache cache = new LineOfSightCache(1);
+        assertTrue(cache.getOrCompute(env, a, b, () -> true));
+        assertFalse(cache.getOrCompute(env, a, c, () -> false));
+        assertTrue(cache.getOrCompute(env, a, b, () -> true));
+        assertFalse(cache.getOrCompute(env, c, a, () -> false));
+        assertFalse(cache.getOrCompute(env, a, c, () -> true));
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    /**
+     * The capacity is rounded up to a power of two, and counters start at
+     * zero.
+     */
+    @Test
+    public void testCapacity() {
+        final LineOfSightCache cache = new LineOfSightCache(1000);
+        assertEquals(1024, cache.getCapacity());
+        assertEquals(1, new LineOfSightCache(1).getCapacity());
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+}
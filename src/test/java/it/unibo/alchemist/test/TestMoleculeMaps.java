@@ -0,0 +1,87 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.model.implementations.molecules.SimpleMolecule;
+import it.unibo.alchemist.model.implementations.nodes.CompactMoleculeMap;
+import it.unibo.alchemist.model.implementations.nodes.CopyOnWriteMoleculeMap;
+import it.unibo.alchemist.model.interfaces.Molecule;
+
+/**
+ */
+public class TestMoleculeMaps {
+
+    private static final int MOLECULES = 100;
+    private static final int OPERATIONS = 20000;
+    private static final int THREADS = 8;
+
+    /**
+     * Random puts and removals must leave the maps equal to a {@link HashMap}.
+     */
+    @Test
+    public void testSameAsHashMap() {
+        check(new CompactMoleculeMap<>());
+        check(new CopyOnWriteMoleculeMap<>());
+    }
+
+    /**
+     * Concurrent writers on different molecules must not lose updates.
+     * 
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testConcurrentWrites() throws InterruptedException {
+        final Map<Molecule, Integer> map = new CopyOnWriteMoleculeMap<>();
+        final ExecutorService ex = Executors.newFixedThreadPool(THREADS);
+        IntStream.range(0, THREADS).forEach(t -> ex.submit(() -> {
+            for (int i = t; i < MOLECULES * THREADS; i += THREADS) {
+                map.put(new SimpleMolecule(Integer.toString(i)), i);
+                map.forEach((k, v) -> { });
+            }
+        }));
+        ex.shutdown();
+        ex.awaitTermination(10, TimeUnit.SECONDS);
+        assertEquals(MOLECULES * THREADS, map.size());
+        for (int i = 0; i < MOLECULES * THREADS; i++) {
+            assertEquals(Integer.valueOf(i), map.get(new SimpleMolecule(Integer.toString(i))));
+        }
+    }
+
+    private static void check(final Map<Molecule, Integer> map) {
+        final Random rng = new Random(0);
+        final Map<Molecule, Integer> expected = new HashMap<>();
+        final List<Molecule> molecules = new ArrayList<>();
+        for (int i = 0; i < MOLECULES; i++) {
+            molecules.add(new SimpleMolecule("m" + i));
+        }
+        for (int i = 0; i < OPERATIONS; i++) {
+            final Molecule m = molecules.get(rng.nextInt(MOLECULES));
+            if (rng.nextInt(3) == 0) {
+                assertEquals(expected.remove(m), map.remove(m));
+            } else {
+                final int value = rng.nextInt();
+                assertEquals(expected.put(m, value), map.put(m, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        for (final Molecule m : molecules) {
+            assertEquals(expected.containsKey(m), map.containsKey(m));
+            assertEquals(expected.get(m), map.get(m));
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.model.implementations.linkingrules.ConnectionBeam;
+import it.unibo.alchemist.model.implementations.linkingrules.EuclideanDistance;
+import it.unibo.alchemist.model.implementations.linkingrules.ObstaclesBreakConnection;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Environment2DWithObstacles;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Obstacle2D;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ */
+public class TestObstacleLinking {
+
+    private static final double RANGE = 10;
+
+    /**
+     * Incremental linking checks links one pair at a time, without computing
+     * any neighborhood: an obstacle added between two linked nodes must
+     * break their link anyway.
+     */
+    @Test
+    public void testObstacleAddedBetweenLinkedNodes() {
+        check(new ObstaclesBreakConnection<>(RANGE));
+        check(new ConnectionBeam<>(RANGE, 0.1));
+    }
+
+    private static void check(final EuclideanDistance<Object> rule) {
+        final ObstacleEnvironment obstacles = new ObstacleEnvironment();
+        final Environment2DWithObstacles<Obstacle2D, Object> env = obstacles.asEnvironment();
+        final Node<Object> a = obstacles.inner.newNode();
+        final Node<Object> b = obstacles.inner.newNode();
+        obstacles.inner.addNode(a, new Continuous2DEuclidean(0, 0));
+        obstacles.inner.addNode(b, new Continuous2DEuclidean(3, 4));
+        assertTrue(rule.isPairwise());
+        assertTrue(rule.computeNeighborhoods(env).get(a.getId()).contains(b));
+        assertTrue(rule.isLinked(env, a, b));
+        obstacles.add(new Rectangle2D.Double(1, 1.5, 1, 1));
+        assertFalse(rule.isLinked(env, a, b));
+        assertFalse(rule.isLinked(env, b, a));
+    }
+
+    /*
+     * No obstacle environment lives in this module: the environment and the
+     * obstacles are proxies, which delegate to a SimpleEnvironment and to
+     * rectangles respectively.
+     */
+    private static final class ObstacleEnvironment {
+        private final SimpleEnvironment inner = new SimpleEnvironment();
+        private final List<Rectangle2D> shapes = new ArrayList<>();
+        private final List<Obstacle2D> obstacles = new ArrayList<>();
+
+        void add(final Rectangle2D shape) {
+            final int id = shapes.size();
+            shapes.add(shape);
+            obstacles.add((Obstacle2D) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Obstacle2D.class },
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Shape.class) {
+                        return invoke(method, shape, args);
+                    }
+                    switch (method.getName()) {
+                    case "getId":
+                        return id;
+                    case "hashCode":
+                        return id;
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "Obstacle" + id;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                }));
+        }
+
+        @SuppressWarnings("unchecked")
+        Environment2DWithObstacles<Obstacle2D, Object> asEnvironment() {
+            return (Environment2DWithObstacles<Obstacle2D, Object>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Environment2DWithObstacles.class }, (proxy, method, args) -> {
+                    if (method.getDeclaringClass().isAssignableFrom(Environment.class)) {
+                        return invoke(method, inner, args);
+                    }
+                    switch (method.getName()) {
+                    case "getObstacles":
+                        return obstacles;
+                    case "hasMobileObstacles":
+                        return false;
+                    case "intersectsObstacle":
+                        if (args.length == 2) {
+                            final Position p1 = (Position) args[0];
+                            final Position p2 = (Position) args[1];
+                            return intersects(p1.getCoordinate(0), p1.getCoordinate(1), p2.getCoordinate(0), p2.getCoordinate(1));
+                        }
+                        return intersects((Double) args[0], (Double) args[1], (Double) args[2], (Double) args[3]);
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        }
+
+        private boolean intersects(final double x1, final double y1, final double x2, final double y2) {
+            for (final Rectangle2D shape : shapes) {
+                if (shape.intersectsLine(x1, y1, x2, y2)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static Object invoke(final Method method, final Object target, final Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (final InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,200 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import it.unibo.alchemist.model.implementations.molecules.SimpleMolecule;
+import it.unibo.alchemist.model.implementations.neighborhoods.CachedNeighborhood;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.implementations.reactions.Event;
+import it.unibo.alchemist.model.implementations.scheduling.ReactionDependencyGraph;
+import it.unibo.alchemist.model.implementations.timedistributions.DiracComb;
+import it.unibo.alchemist.model.interfaces.Context;
+import it.unibo.alchemist.model.interfaces.Molecule;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+import it.unibo.alchemist.model.interfaces.Reaction;
+
+/**
+ */
+public class TestReactionDependencyGraph {
+
+    private static final int NODES = 40;
+    private static final int REACTIONS_PER_NODE = 3;
+    private static final int MOLECULES = 6;
+    private static final int CHANGES = 300;
+    private static final Context[] CONTEXTS = { Context.LOCAL, Context.LOCAL, Context.NEIGHBORHOOD, Context.NEIGHBORHOOD, Context.GLOBAL };
+
+    /**
+     * Builds a graph, then keeps toggling links and replacing nodes,
+     * checking after each change that the edges match a brute force
+     * computation.
+     */
+    @Test
+    public void testIncrementalUpdates() {
+        final Random rng = new Random(0);
+        final LinkedEnvironment env = new LinkedEnvironment();
+        final List<Molecule> molecules = new ArrayList<>();
+        for (int i = 0; i < MOLECULES; i++) {
+            molecules.add(new SimpleMolecule("m" + i));
+        }
+        final List<Node<Object>> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            final Node<Object> node = env.newNode();
+            for (int j = 0; j < REACTIONS_PER_NODE; j++) {
+                node.addReaction(randomReaction(node, molecules, rng));
+            }
+            env.addNode(node, new Continuous2DEuclidean(0, 0));
+            nodes.add(node);
+        }
+        for (int i = 0; i < NODES * 2; i++) {
+            env.link(nodes.get(rng.nextInt(NODES)), nodes.get(rng.nextInt(NODES)));
+        }
+        final ReactionDependencyGraph<Object> graph = ReactionDependencyGraph.build(env);
+        checkAgainstBruteForce(env, graph);
+        for (int i = 0; i < CHANGES; i++) {
+            final Node<Object> a = nodes.get(rng.nextInt(NODES));
+            final Node<Object> b = nodes.get(rng.nextInt(NODES));
+            if (a.equals(b)) {
+                graph.removeNode(a);
+                graph.addNode(a);
+            } else if (env.getNeighborhood(a).contains(b)) {
+                env.unlink(a, b);
+                graph.removeLink(a, b);
+            } else {
+                env.link(a, b);
+                graph.addLink(a, b);
+            }
+            checkAgainstBruteForce(env, graph);
+        }
+    }
+
+    /**
+     * Molecules with a custom {@link Molecule#dependsOn(Molecule)} must be
+     * honored, even if they do not share their id with the ones they depend
+     * on.
+     */
+    @Test
+    public void testCustomDependencies() {
+        final LinkedEnvironment env = new LinkedEnvironment();
+        final Node<Object> node = env.newNode();
+        final Molecule simple = new SimpleMolecule("m");
+        final Molecule any = new AnyMolecule();
+        final Reaction<Object> writer = new TestReaction(node, Context.LOCAL, Context.LOCAL,
+                Collections.emptyList(), Collections.singletonList(simple));
+        final Reaction<Object> reader = new TestReaction(node, Context.LOCAL, Context.LOCAL,
+                Collections.singletonList(any), Collections.emptyList());
+        final Reaction<Object> unrelated = new TestReaction(node, Context.LOCAL, Context.LOCAL,
+                Collections.singletonList(new SimpleMolecule("other")), Collections.emptyList());
+        node.addReaction(writer);
+        node.addReaction(reader);
+        node.addReaction(unrelated);
+        env.addNode(node, new Continuous2DEuclidean(0, 0));
+        final ReactionDependencyGraph<Object> graph = ReactionDependencyGraph.build(env);
+        assertEquals(Collections.singleton(reader), graph.getOutboundDependencies(writer));
+    }
+
+    private static void checkAgainstBruteForce(final LinkedEnvironment env, final ReactionDependencyGraph<Object> graph) {
+        final List<Reaction<Object>> all = new ArrayList<>();
+        env.forEach(n -> n.forEach(all::add));
+        for (final Reaction<Object> source : all) {
+            final Set<Reaction<Object>> expected = new LinkedHashSet<>();
+            for (final Reaction<Object> target : all) {
+                if (!source.equals(target) && dependsOn(env, source, target)) {
+                    expected.add(target);
+                }
+            }
+            assertEquals(expected, graph.getOutboundDependencies(source));
+        }
+    }
+
+    private static boolean dependsOn(final LinkedEnvironment env, final Reaction<Object> source, final Reaction<Object> target) {
+        final Context out = source.getOutputContext();
+        final Context in = target.getInputContext();
+        final boolean close = out == Context.GLOBAL || in == Context.GLOBAL
+                || source.getNode().equals(target.getNode())
+                || (out == Context.NEIGHBORHOOD || in == Context.NEIGHBORHOOD)
+                    && env.getNeighborhood(source.getNode()).contains(target.getNode());
+        final List<? extends Molecule> influenced = source.getInfluencedMolecules();
+        final List<? extends Molecule> influencing = target.getInfluencingMolecules();
+        return close && (influenced == null || influencing == null
+                || !Collections.disjoint(influenced, influencing));
+    }
+
+    private static Reaction<Object> randomReaction(final Node<Object> node, final List<Molecule> molecules, final Random rng) {
+        return new TestReaction(node,
+                CONTEXTS[rng.nextInt(CONTEXTS.length)],
+                CONTEXTS[rng.nextInt(CONTEXTS.length)],
+                randomMolecules(molecules, rng),
+                randomMolecules(molecules, rng));
+    }
+
+    private static List<Molecule> randomMolecules(final List<Molecule> molecules, final Random rng) {
+        if (rng.nextInt(10) == 0) {
+            return null;
+        }
+        final List<Molecule> res = new ArrayList<>();
+        for (int i = rng.nextInt(3); i >= 0; i--) {
+            res.add(molecules.get(rng.nextInt(molecules.size())));
+        }
+        return res;
+    }
+
+    private static final class TestReaction extends Event<Object> {
+        private static final long serialVersionUID = 1L;
+        TestReaction(final Node<Object> node, final Context in, final Context out,
+                final List<Molecule> influencing, final List<Molecule> influenced) {
+            super(node, new DiracComb<>(1));
+            setInputContext(in);
+            setOutputContext(out);
+            setInfluencingMolecules(influencing);
+            setInfluencedMolecules(influenced);
+        }
+    }
+
+    private static final class AnyMolecule implements Molecule {
+        private static final long serialVersionUID = 1L;
+        @Override
+        public boolean dependsOn(final Molecule m) {
+            return true;
+        }
+        @Override
+        public long getId() {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static final class LinkedEnvironment extends SimpleEnvironment {
+        private static final long serialVersionUID = 1L;
+        private final TIntObjectHashMap<Neighborhood<Object>> neighborhoods = new TIntObjectHashMap<>();
+        void link(final Node<Object> a, final Node<Object> b) {
+            if (!a.equals(b)) {
+                neighborhoods.get(a.getId()).addNeighbor(b);
+                neighborhoods.get(b.getId()).addNeighbor(a);
+            }
+        }
+        void unlink(final Node<Object> a, final Node<Object> b) {
+            neighborhoods.get(a.getId()).removeNeighbor(b);
+            neighborhoods.get(b.getId()).removeNeighbor(a);
+        }
+        @Override
+        public Neighborhood<Object> getNeighborhood(final Node<Object> center) {
+            return neighborhoods.get(center.getId());
+        }
+        @Override
+        protected void nodeAdded(final Node<Object> node, final Position p) {
+            neighborhoods.put(node.getId(), new CachedNeighborhood<>(node, Collections.emptyList(), this));
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package it.unibo.alchemist.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.model.implementations.spatialindexes.UniformGrid;
+
+/**
+ */
+public class TestUniformGrid {
+
+    private static final int ELEMENTS = 1000;
+    private static final int QUERIES = 100;
+    private static final double SIZE = 100;
+    private static final double CELL = 7;
+
+    /**
+     * Compares the grid against a brute force scan, across insertions, moves
+     * and removals.
+     */
+    @Test
+    public void testAgainstBruteForce() {
+        final Random rng = new Random(0);
+        final UniformGrid<Integer> grid = new UniformGrid<>(2, CELL);
+        final List<double[]> positions = new ArrayList<>();
+        for (int i = 0; i < ELEMENTS; i++) {
+            final double[] p = new double[]{rng.nextDouble() * SIZE - SIZE / 2, rng.nextDouble() * SIZE - SIZE / 2};
+            positions.add(p);
+            grid.insert(i, p);
+        }
+        for (int i = 0; i < ELEMENTS; i += 2) {
+            final double[] start = positions.get(i);
+            final double[] end = new double[]{start[0] + rng.nextDouble() * CELL - CELL / 2, start[1] + rng.nextDouble() * CELL - CELL / 2};
+            assertTrue(grid.move(i, start, end));
+            positions.set(i, end);
+        }
+        for (int i = 1; i < ELEMENTS; i += 5) {
+            assertTrue(grid.remove(i, positions.get(i)));
+            positions.set(i, null);
+        }
+        assertFalse(grid.remove(1, new double[]{0, 0}));
+        assertEquals(ELEMENTS - ELEMENTS / 5, grid.size());
+        for (int q = 0; q < QUERIES; q++) {
+            final double x = rng.nextDouble() * SIZE - SIZE / 2;
+            final double y = rng.nextDouble() * SIZE - SIZE / 2;
+            final double r = rng.nextDouble() * SIZE / 4;
+            final List<Integer> expected = IntStream.range(0, ELEMENTS)
+                    .filter(i -> positions.get(i) != null)
+                    .filter(i -> Math.abs(positions.get(i)[0] - x) <= r && Math.abs(positions.get(i)[1] - y) <= r)
+                    .boxed()
+                    .collect(Collectors.toList());
+            final List<Integer> actual = grid.query(new double[]{x - r, y + r}, new double[]{x + r, y - r});
+            actual.sort(null);
+            assertEquals(expected, actual);
+        }
+    }
+
+}